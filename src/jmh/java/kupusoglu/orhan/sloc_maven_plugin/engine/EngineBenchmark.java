@@ -0,0 +1,158 @@
+package kupusoglu.orhan.sloc_maven_plugin.engine;
+
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+
+/**
+ * Benchmarks the counting engine on a synthetic source tree, written once per trial.
+ * <br>
+ * A score is one pass over the whole tree, the secondary results <strong>files</strong> and <strong>megabytes</strong>
+ * are the throughput in files/s and MB/s, <strong>-prof gc</strong> adds the allocation rate.
+ * <pre>
+ * mvn -Pjmh test-compile exec:exec -Djmh.args="EngineBenchmark -prof gc"
+ * mvn -Pjmh test-compile exec:exec -Djmh.args="EngineBenchmark.countLines -p files=100000 -prof gc"
+ * </pre>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class EngineBenchmark {
+
+    /** number of files of the tree */
+    @Param({"1000", "10000", "100000"})
+    public int files;
+
+    /** approximate number of lines per file */
+    @Param({"200"})
+    public int lines;
+
+    private Path baseDir;
+    private List<Path> paths;
+    private long bytes;
+    private TreeMap<String, int[]> locData;
+    private List<SourceCount> counts;
+
+    /**
+     * Files and megabytes processed, reported per second.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Throughput {
+        public long files;
+        public double megabytes;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            files = 0;
+            megabytes = 0;
+        }
+
+        void add(int files, long bytes) {
+            this.files += files;
+            this.megabytes += bytes / 1e6;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        baseDir = Files.createTempDirectory("sloc-jmh");
+        paths = SyntheticSources.writeTree(baseDir, files, lines, 42L);
+
+        for (Path path : paths) {
+            bytes += Files.size(path);
+        }
+
+        SourceClassifier classifier = new SourceClassifier();
+        TreeMap<String, SourceCount> byKey = new TreeMap<>();
+        locData = new TreeMap<>();
+
+        for (Path path : paths) {
+            SourceCount count = classifier.classify(path, baseDir.relativize(path).toString(), Common.getFileType(path));
+            byKey.put(count.getKey(), count);
+            locData.put(count.getKey(), count.getCounters());
+        }
+
+        counts = new ArrayList<>(byKey.values());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        try (Stream<Path> walk = Files.walk(baseDir)) {
+            walk.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    public void readTextFile(Blackhole blackhole, Throughput throughput) {
+        for (Path path : paths) {
+            blackhole.consume(Common.readTextFile(path, StandardCharsets.UTF_8));
+        }
+
+        throughput.add(files, bytes);
+    }
+
+    @Benchmark
+    public CountSLOC processSource(Throughput throughput) {
+        CountSLOC countSLOC = new CountSLOC(SlocCounter.builder().nio(false).build(), new MavenSlocLog(new SystemStreamLog()), baseDir.toString(),
+                                            Collections.emptyMap(), null, null, () -> false);
+
+        for (Path path : paths) {
+            countSLOC.processSource(path);
+        }
+
+        throughput.add(files, bytes);
+
+        return countSLOC;
+    }
+
+    @Benchmark
+    public StringBuilder processSLOCData(Throughput throughput) {
+        throughput.add(files, 0);
+
+        return Common.processSLOCData(locData, "java", true);
+    }
+
+    /**
+     * The table rendered straight from the counts, as {@link CountSLOC#done()} does.
+     */
+    @Benchmark
+    public StringBuilder renderCounts(Throughput throughput) throws IOException {
+        StringBuilder sb = new StringBuilder();
+
+        Common.processSLOCData(counts, "java", true, sb);
+        throughput.add(files, 0);
+
+        return sb;
+    }
+
+    /**
+     * End-to-end: walking the tree, counting on all cores and rendering the table, which is neither printed nor saved.
+     */
+    @Benchmark
+    public void countLines(Throughput throughput) throws IOException {
+        SlocCounter.builder()
+                   .log(new MavenSlocLog(new SystemStreamLog()))
+                   .threads(Runtime.getRuntime().availableProcessors())
+                   .build()
+                   .count(baseDir);
+
+        throughput.add(files, bytes);
+    }
+}
@@ -0,0 +1,102 @@
+package kupusoglu.orhan.sloc_maven_plugin.engine;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+
+/**
+ * Compares reading and classifying files through {@link Common#readTextFile}, the char scanner and the NIO byte scanner,
+ * each with the marker checks and with the {@link LineLexer}.
+ * <br>
+ * Scores are files per second.
+ * <pre>
+ * mvn -Pjmh test-compile exec:exec -Djmh.args="ScannerBenchmark -prof gc"
+ * </pre>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+@OperationsPerInvocation(ScannerBenchmark.FILES)
+public class ScannerBenchmark {
+    static final int FILES = 100;
+
+    /** lines per file, the largest files are memory-mapped by the NIO scanner */
+    @Param({"200", "40000"})
+    public int lines;
+
+    private Path dir;
+    private List<Path> files;
+    private SourceClassifier charClassifier;
+    private SourceClassifier nioClassifier;
+    private SourceClassifier charLexer;
+    private SourceClassifier nioLexer;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("sloc-jmh");
+        files = SyntheticSources.writeFiles(dir, FILES, lines, 42L);
+        charClassifier = SlocCounter.builder().nio(false).build().getClassifier();
+        nioClassifier = SlocCounter.builder().nio(true).build().getClassifier();
+        charLexer = SlocCounter.builder().nio(false).lexer(true).build().getClassifier();
+        nioLexer = SlocCounter.builder().nio(true).lexer(true).build().getClassifier();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        try (Stream<Path> paths = Files.walk(dir)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    /**
+     * The former path: every line materialized and trimmed, without classification.
+     */
+    @Benchmark
+    public void readTextFile(Blackhole blackhole) {
+        for (Path file : files) {
+            for (String line : Common.readTextFile(file, StandardCharsets.UTF_8)) {
+                blackhole.consume(line.trim());
+            }
+        }
+    }
+
+    @Benchmark
+    public void charScanner(Blackhole blackhole) {
+        for (Path file : files) {
+            blackhole.consume(charClassifier.classify(file, "", "src"));
+        }
+    }
+
+    @Benchmark
+    public void nioScanner(Blackhole blackhole) {
+        for (Path file : files) {
+            blackhole.consume(nioClassifier.classify(file, "", "src"));
+        }
+    }
+
+    @Benchmark
+    public void charLexer(Blackhole blackhole) {
+        for (Path file : files) {
+            blackhole.consume(charLexer.classify(file, "", "src"));
+        }
+    }
+
+    @Benchmark
+    public void nioLexer(Blackhole blackhole) {
+        for (Path file : files) {
+            blackhole.consume(nioLexer.classify(file, "", "src"));
+        }
+    }
+}
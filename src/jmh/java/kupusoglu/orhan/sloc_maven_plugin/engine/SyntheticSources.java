@@ -0,0 +1,119 @@
+package kupusoglu.orhan.sloc_maven_plugin.engine;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+
+/**
+ * Generates Java sources with a realistic mix of JavaDoc, block comments, line comments, blank lines and code.
+ */
+public final class SyntheticSources {
+
+    private SyntheticSources() {
+        // no instance required, use static factory methods
+    }
+
+    /**
+     * @param   dir     directory of the package
+     * @param   files   number of files to write
+     * @param   lines   approximate number of lines per file
+     * @param   seed    seed of the generator, equal seeds write equal files
+     * @return  paths   the written files
+     */
+    public static List<Path> writeFiles(Path dir, int files, int lines, long seed) throws IOException {
+        Random random = new Random(seed);
+        List<Path> paths = new ArrayList<>(files);
+
+        Files.createDirectories(dir);
+
+        for (int i = 0; i < files; i++) {
+            Path file = dir.resolve("Synthetic" + i + ".java");
+
+            try (Writer writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+                writeSource(writer, "synthetic.pkg" + (i % 10), "Synthetic" + i, lines, random);
+            }
+
+            paths.add(file);
+        }
+
+        return paths;
+    }
+
+    /**
+     * Writes a Maven source tree: every fifth file below <strong>src/test/java</strong>, the others below
+     * <strong>src/main/java</strong>, about 50 files per package.
+     *
+     * @param   baseDir     base directory of the project
+     * @param   files       number of files to write
+     * @param   lines       approximate number of lines per file
+     * @param   seed        seed of the generator, equal seeds write equal trees
+     * @return  paths       the written files
+     */
+    public static List<Path> writeTree(Path baseDir, int files, int lines, long seed) throws IOException {
+        Random random = new Random(seed);
+        List<Path> paths = new ArrayList<>(files);
+        int packages = Math.max(1, files / 50);
+
+        for (int i = 0; i < files; i++) {
+            String packageName = "synthetic.module" + (i % packages % 10) + ".pkg" + (i % packages);
+            Path dir = baseDir.resolve(i % 5 == 4 ? "src/test/java" : "src/main/java").resolve(packageName.replace('.', '/'));
+            Path file = dir.resolve("Synthetic" + i + ".java");
+
+            Files.createDirectories(dir);
+
+            try (Writer writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+                writeSource(writer, packageName, "Synthetic" + i, lines, random);
+            }
+
+            paths.add(file);
+        }
+
+        return paths;
+    }
+
+    static void writeSource(Writer writer, String packageName, String className, int lines, Random random) throws IOException {
+        writer.write("/*\n * Copyright (c) synthetic sources\n */\n");
+        writer.write("package " + packageName + ";\n\n");
+        writer.write("import java.util.List;\n\n");
+        writer.write("/**\n * " + className + "\n */\n");
+        writer.write("public class " + className + " {\n");
+
+        int written = 12;
+        int method = 0;
+
+        while (written < lines) {
+            switch (random.nextInt(6)) {
+                case 0:
+                    writer.write("\n    /**\n     * Returns the value.\n     *\n     * @return  value\n     */\n");
+                    written += 7;
+                    break;
+                case 1:
+                    writer.write("    /* block comment\n       spanning lines */\n");
+                    written += 2;
+                    break;
+                case 2:
+                    writer.write("    // line comment\n\n");
+                    written += 2;
+                    break;
+                default:
+                    writer.write("    public int method" + method++ + "(List<String> values) {\n"
+                            + "        int sum = 0;\n"
+                            + "        for (String value : values) {\n"
+                            + "            sum += value.length(); // trailing comment\n"
+                            + "        }\n"
+                            + "        return sum;\n"
+                            + "    }\n");
+                    written += 7;
+                    break;
+            }
+        }
+
+        writer.write("}\n");
+    }
+}
@@ -0,0 +1,23 @@
+package kupusoglu.orhan.sloc_maven_plugin.engine;
+
+
+/**
+ * How the counts of the files are kept until the report is written.
+ */
+public enum Aggregation {
+    /**
+     * a map of the counts by key
+     */
+    FILES,
+
+    /**
+     * a {@link SourceTable} of interned names and primitive columns, the same report in a fraction of the heap
+     */
+    COLUMNAR,
+
+    /**
+     * a {@link SourceTable} which spills sorted runs of rows to temporary files, so the heap does not grow with the files:
+     * the console shows the totals per package, the saved report still holds every file
+     */
+    PACKAGES
+}
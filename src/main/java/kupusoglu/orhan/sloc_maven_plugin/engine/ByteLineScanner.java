@@ -0,0 +1,119 @@
+package kupusoglu.orhan.sloc_maven_plugin.engine;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.StandardCharsets;
+
+
+/**
+ * Hands each line of a channel to a {@link LineClassifier} as a region of a byte buffer, without decoding it.
+ * <br>
+ * Files of at least {@link #MAP_THRESHOLD} bytes are memory-mapped, smaller files and other channels
+ * are read into a pooled direct buffer, which grows up to the largest file read. Lines are terminated as in {@link java.io.BufferedReader#readLine()}.
+ * <br>
+ * Only charsets which encode every ASCII character as the same single byte qualify,
+ * see {@link #isAsciiCompatible(Charset)}. An instance reuses its buffer, hence it is confined to one thread.
+ */
+final class ByteLineScanner {
+    static final int MAP_THRESHOLD = 1 << 20;
+    static final int BUFFER_SIZE = 64 * 1024;
+
+    private final Charset charset;
+    private ByteBuffer pool = ByteBuffer.allocateDirect(BUFFER_SIZE);
+
+    ByteLineScanner(Charset charset) {
+        this.charset = charset;
+    }
+
+    /**
+     * In UTF-8 every byte of a multi-byte character is above 0x7F. Other charsets qualify if they
+     * encode each character in a single byte and ASCII as itself, for example ISO-8859-* and windows-125*.
+     *
+     * @param   charset     encoding of the source files
+     * @return  true if lines can be classified on their bytes
+     */
+    static boolean isAsciiCompatible(Charset charset) {
+        if (charset.equals(StandardCharsets.UTF_8) || charset.equals(StandardCharsets.US_ASCII)
+                || charset.equals(StandardCharsets.ISO_8859_1)) {
+            return true;
+        } else if (!charset.canEncode()) {
+            return false;
+        }
+
+        CharsetEncoder encoder = charset.newEncoder();
+
+        if (encoder.maxBytesPerChar() != 1.0f) {
+            return false;
+        }
+
+        byte[] ascii = new byte[128];
+        for (int i = 0; i < ascii.length; i++) {
+            ascii[i] = (byte) i;
+        }
+
+        return new String(ascii, StandardCharsets.US_ASCII).equals(new String(ascii, charset));
+    }
+
+    void scan(ReadableByteChannel channel, LineClassifier lines) throws IOException {
+        ByteBuffer buf = read(channel);
+        int end = buf.limit();
+        int lineStart = 0;
+
+        for (int pos = 0; pos < end; pos++) {
+            byte c = buf.get(pos);
+
+            // most bytes are above '\r', non-ASCII bytes are negative
+            if (c > '\r' || c < 0) {
+                continue;
+            }
+
+            if (c == '\n') {
+                lines.line(buf, lineStart, pos, charset);
+                lineStart = pos + 1;
+            } else if (c == '\r') {
+                lines.line(buf, lineStart, pos, charset);
+
+                if (pos + 1 < end && buf.get(pos + 1) == '\n') {
+                    pos++;
+                }
+
+                lineStart = pos + 1;
+            }
+        }
+
+        if (lineStart < end) {
+            lines.line(buf, lineStart, end, charset);
+        }
+    }
+
+    /**
+     * Read the whole channel into the pooled buffer, which grows as needed.
+     * The size of a file is queried only if it does not fit, a file too large for the pool is memory-mapped.
+     */
+    private ByteBuffer read(ReadableByteChannel channel) throws IOException {
+        pool.clear();
+
+        while (channel.read(pool) >= 0) {
+            if (!pool.hasRemaining()) {
+                long size = channel instanceof FileChannel ? ((FileChannel) channel).size() : -1;
+
+                if (size >= MAP_THRESHOLD) {
+                    return ((FileChannel) channel).map(FileChannel.MapMode.READ_ONLY, 0, size);
+                }
+
+                ByteBuffer larger = ByteBuffer.allocateDirect(Math.max(pool.capacity() << 1, Integer.highestOneBit((int) size) << 1));
+                pool.flip();
+                larger.put(pool);
+                pool = larger;
+            }
+        }
+
+        pool.flip();
+
+        return pool;
+    }
+}
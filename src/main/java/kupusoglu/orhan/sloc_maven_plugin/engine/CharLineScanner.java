@@ -0,0 +1,122 @@
+package kupusoglu.orhan.sloc_maven_plugin.engine;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.util.Arrays;
+
+
+/**
+ * Decodes a channel into a reused character buffer and hands each line to a {@link LineClassifier}
+ * as a region of that buffer.
+ * <br>
+ * Lines are terminated as in {@link java.io.BufferedReader#readLine()}: by '\n', '\r' or "\r\n".
+ * <br>
+ * An instance reuses its buffers and decoder, hence it is confined to one thread.
+ */
+final class CharLineScanner {
+    static final int BUFFER_SIZE = 8192;
+
+    private final CharsetDecoder decoder;
+    private final ByteBuffer in = ByteBuffer.allocate(BUFFER_SIZE);
+    private char[] buf = new char[BUFFER_SIZE];
+    private CharBuffer out = CharBuffer.wrap(buf);
+
+    CharLineScanner(Charset charset) {
+        // malformed input is replaced, as InputStreamReader does
+        this.decoder = charset.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    }
+
+    void scan(ReadableByteChannel channel, LineClassifier lines) throws IOException {
+        decoder.reset();
+        in.clear();
+        out.clear();
+
+        int lineStart = 0;
+        int pos = 0;
+        boolean skipLF = false;
+        boolean eof = false;
+        boolean flushing = false;
+        boolean done = false;
+
+        while (!done) {
+            if (flushing) {
+                done = decoder.flush(out).isUnderflow();
+            } else {
+                if (!eof && channel.read(in) < 0) {
+                    eof = true;
+                }
+
+                in.flip();
+                CoderResult result = decoder.decode(in, out, eof);
+                in.compact();
+
+                if (eof && result.isUnderflow()) {
+                    flushing = true;
+                    done = decoder.flush(out).isUnderflow();
+                }
+            }
+
+            int end = out.position();
+
+            // a '\r' at the end of the previous chunk
+            if (skipLF && pos < end) {
+                if (buf[pos] == '\n') {
+                    pos++;
+                    lineStart = pos;
+                }
+                skipLF = false;
+            }
+
+            for (; pos < end; pos++) {
+                char c = buf[pos];
+
+                // most characters are above '\r'
+                if (c > '\r') {
+                    continue;
+                }
+
+                if (c == '\n') {
+                    lines.line(buf, lineStart, pos);
+                    lineStart = pos + 1;
+                } else if (c == '\r') {
+                    lines.line(buf, lineStart, pos);
+
+                    if (pos + 1 < end) {
+                        if (buf[pos + 1] == '\n') {
+                            pos++;
+                        }
+                    } else {
+                        skipLF = true;
+                    }
+
+                    lineStart = pos + 1;
+                }
+            }
+
+            if (done) {
+                if (lineStart < end) {
+                    lines.line(buf, lineStart, end);
+                }
+            } else if (lineStart > 0) {
+                // keep the unterminated line at the start of the buffer
+                System.arraycopy(buf, lineStart, buf, 0, end - lineStart);
+                pos -= lineStart;
+                out.position(end - lineStart);
+                lineStart = 0;
+            } else if (!out.hasRemaining()) {
+                // a single line fills the buffer
+                buf = Arrays.copyOf(buf, buf.length * 2);
+                out = CharBuffer.wrap(buf);
+                out.position(end);
+            }
+        }
+    }
+}
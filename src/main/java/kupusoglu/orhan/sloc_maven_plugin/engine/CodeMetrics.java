@@ -0,0 +1,528 @@
+package kupusoglu.orhan.sloc_maven_plugin.engine;
+
+import java.nio.ByteBuffer;
+
+
+/**
+ * Computes the {@link SourceMetrics} of one file from its lines, as they are classified by the {@link LineClassifier}.
+ * <br>
+ * The length of every line is checked, and the trimmed code lines are scanned once more where they are, in the buffer
+ * of the file, the bytes of a non-ASCII character are taken as letters. Decoded lines are mapped to such bytes first.
+ * String and char literals, text blocks, trailing comments and the arguments of annotations are skipped,
+ * the other characters are words and symbols.
+ * <br>
+ * A brace opens a block of a kind: a type body after a type keyword or after the arguments of "new", a method body after
+ * a declaration with parameters at the level of a type body, else any other block. A declaration at the level of a type
+ * body which ends with ";" is an abstract method. The constants of an enum before its first ";" are not declarations.
+ * <br>
+ * An instance keeps the state of the file being counted, hence it is confined to one thread and {@link #reset()} before each file.
+ */
+final class CodeMetrics {
+    private final static byte OTHER = 0;
+    private final static byte TYPE = 1;
+    private final static byte ENUM = 2;
+    private final static byte METHOD = 3;
+
+    private final int longLine;
+    private byte[] bytes = new byte[256];
+    private ByteBuffer chars = ByteBuffer.wrap(bytes);
+    private byte[] blocks = new byte[16];
+    private int depth;
+    private int parens;
+    private int annotation;
+    private boolean textBlock;
+    private byte last;
+
+    // kind of the body of the type keyword found last, OTHER if it was opened
+    private byte pendingType;
+    // a '(' at the level of a type body before any '=' or statement keyword, the statement declares a method
+    private boolean declaration;
+    // a '=' or a statement keyword at the level of a type body before any '('
+    private boolean statement;
+    // parentheses open when the last "new" was found, -1 if none
+    private int newParens = -1;
+    // the arguments of "new" were just closed, a brace opens an anonymous class
+    private boolean anonymous;
+
+    private int types;
+    private int methods;
+    private int maxDepth;
+    private int longLines;
+    private int decisions;
+
+    /**
+     * @param   longLine    lines longer than that many columns are long
+     */
+    CodeMetrics(int longLine) {
+        super();
+
+        this.longLine = longLine;
+    }
+
+    void reset() {
+        depth = 0;
+        parens = 0;
+        annotation = 0;
+        textBlock = false;
+        last = ';';
+        pendingType = OTHER;
+        declaration = false;
+        statement = false;
+        newParens = -1;
+        anonymous = false;
+
+        types = 0;
+        methods = 0;
+        maxDepth = 0;
+        longLines = 0;
+        decisions = 0;
+    }
+
+    /**
+     * @param   columns     length of a line before it is trimmed
+     */
+    void columns(int columns) {
+        if (columns > longLine) {
+            longLines++;
+        }
+    }
+
+    /**
+     * @param   utf8    the bytes are UTF-8, a character is counted once for its first byte, else once per byte
+     */
+    void columns(ByteBuffer buf, int from, int to, boolean utf8) {
+        // a line of at most that many bytes is not longer in characters
+        if (to - from <= longLine) {
+            return;
+        }
+
+        int columns = to - from;
+
+        if (utf8) {
+            for (int i = from; i < to; i++) {
+                if ((buf.get(i) & 0xC0) == 0x80) {
+                    columns--;
+                }
+            }
+        }
+
+        columns(columns);
+    }
+
+    /**
+     * @param   buf     buffer holding the trimmed code line
+     * @param   from    first character of the line
+     * @param   to      end of the line
+     */
+    void line(char[] buf, int from, int to) {
+        int length = to - from;
+
+        if (bytes.length < length) {
+            bytes = new byte[Math.max(length, bytes.length * 2)];
+            chars = ByteBuffer.wrap(bytes);
+        }
+
+        for (int i = 0; i < length; i++) {
+            char c = buf[from + i];
+            bytes[i] = c < 0x80 ? (byte) c : (byte) 'x';
+        }
+
+        scan(chars, 0, length);
+    }
+
+    /**
+     * @param   buf     buffer of the file holding the trimmed code line, it is read in place
+     * @param   from    first byte of the line
+     * @param   to      end of the line
+     */
+    void line(ByteBuffer buf, int from, int to) {
+        scan(buf, from, to);
+    }
+
+    SourceMetrics getMetrics() {
+        return new SourceMetrics(types, methods, maxDepth, longLines, methods + decisions);
+    }
+
+    private void scan(ByteBuffer buf, int from, int to) {
+        int i = from;
+
+        if (textBlock) {
+            i = skipTextBlock(buf, i, to);
+        }
+
+        // a field declared on several lines ends with an operator, a line of a language without semicolons does not
+        if (parens == 0 && !isContinued(last)) {
+            statement = false;
+        }
+
+        for (; i < to; i++) {
+            byte c = buf.get(i);
+
+            // non-ASCII bytes are negative, never whitespace
+            if (c >= 0 && c <= ' ') {
+                continue;
+            }
+
+            if (c == '/' && i + 1 < to && buf.get(i + 1) == '/') {
+                return;
+            } else if (c == '/' && i + 1 < to && buf.get(i + 1) == '*') {
+                i = skipComment(buf, i + 2, to);
+                continue;
+            }
+
+            boolean afterNew = anonymous;
+            anonymous = false;
+
+            if (c == '"' && i + 2 < to && buf.get(i + 1) == '"' && buf.get(i + 2) == '"') {
+                textBlock = true;
+                i = skipTextBlock(buf, i + 3, to) - 1;
+            } else if (c == '"' || c == '\'') {
+                i = skipLiteral(buf, i, to);
+            } else if (annotation > 0) {
+                if (c == '(') {
+                    annotation++;
+                } else if (c == ')') {
+                    annotation--;
+                }
+            } else if (isWordStart(c)) {
+                int end = i + 1;
+
+                while (end < to && isWordPart(buf.get(end))) {
+                    end++;
+                }
+
+                word(buf, i, end, to, i > from && buf.get(i - 1) == '.');
+                i = end - 1;
+            } else if (c == '@' && !is(buf, i + 1, to, "interface")) {
+                i = skipAnnotation(buf, i + 1, to);
+            } else {
+                i = symbol(buf, from, i, to, afterNew);
+            }
+
+            last = buf.get(i);
+        }
+    }
+
+    /**
+     * Keywords are told apart by their first letter, an identifier is compared to two keywords at most.
+     */
+    private void word(ByteBuffer buf, int from, int end, int to, boolean qualified) {
+        switch (buf.get(from)) {
+            case 'c':
+                if (is(buf, from, end, "case") || is(buf, from, end, "catch")) {
+                    decision();
+                } else if (!qualified && is(buf, from, end, "class")) {
+                    type(buf, end, to, TYPE, false);
+                }
+                break;
+            case 'd':
+                if (is(buf, from, end, "do")) {
+                    statement();
+                }
+                break;
+            case 'e':
+                if (is(buf, from, end, "else")) {
+                    statement();
+                } else if (!qualified && is(buf, from, end, "enum")) {
+                    type(buf, end, to, ENUM, false);
+                }
+                break;
+            case 'f':
+                if (is(buf, from, end, "for")) {
+                    decision();
+                }
+                break;
+            case 'i':
+                if (is(buf, from, end, "if")) {
+                    decision();
+                } else if (!qualified && is(buf, from, end, "interface")) {
+                    type(buf, end, to, TYPE, false);
+                }
+                break;
+            case 'n':
+                if (is(buf, from, end, "new")) {
+                    newParens = parens;
+                    statement();
+                }
+                break;
+            case 'o':
+                if (!qualified && is(buf, from, end, "object")) {
+                    type(buf, end, to, TYPE, true);
+                }
+                break;
+            case 'r':
+                if (is(buf, from, end, "return")) {
+                    statement();
+                } else if (!qualified && is(buf, from, end, "record")) {
+                    type(buf, end, to, TYPE, false);
+                }
+                break;
+            case 's':
+                // "synchronized" is a modifier of methods as well
+                if (is(buf, from, end, "switch")) {
+                    statement();
+                }
+                break;
+            case 't':
+                if (is(buf, from, end, "throw") || is(buf, from, end, "try")) {
+                    statement();
+                } else if (!qualified && is(buf, from, end, "trait")) {
+                    type(buf, end, to, TYPE, false);
+                }
+                break;
+            case 'w':
+                if (is(buf, from, end, "while")) {
+                    decision();
+                }
+                break;
+            default:
+                break;
+        }
+    }
+
+    private void decision() {
+        decisions++;
+        statement();
+    }
+
+    /**
+     * A type keyword declares a type if a name follows it, "Foo.class" or a variable named "record" do not.
+     *
+     * @param   anonymous   the keyword may be followed by the body, as the "object" of Kotlin
+     */
+    private void type(ByteBuffer buf, int end, int to, byte kind, boolean anonymous) {
+        while (end < to && buf.get(end) >= 0 && buf.get(end) <= ' ') {
+            end++;
+        }
+
+        if (end < to && (isWordStart(buf.get(end)) || (anonymous && buf.get(end) == '{'))) {
+            // "enum class" of Kotlin is one type
+            if (pendingType == OTHER) {
+                types++;
+            }
+
+            if (pendingType != ENUM) {
+                pendingType = kind;
+            }
+        }
+    }
+
+    /**
+     * @return  index of the last character of the symbol
+     */
+    private int symbol(ByteBuffer buf, int from, int i, int to, boolean afterNew) {
+        byte c = buf.get(i);
+        byte next = i + 1 < to ? buf.get(i + 1) : (byte) ' ';
+
+        switch (c) {
+            case '{':
+                open(afterNew);
+                break;
+            case '}':
+                close();
+                break;
+            case ';':
+                end();
+                break;
+            case '(':
+                parens++;
+                if (isTypeLevel() && !statement && pendingType == OTHER) {
+                    declaration = true;
+                }
+                break;
+            case ')':
+                parens = Math.max(0, parens - 1);
+                if (parens == newParens) {
+                    anonymous = true;
+                    newParens = -1;
+                }
+                break;
+            case '=':
+                if (next == '=' || next == '>') {
+                    return i + 1;
+                }
+                if (i == from || "=!<>".indexOf(buf.get(i - 1)) < 0) {
+                    statement();
+                }
+                break;
+            case '&':
+            case '|':
+                if (next == c) {
+                    decisions++;
+                    return i + 1;
+                }
+                break;
+            case '?':
+                // the conditional operator, not a wildcard "<?" nor "?." and "?:"
+                if (i > from && buf.get(i - 1) >= 0 && buf.get(i - 1) <= ' ' && next >= 0 && next <= ' ') {
+                    decisions++;
+                }
+                break;
+            default:
+                break;
+        }
+
+        return i;
+    }
+
+    private void open(boolean afterNew) {
+        byte kind;
+
+        if (pendingType != OTHER) {
+            kind = pendingType;
+        } else if (afterNew || (depth > 0 && blocks[depth - 1] == ENUM)) {
+            // an anonymous class or the body of an enum constant
+            kind = TYPE;
+        } else if (isTypeLevel() && declaration && !statement) {
+            kind = METHOD;
+            methods++;
+        } else {
+            kind = OTHER;
+        }
+
+        if (depth == blocks.length) {
+            byte[] grown = new byte[depth * 2];
+            System.arraycopy(blocks, 0, grown, 0, depth);
+            blocks = grown;
+        }
+
+        blocks[depth++] = kind;
+        maxDepth = Math.max(maxDepth, depth);
+        clear();
+    }
+
+    private void close() {
+        if (depth > 0) {
+            depth--;
+        }
+
+        clear();
+    }
+
+    private void end() {
+        if (depth > 0 && blocks[depth - 1] == ENUM) {
+            // the constants end, the members follow
+            blocks[depth - 1] = TYPE;
+        } else if (isTypeLevel() && declaration && !statement) {
+            methods++;
+        }
+
+        clear();
+    }
+
+    private void clear() {
+        pendingType = OTHER;
+        declaration = false;
+        statement = false;
+        newParens = -1;
+    }
+
+    private void statement() {
+        if (!declaration) {
+            statement = true;
+        }
+    }
+
+    private boolean isTypeLevel() {
+        return depth == 0 || blocks[depth - 1] == TYPE;
+    }
+
+    /**
+     * @return  index of the closing quote, or of the last character if the literal is not closed
+     */
+    private static int skipLiteral(ByteBuffer buf, int i, int to) {
+        byte quote = buf.get(i);
+
+        for (int j = i + 1; j < to; j++) {
+            if (buf.get(j) == '\\') {
+                j++;
+            } else if (buf.get(j) == quote) {
+                return j;
+            }
+        }
+
+        return to - 1;
+    }
+
+    /**
+     * @return  index after the closing quotes, or the end of the line if the text block goes on
+     */
+    private int skipTextBlock(ByteBuffer buf, int i, int to) {
+        for (; i + 2 < to; i++) {
+            if (buf.get(i) == '\\') {
+                i++;
+            } else if (buf.get(i) == '"' && buf.get(i + 1) == '"' && buf.get(i + 2) == '"') {
+                textBlock = false;
+                return i + 3;
+            }
+        }
+
+        return to;
+    }
+
+    /**
+     * @return  index of the '/' which ends the comment, or of the last character if the comment goes on
+     */
+    private static int skipComment(ByteBuffer buf, int i, int to) {
+        for (; i + 1 < to; i++) {
+            if (buf.get(i) == '*' && buf.get(i + 1) == '/') {
+                return i + 1;
+            }
+        }
+
+        return to - 1;
+    }
+
+    /**
+     * Skip the name of an annotation, its arguments are skipped by the scan, they may span several lines.
+     *
+     * @return  index of the last character of the name, or of the '(' of the arguments
+     */
+    private int skipAnnotation(ByteBuffer buf, int i, int to) {
+        while (i < to && (isWordPart(buf.get(i)) || buf.get(i) == '.')) {
+            i++;
+        }
+
+        int next = i;
+
+        while (next < to && buf.get(next) >= 0 && buf.get(next) <= ' ') {
+            next++;
+        }
+
+        if (next < to && buf.get(next) == '(') {
+            annotation = 1;
+            return next;
+        }
+
+        return i - 1;
+    }
+
+    private static boolean is(ByteBuffer buf, int from, int end, String word) {
+        if (end - from < word.length() || (end - from > word.length() && isWordPart(buf.get(from + word.length())))) {
+            return false;
+        }
+
+        for (int i = 0; i < word.length(); i++) {
+            if (buf.get(from + i) != word.charAt(i)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private static boolean isContinued(byte c) {
+        return !isWordPart(c) && ";)]}\"'".indexOf(c) < 0;
+    }
+
+    /**
+     * @param   c   a letter of an identifier if negative, a byte of a non-ASCII character
+     */
+    private static boolean isWordStart(byte c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || c == '_' || c == '$' || c < 0;
+    }
+
+    private static boolean isWordPart(byte c) {
+        return isWordStart(c) || (c >= '0' && c <= '9');
+    }
+}
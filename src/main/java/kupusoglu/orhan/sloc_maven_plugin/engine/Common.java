@@ -1,14 +1,11 @@
 package kupusoglu.orhan.sloc_maven_plugin.engine;
 
-import org.apache.maven.plugin.MojoExecutionException;
-import org.apache.maven.plugin.logging.Log;
-
 import java.io.*;
+import java.nio.charset.Charset;
 import java.nio.file.Path;
 import java.util.*;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
-import java.util.stream.IntStream;
 
 
 /**
@@ -25,6 +22,10 @@ public class Common {
     }
 
     public static List<String> readTextFile(Path absolutePath) {
+        return readTextFile(absolutePath, Charset.defaultCharset());
+    }
+
+    public static List<String> readTextFile(Path absolutePath, Charset charset) {
         File file = new File(absolutePath.toString());
         List<String> lines = new ArrayList<>();
 
@@ -33,7 +34,7 @@ public class Common {
                 InputStream inputStream = new FileInputStream(file);
 
                 try (
-                    BufferedReader br = new BufferedReader(new InputStreamReader(inputStream))
+                    BufferedReader br = new BufferedReader(new InputStreamReader(inputStream, charset))
                 ) {
                     String line;
                     while ((line = br.readLine()) != null) {
@@ -50,10 +51,16 @@ public class Common {
         return lines;
     }
 
-    public static void countLines(Log log, String rootDir, String srcMain, String fileExt, boolean trimPkgNames, boolean display, boolean save)
-            throws MojoExecutionException {
-        CountLines countLines = new CountLines(log, rootDir, srcMain, fileExt, trimPkgNames, display, save);
-        countLines.execute();
+    public static String getFileType(Path path) {
+        String pathStr = path.toString();
+
+        if (pathStr.contains("/test/")) {
+            return "test";
+        } else if (pathStr.contains("/integration-test/")) {
+            return "int-test";
+        } else {
+            return "src";
+        }
     }
 
     public static String trimPackageName(String packageName) {
@@ -68,104 +75,345 @@ public class Common {
     }
 
     public static StringBuilder processSLOCData(TreeMap<String, int[]> locData, String fileExt, boolean trimPkgNames) {
+        List<SourceCount> counts = new ArrayList<>(locData.size());
+
+        for (Map.Entry<String, int[]> entry : locData.entrySet()) {
+            String key = entry.getKey();
+            int[] counters = entry.getValue();
+            int file = key.indexOf(':');
+            int type = key.indexOf(':', file + 1);
+
+            counts.add(new SourceCount(key, key.substring(0, file), key.substring(file + 1, type), key.substring(type + 1), "",
+                                       counters[0], counters[1], counters[2], counters[3], 0, null));
+        }
+
         StringBuilder sb = new StringBuilder();
 
-        if (locData.size() > 0) {
-            SortedSet<String> keys = new TreeSet<>(locData.keySet());
+        try {
+            processSLOCData(counts, fileExt, trimPkgNames, sb);
+        } catch (IOException e) {
+            // a StringBuilder does not throw
+            throw new UncheckedIOException(e);
+        }
 
-            Set<String> packageData = new TreeSet<>();
-            int longestPName = 0;
-            int longestCName = 0;
+        return sb;
+    }
 
-            for (String key : keys) {
-                String[] fields = key.split(":");
+    /**
+     * Format the counts of the files as a table, in the given order, which is the order of their keys.
+     * <br>
+     * The widths of the columns are computed first, then each row is padded in a reused buffer and appended to the output,
+     * so that large tables render in linear time.
+     * <br>
+     * If the files have {@link SourceMetrics} they are shown in five more columns, the totals line holds their sums
+     * and the deepest depth.
+     *
+     * @param   counts          counts of the files, ordered by {@link SourceCount#getKey()}
+     * @param   fileExt         extension of the files, shown in the totals line
+     * @param   trimPkgNames    remove the common prefix of the package names
+     * @param   out             the table is appended to it, nothing is appended if there are no files
+     * @throws  IOException     if the output cannot be written
+     */
+    public static void processSLOCData(Collection<SourceCount> counts, String fileExt, boolean trimPkgNames, Appendable out) throws IOException {
+        if (counts.isEmpty()) {
+            return;
+        }
 
-                String packageName = fields[0];
-                String className = fields[1];
+        Set<String> packageData = new HashSet<>();
+        int longestPName = 0;
+        int longestCName = 0;
+        boolean metrics = false;
 
-                packageData.add(packageName);
+        for (SourceCount count : counts) {
+            packageData.add(count.getPackageName());
+            metrics |= count.getMetrics() != null;
 
-                longestPName = Math.max(packageName.length(), longestPName);
-                longestCName = Math.max(className.length(), longestCName);
-            }
+            longestPName = Math.max(count.getPackageName().length(), longestPName);
+            longestCName = Math.max(count.getFileName().length(), longestCName);
+        }
 
-            String[] packageNames = packageData.stream()
-                    .toArray(String[]::new);
+        String commonPackage = "";
 
-            String commonPackage = "";
+        if (trimPkgNames) {
+            commonPackage = getCommonPackagePrefix(packageData.toArray(new String[0]));
 
-            if (trimPkgNames) {
-                commonPackage = getCommonPackagePrefix(packageNames);
+            // if all package names are identical, trim the last part of the common package name
+            if (commonPackage.length() == longestPName) {
+                commonPackage = Common.trimPackageName(commonPackage);
+            }
 
-                // if all package names are identical, trim the last part of the common package name
-                if (commonPackage.length() == longestPName) {
+            // if some package names will be eliminated completely, trim the last part of the common package name
+            for (String packageName : packageData) {
+                if (packageName.replace(commonPackage, "").isEmpty()) {
                     commonPackage = Common.trimPackageName(commonPackage);
+                    break;
                 }
+            }
+        }
 
-                // if some packagae names will be eliminated completely, trim the last part of the common package name
-                final String tempCommonPackage = commonPackage;
-                Optional<String> result = Arrays.stream(packageNames)
-                        .filter(s -> s.replace(tempCommonPackage, "").isEmpty())
-                        .findAny();
+        String packageLine = packageData.size() + " package(s)";
+        String classLine = counts.size() + " file(s)";
 
-                if (result.isPresent()) {
-                    commonPackage = Common.trimPackageName(commonPackage);
+        int headerP = Math.max(longestPName - commonPackage.length(), packageLine.length());
+        int headerC = Math.max(longestCName, classLine.length());
+
+        // MIN_HEADER_LEN is longer than the minimum headers.: "1 package(s)" & "1 file(s)"
+        headerP = Math.max(MIN_HEADER_LEN, headerP);
+        headerC = Math.max(MIN_HEADER_LEN, headerC);
+
+        // wider than 8 only for several extensions, for example "java,kt,xml"
+        int headerT = Math.max(8, fileExt.length());
+
+        StringBuilder line = new StringBuilder(headerP + headerC + headerT + 5 * 11 + 12);
+
+        line.append('+');
+        pad(line, '-', headerP + 2).append('+');
+        pad(line, '-', headerC + 2).append('+');
+        pad(line, '-', headerT + 2).append('+');
+        for (int i = 0; i < (metrics ? 10 : 5); i++) {
+            pad(line, '-', 10).append('+');
+        }
+        String lineHeader = line.append('\n').toString();
+
+        if (out instanceof StringBuilder) {
+            StringBuilder sb = (StringBuilder) out;
+            sb.ensureCapacity(sb.length() + lineHeader.length() * (counts.size() + packageData.size() + 6));
+        }
+
+        int[] totals = new int[5];
+        int[] metricTotals = metrics ? new int[5] : null;
+
+        out.append(lineHeader);
+        line.setLength(0);
+        appendRow(line, headerP, "Package Name", headerC, "File Name", headerT, "Type");
+        line.append(" Blank    | JavaDoc  | Comment  | Code     | Total    |");
+        if (metrics) {
+            line.append(" Types    | Methods  | Depth    | Long     | Complex  |");
+        }
+        line.append('\n');
+        out.append(line);
+        out.append(lineHeader);
+
+        int prefix = commonPackage.length();
+        String previousPackage = null;
+
+        for (SourceCount count : counts) {
+            String packageName = count.getPackageName();
+            int total = count.getTotal();
+
+            if (previousPackage != null && !packageName.equals(previousPackage)) {
+                out.append(lineHeader);
+            }
+            previousPackage = packageName;
+
+            line.setLength(0);
+            appendRow(line, headerP, packageName.substring(prefix), headerC, count.getFileName(), headerT, count.getFileType());
+            appendCounters(line, count.getBlank(), count.getJavaDoc(), count.getComment(), count.getCode(), total);
+            if (metrics) {
+                appendMetrics(line, count.getMetrics() != null ? count.getMetrics().getCounters() : null);
+                if (count.getMetrics() != null) {
+                    count.getMetrics().addTo(metricTotals, 0);
                 }
             }
+            out.append(line.append('\n'));
+
+            totals[0] += count.getBlank();
+            totals[1] += count.getJavaDoc();
+            totals[2] += count.getComment();
+            totals[3] += count.getCode();
+            totals[4] += total;
+        }
+
+        out.append(lineHeader);
+        line.setLength(0);
+        appendRow(line, headerP, packageLine, headerC, classLine, headerT, fileExt);
+        appendCounters(line, totals[0], totals[1], totals[2], totals[3], totals[4]);
+        if (metrics) {
+            appendMetrics(line, metricTotals);
+        }
+        out.append(line.append('\n'));
+        out.append(lineHeader);
+    }
+
+    private static StringBuilder pad(StringBuilder sb, char c, int count) {
+        for (int i = 0; i < count; i++) {
+            sb.append(c);
+        }
+
+        return sb;
+    }
+
+    /**
+     * "| package | file | type     |", left-aligned as "%-Ns"
+     */
+    private static void appendRow(StringBuilder sb, int headerP, String packageName, int headerC, String className,
+                                  int headerT, String classType) {
+        pad(sb.append("| ").append(packageName), ' ', headerP - packageName.length());
+        pad(sb.append(" | ").append(className), ' ', headerC - className.length());
+        pad(sb.append(" | ").append(classType), ' ', headerT - classType.length());
+        sb.append(" |");
+    }
+
+    /**
+     * " blank | javadoc | comment | code | total |", right-aligned as "%8d"
+     */
+    private static void appendCounters(StringBuilder sb, int blank, int javaDoc, int comment, int code, int total) {
+        appendCounter(sb, blank);
+        appendCounter(sb, javaDoc);
+        appendCounter(sb, comment);
+        appendCounter(sb, code);
+        appendCounter(sb, total);
+    }
+
+    /**
+     * " types | methods | depth | long | complex |", empty cells if there are no metrics
+     */
+    private static void appendMetrics(StringBuilder sb, int[] metrics) {
+        for (int i = 0; i < 5; i++) {
+            if (metrics != null) {
+                appendCounter(sb, metrics[i]);
+            } else {
+                pad(sb, ' ', 9).append(" |");
+            }
+        }
+    }
 
-            String packageLine = packageData.size() + " package(s)";
-            String classLine = locData.size() + " file(s)";
+    private static void appendCounter(StringBuilder sb, int counter) {
+        pad(sb.append(' '), ' ', 8 - digits(counter)).append(counter).append(" |");
+    }
 
-            int headerP = Math.max(longestPName - commonPackage.length(), packageLine.length());
-            int headerC = Math.max(longestCName, classLine.length());
+    private static int digits(int value) {
+        int digits = value < 0 ? 2 : 1;
 
-            // MIN_HEADER_LEN is longer than the minimum headers.: "1 package(s)" & "1 file(s)"
-            headerP = Math.max(MIN_HEADER_LEN, headerP);
-            headerC = Math.max(MIN_HEADER_LEN, headerC);
+        for (long rest = Math.abs((long) value); rest >= 10; rest /= 10) {
+            digits++;
+        }
+
+        return digits;
+    }
 
-            String lineHeader = String.format("+%0" + (headerP + 2) + "d+%0" + (headerC + 2) + "d+%010d+%010d+%010d+%010d+%010d+%010d+\n",
-                    0, 0, 0, 0, 0, 0, 0, 0).replace('0', '-');
+    /**
+     * Format the changes per package as a table.
+     *
+     * @param   deltas  package name to [files, blank, JavaDoc, comment, code] changes
+     * @param   title   content of the first column's header, for example the base revision
+     * @return  table   empty if there are no changes
+     */
+    public static StringBuilder processSLOCDelta(SortedMap<String, int[]> deltas, String title) {
+        return processSLOCTotals(deltas, title, "package(s)", true);
+    }
 
-            int[] totals = new int[5];
+    /**
+     * Format the files with the most code as a table, followed by the totals of all files, in one pass over the counts.
+     *
+     * @param   counts  counts of the files
+     * @param   rows    files shown at most
+     * @return  table   empty if there are no files
+     */
+    public static StringBuilder processSLOCTop(Collection<SourceCount> counts, int rows) {
+        PriorityQueue<SourceCount> top = new PriorityQueue<>(Comparator.comparingInt(SourceCount::getCode)
+                                                                       .thenComparing(SourceCount::getPath, Comparator.reverseOrder()));
+        int[] totals = new int[5];
+
+        for (SourceCount count : counts) {
+            totals[0]++;
+            totals[1] += count.getBlank();
+            totals[2] += count.getJavaDoc();
+            totals[3] += count.getComment();
+            totals[4] += count.getCode();
+
+            top.add(count);
+            if (top.size() > rows) {
+                top.poll();
+            }
+        }
 
-            sb.append(lineHeader);
-            sb.append(String.format("| %-" + headerP + "s | %-" + headerC + "s | %-8s | %-8s | %-8s | %-8s | %-8s | %-8s |\n",
-                    "Package Name", "File Name", "Type", "Blank", "JavaDoc", "Comment", "Code", "Total"));
-            sb.append(lineHeader);
+        List<SourceCount> largest = new ArrayList<>(top);
+        largest.sort(top.comparator().reversed());
 
-            String[] fields = locData.firstKey().split(":");
+        Map<String, int[]> table = new LinkedHashMap<>();
+        for (SourceCount count : largest) {
+            table.put(count.getPath(), new int[]{1, count.getBlank(), count.getJavaDoc(), count.getComment(), count.getCode()});
+        }
+
+        StringBuilder sb = processSLOCTotals(table, "File", "file(s)", false);
 
-            String commonPackageName = trimPkgNames ? fields[0].replace(commonPackage, "") : fields[0];
+        if (totals[0] > 0) {
+            sb.append(String.format("SLOC - the %d of %d file(s) with the most code, all files: "
+                                    + "blank %d, JavaDoc %d, comment %d, code %d, total %d\n",
+                                    largest.size(), totals[0], totals[1], totals[2], totals[3], totals[4],
+                                    totals[1] + totals[2] + totals[3] + totals[4]));
+        }
 
-            for (String key : keys) {
-                int[] counters = locData.get(key);
-                int total = IntStream.of(counters).sum();
+        return sb;
+    }
 
-                fields = key.split(":");
+    /**
+     * Format subtotals, for example per package or per module, as a table.
+     *
+     * @param   rows    name to [files, blank, JavaDoc, comment, code], in the order of the table
+     * @param   title   content of the first column's header
+     * @param   unit    unit of the rows in the totals line, for example "module(s)"
+     * @param   signed  format the values with their sign, for changes
+     * @return  table   empty if there are no rows
+     */
+    public static StringBuilder processSLOCTotals(Map<String, int[]> rows, String title, String unit, boolean signed) {
+        return processSLOCRows(rows, title, rows.size() + " " + unit, signed);
+    }
 
-                String packageName = trimPkgNames ? fields[0].replace(commonPackage, "") : fields[0];
-                String className = fields[1];
-                String classType = fields[2];
+    /**
+     * Format the totals of several points in time, for example one row per commit, as a table without a totals line.
+     *
+     * @param   rows    name to [files, blank, JavaDoc, comment, code], in the order of the table
+     * @param   title   content of the first column's header
+     * @return  table   empty if there are no rows
+     */
+    public static StringBuilder processSLOCHistory(Map<String, int[]> rows, String title) {
+        return processSLOCRows(rows, title, null, false);
+    }
 
-                if (!packageName.equals(commonPackageName)) {
-                    sb.append(lineHeader);
-                    commonPackageName = packageName;
-                }
+    private static StringBuilder processSLOCRows(Map<String, int[]> rows, String title, String rowsLine, boolean signed) {
+        StringBuilder sb = new StringBuilder();
 
-                sb.append(String.format("| %-" + headerP + "s | %-" + headerC + "s | %-8s | %8d | %8d | %8d | %8d | %8d |\n",
-                        packageName, className, classType, counters[0], counters[1], counters[2], counters[3], total));
+        if (rows.size() > 0) {
+            int headerP = Math.max(MIN_HEADER_LEN, Math.max(title.length(), rowsLine == null ? 0 : rowsLine.length()));
 
-                totals[0] += counters[0];
-                totals[1] += counters[1];
-                totals[2] += counters[2];
-                totals[3] += counters[3];
-                totals[4] += total;
+            for (String name : rows.keySet()) {
+                headerP = Math.max(headerP, name.length());
             }
 
+            String lineHeader = String.format("+%0" + (headerP + 2) + "d+%010d+%010d+%010d+%010d+%010d+%010d+\n",
+                    0, 0, 0, 0, 0, 0, 0).replace('0', '-');
+            String value = signed ? "%+8d" : "%8d";
+            String row = "| %-" + headerP + "s | " + value + " | " + value + " | " + value + " | " + value + " | " + value
+                    + " | " + value + " |\n";
+
+            int[] totals = new int[6];
+
+            sb.append(lineHeader);
+            sb.append(String.format("| %-" + headerP + "s | %-8s | %-8s | %-8s | %-8s | %-8s | %-8s |\n",
+                    title, "Files", "Blank", "JavaDoc", "Comment", "Code", "Total"));
             sb.append(lineHeader);
-            sb.append(String.format("| %-" + headerP + "s | %-" + headerC + "s | %-8s | %8d | %8d | %8d | %8d | %8d |\n",
-                    packageLine, classLine, fileExt, totals[0], totals[1], totals[2], totals[3], totals[4]));
+
+            for (Map.Entry<String, int[]> entry : rows.entrySet()) {
+                int[] counts = entry.getValue();
+                int total = counts[1] + counts[2] + counts[3] + counts[4];
+
+                sb.append(String.format(row, entry.getKey().isEmpty() ? "(default)" : entry.getKey(),
+                        counts[0], counts[1], counts[2], counts[3], counts[4], total));
+
+                for (int i = 0; i < 5; i++) {
+                    totals[i] += counts[i];
+                }
+                totals[5] += total;
+            }
+
             sb.append(lineHeader);
+
+            if (rowsLine != null) {
+                sb.append(String.format(row, rowsLine, totals[0], totals[1], totals[2], totals[3], totals[4], totals[5]));
+                sb.append(lineHeader);
+            }
         }
 
         return sb;
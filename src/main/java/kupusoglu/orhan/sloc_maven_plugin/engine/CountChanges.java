@@ -0,0 +1,360 @@
+package kupusoglu.orhan.sloc_maven_plugin.engine;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectLoader;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.IndexDiff;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.revwalk.filter.RevFilter;
+import org.eclipse.jgit.storage.file.FileRepositoryBuilder;
+import org.eclipse.jgit.treewalk.FileTreeIterator;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.eclipse.jgit.treewalk.filter.AndTreeFilter;
+import org.eclipse.jgit.treewalk.filter.OrTreeFilter;
+import org.eclipse.jgit.treewalk.filter.PathFilter;
+import org.eclipse.jgit.treewalk.filter.PathSuffixFilter;
+import org.eclipse.jgit.treewalk.filter.TreeFilter;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+
+
+/**
+ * Counts only the files changed since a base revision, read from the local git repository without any network access.
+ * <br>
+ * The base is the merge base of the given revision and HEAD. Changes are the files which differ between the base
+ * and HEAD, plus uncommitted and untracked files. Unchanged files are taken from a baseline of the base commit,
+ * which is built from the object store once and then stored.
+ * <br>
+ * The full table is printed as usual, followed by a table of the changes per package.
+ * <br>
+ * The files are classified and reported with the options of the given {@link SlocCounter}. Its source roots and shards
+ * are not supported, its cache is not used: the baseline takes its place.
+ */
+public class CountChanges {
+    public final static String BASELINE_FILE = "sloc-baseline.bin";
+    public final static String OUTPUT_DELTA_FILE = "sloc-delta.txt";
+
+    private SlocLog log;
+    private String baseDir;
+    private SlocCounter counter;
+    private String srcMain;
+    private String fileExt;
+    private boolean display;
+    private boolean save;
+    private String sinceRef;
+    private SourceCache baseline;
+    private SourceFilter filter = SourceFilter.ALL;
+
+
+    public CountChanges() {
+        super();
+    }
+
+    /**
+     * @param   log         log of the goal
+     * @param   baseDir     base directory, the reports are saved there
+     * @param   counter     options of the counts, the files are classified by its classifier and reported as by its counts
+     * @param   sinceRef    revision whose merge base with HEAD is the base
+     * @param   baseline    counts of the base commit, built if missing or of other settings, may be null
+     */
+    public CountChanges(SlocLog log, String baseDir, SlocCounter counter, String sinceRef, SourceCache baseline) {
+        this();
+
+        this.log = log;
+        this.baseDir = baseDir;
+        this.counter = counter;
+        this.srcMain = counter.getSrcMain();
+        this.fileExt = counter.getFileExt();
+        this.display = counter.isDisplay();
+        this.save = counter.isSave();
+        this.sinceRef = sinceRef;
+        this.baseline = baseline;
+        this.filter = counter.getFilter();
+    }
+
+    public void execute() throws MojoExecutionException {
+        if (!counter.getRoots().isEmpty()) {
+            throw new MojoExecutionException("Source roots are not supported with sinceRef, count the source directory instead");
+        }
+
+        if (counter.getShardCount() > 1) {
+            throw new MojoExecutionException("Shards are not supported with sinceRef, only the changed files are counted");
+        }
+
+        if (counter.hasCache()) {
+            log.warn("The SLOC cache is not used with sinceRef, the unchanged files are taken from the baseline");
+        }
+
+        SourceStats stats = counter.isStats() ? new SourceStats() : null;
+        Path basePath = Paths.get(baseDir).toAbsolutePath().normalize();
+        Path srcDir = basePath.resolve(srcMain).normalize();
+
+        FileRepositoryBuilder builder = new FileRepositoryBuilder().findGitDir(basePath.toFile());
+
+        if (builder.getGitDir() == null) {
+            throw new MojoExecutionException("Not inside a git repository: " + basePath);
+        }
+
+        try (Repository repository = builder.setMustExist(true).build()) {
+            Path workTree = repository.getWorkTree().toPath().toAbsolutePath().normalize();
+            String prefix = workTree.relativize(srcDir).toString().replace(File.separatorChar, '/');
+
+            RevCommit base = getMergeBase(repository);
+            RevCommit head = parseCommit(repository, Constants.HEAD);
+
+            SourceClassifier classifier = counter.getClassifier();
+            PathMapper paths = new PathMapper(workTree, basePath);
+
+            // the baseline holds all files of the base, the filter is applied to it as to the changes
+            long start = System.nanoTime();
+            Map<String, SourceCount> counts = getBaseline(repository, base, prefix, classifier, paths);
+            SortedMap<String, int[]> deltas = new TreeMap<>();
+
+            if (stats != null) {
+                stats.phase("baseline", System.nanoTime() - start);
+                start = System.nanoTime();
+            }
+
+            if (!filter.isEmpty()) {
+                counts.keySet().removeIf(path -> !filter.isIncluded(srcDir.relativize(basePath.resolve(path))));
+            }
+
+            for (String gitPath : getChanges(repository, base, head, prefix)) {
+                Path absolutePath = workTree.resolve(gitPath);
+
+                if (!filter.isEmpty() && !filter.isIncluded(srcDir.relativize(absolutePath))) {
+                    continue;
+                }
+
+                String path = paths.relative(gitPath);
+
+                SourceCount before = counts.remove(path);
+                if (before != null) {
+                    addDelta(deltas, before, -1);
+                }
+
+                if (Files.isRegularFile(absolutePath)) {
+                    long classified = System.nanoTime();
+                    SourceCount after = classifier.classify(absolutePath, path, Common.getFileType(absolutePath));
+
+                    if (stats != null) {
+                        stats.counted(path, System.nanoTime() - classified, Files.size(absolutePath));
+                    }
+
+                    counts.put(path, after);
+                    addDelta(deltas, after, 1);
+                }
+            }
+
+            deltas.values().removeIf(delta -> Arrays.stream(delta).allMatch(value -> value == 0));
+
+            if (stats != null) {
+                stats.phase("changes", System.nanoTime() - start);
+            }
+
+            CountSLOC countSLOC = new CountSLOC(counter, log, baseDir, Collections.emptyMap(), stats, null, () -> false);
+            for (SourceCount count : counts.values()) {
+                countSLOC.add(count);
+            }
+            countSLOC.done();
+
+            if (stats != null) {
+                log.info(stats.toString());
+            }
+
+            output(Common.processSLOCDelta(deltas, "Since " + base.abbreviate(7).name()).toString());
+        } catch (IOException e) {
+            throw new MojoExecutionException("Cannot read the git repository: " + e.getMessage(), e);
+        }
+    }
+
+    private RevCommit getMergeBase(Repository repository) throws IOException, MojoExecutionException {
+        RevCommit since = parseCommit(repository, sinceRef);
+        RevCommit head = parseCommit(repository, Constants.HEAD);
+
+        try (RevWalk walk = new RevWalk(repository)) {
+            walk.setRevFilter(RevFilter.MERGE_BASE);
+            walk.markStart(walk.parseCommit(since));
+            walk.markStart(walk.parseCommit(head));
+
+            RevCommit base = walk.next();
+
+            if (base == null) {
+                throw new MojoExecutionException("No common ancestor of " + sinceRef + " and HEAD");
+            }
+
+            return parseCommit(repository, base.name());
+        }
+    }
+
+    private static RevCommit parseCommit(Repository repository, String revision) throws IOException, MojoExecutionException {
+        ObjectId id = repository.resolve(revision);
+
+        if (id == null) {
+            throw new MojoExecutionException("Unknown revision: " + revision);
+        }
+
+        try (RevWalk walk = new RevWalk(repository)) {
+            return walk.parseCommit(id);
+        }
+    }
+
+    /**
+     * Counts of the base commit by path, loaded from the baseline or counted from the object store.
+     */
+    private Map<String, SourceCount> getBaseline(Repository repository, RevCommit base, String prefix, SourceClassifier classifier, PathMapper paths)
+            throws IOException {
+        String settings = classifier.getSettings(fileExt) + ";srcMain=" + srcMain + ";base=" + base.name();
+
+        if (baseline != null) {
+            baseline.load(settings);
+
+            // a base commit without source files is a valid baseline as well
+            if (baseline.isLoaded()) {
+                return baseline.getCounts();
+            }
+        }
+
+        Map<String, SourceCount> counts = new HashMap<>();
+
+        try (ObjectReader reader = repository.newObjectReader();
+             TreeWalk walk = new TreeWalk(reader)) {
+            walk.addTree(base.getTree());
+            walk.setRecursive(true);
+            walk.setFilter(getFilter(prefix));
+
+            while (walk.next()) {
+                String gitPath = walk.getPathString();
+                ObjectLoader loader = reader.open(walk.getObjectId(0), Constants.OBJ_BLOB);
+
+                try (InputStream in = loader.openStream()) {
+                    SourceCount count = classifier.classify(Channels.newChannel(in), paths.relative(gitPath), walk.getNameString(),
+                                                            Common.getFileType(paths.workTree.resolve(gitPath)));
+                    counts.put(count.getPath(), count);
+                }
+            }
+        }
+
+        if (baseline != null) {
+            counts.values().forEach(baseline::put);
+
+            try {
+                baseline.save();
+            } catch (IOException e) {
+                log.warn("Cannot write the SLOC baseline: " + e.getMessage());
+            }
+        }
+
+        return counts;
+    }
+
+    /**
+     * Paths relative to the work tree of the files which differ between the base and HEAD,
+     * and of the files which are modified, added, removed or untracked in the working tree.
+     */
+    private SortedSet<String> getChanges(Repository repository, RevCommit base, RevCommit head, String prefix) throws IOException {
+        SortedSet<String> changes = new TreeSet<>();
+
+        try (TreeWalk walk = new TreeWalk(repository)) {
+            walk.addTree(base.getTree());
+            walk.addTree(head.getTree());
+            walk.setRecursive(true);
+            walk.setFilter(AndTreeFilter.create(getFilter(prefix), TreeFilter.ANY_DIFF));
+
+            while (walk.next()) {
+                changes.add(walk.getPathString());
+            }
+        }
+
+        IndexDiff diff = new IndexDiff(repository, head.getId(), new FileTreeIterator(repository));
+        diff.setFilter(getFilter(prefix));
+        diff.diff();
+
+        changes.addAll(diff.getAdded());
+        changes.addAll(diff.getChanged());
+        changes.addAll(diff.getRemoved());
+        changes.addAll(diff.getMissing());
+        changes.addAll(diff.getModified());
+        changes.addAll(diff.getUntracked());
+
+        return changes;
+    }
+
+    private TreeFilter getFilter(String prefix) {
+        List<TreeFilter> suffixes = new ArrayList<>();
+
+        for (String extension : LanguageRegistry.getExtensions(fileExt)) {
+            suffixes.add(PathSuffixFilter.create("." + extension));
+        }
+
+        TreeFilter suffix;
+
+        // an OR takes two filters at least
+        if (suffixes.size() > 1) {
+            suffix = OrTreeFilter.create(suffixes);
+        } else if (suffixes.size() == 1) {
+            suffix = suffixes.get(0);
+        } else {
+            suffix = PathSuffixFilter.create(".");
+        }
+
+        return prefix.isEmpty() ? suffix : AndTreeFilter.create(PathFilter.create(prefix), suffix);
+    }
+
+    private static void addDelta(SortedMap<String, int[]> deltas, SourceCount count, int sign) {
+        int[] delta = deltas.computeIfAbsent(count.getPackageName(), key -> new int[5]);
+
+        delta[0] += sign;
+        delta[1] += sign * count.getBlank();
+        delta[2] += sign * count.getJavaDoc();
+        delta[3] += sign * count.getComment();
+        delta[4] += sign * count.getCode();
+    }
+
+    private void output(String data) {
+        if (display) {
+            if (data.length() > 0) {
+                log.info(String.format("SLOC - changes since: %s\n%s", sinceRef, data));
+            } else {
+                log.info("SLOC - no changes since: " + sinceRef);
+            }
+        }
+
+        if (save) {
+            try {
+                Files.write(Paths.get(baseDir, OUTPUT_DELTA_FILE), data.getBytes(StandardCharsets.UTF_8));
+            } catch (IOException e) {
+                log.error(e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Converts paths of the work tree to paths relative to the base directory.
+     */
+    private static final class PathMapper {
+        private final Path workTree;
+        private final Path basePath;
+
+        private PathMapper(Path workTree, Path basePath) {
+            this.workTree = workTree;
+            this.basePath = basePath;
+        }
+
+        private String relative(String gitPath) {
+            return basePath.relativize(workTree.resolve(gitPath)).toString().replace(File.separatorChar, '/');
+        }
+    }
+}
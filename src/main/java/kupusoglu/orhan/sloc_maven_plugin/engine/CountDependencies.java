@@ -0,0 +1,217 @@
+package kupusoglu.orhan.sloc_maven_plugin.engine;
+
+import org.apache.maven.plugin.MojoExecutionException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+
+/**
+ * Counts the source jars of the dependencies, streaming their entries without extracting them.
+ * <br>
+ * Each jar is read by a task of its own on a fork/join pool, with the same classifier as the source directory.
+ * The counts of a released artifact are kept in the cache by its coordinate, since its source jar never changes,
+ * so a cached artifact is not even opened. Snapshots, as told by the goal, are always counted.
+ * <br>
+ * The report is one table with a subtotal per artifact and the total of the dependencies.
+ */
+public class CountDependencies {
+    public final static String CACHE_FILE = "sloc-dependencies.bin";
+    public final static String OUTPUT_DEPENDENCIES_FILE = "sloc-dependencies.txt";
+    public final static String FILE_TYPE = "dependency";
+
+    private SlocLog log;
+    private String baseDir;
+    private Map<String, Path> jars;
+    private Set<String> snapshots = Collections.emptySet();
+    private String fileExt;
+    private String[] suffixes;
+    private boolean display;
+    private boolean save;
+    private int threads = 1;
+    private Charset charset = StandardCharsets.UTF_8;
+    private boolean nio;
+    private boolean lexer;
+    private int headerLines = SourceClassifier.HEADER_LINES;
+    private SourceCache cache;
+
+
+    public CountDependencies() {
+        super();
+    }
+
+    /**
+     * @param   log         log of the goal
+     * @param   baseDir     base directory of the project, the report is saved there
+     * @param   jars        coordinate "groupId:artifactId:version" to its source jar, in the order of the report
+     * @param   snapshots   coordinates of the snapshots among the jars, whose counts are not cached
+     * @param   cache       counts of the released artifacts of previous runs, may be null
+     */
+    public CountDependencies(SlocLog log, String baseDir, Map<String, Path> jars, Set<String> snapshots, String fileExt, boolean display,
+                             boolean save, int threads, Charset charset, boolean nio, boolean lexer, int headerLines, SourceCache cache) {
+        this();
+
+        this.log = log;
+        this.baseDir = baseDir;
+        this.jars = jars;
+        this.snapshots = snapshots;
+        this.fileExt = fileExt;
+        this.suffixes = LanguageRegistry.getSuffixes(fileExt);
+        this.display = display;
+        this.save = save;
+        this.threads = threads;
+        this.charset = charset;
+        this.nio = nio;
+        this.lexer = lexer;
+        this.headerLines = headerLines;
+        this.cache = cache;
+    }
+
+    public void execute() throws MojoExecutionException {
+        output(Common.processSLOCTotals(count(), "Artifact", "artifact(s)", false).toString());
+    }
+
+    /**
+     * @return  coordinate to [files, blank, JavaDoc, comment, code], in the order of the jars
+     * @throws  MojoExecutionException  if a jar cannot be read
+     */
+    public Map<String, int[]> count() throws MojoExecutionException {
+        SourceClassifier classifier = new SourceClassifier(charset, nio, LanguageRegistry.defaults(), lexer, headerLines, false, false,
+                                                           SourceMetrics.LONG_LINE);
+        Map<String, List<SourceCount>> cached = loadCache(classifier);
+        Map<String, ForkJoinTask<List<SourceCount>>> tasks = new LinkedHashMap<>();
+        ForkJoinPool pool = new ForkJoinPool(Math.max(1, threads));
+
+        try {
+            for (Map.Entry<String, Path> jar : jars.entrySet()) {
+                if (!cached.containsKey(jar.getKey())) {
+                    // all jars are submitted before waiting, a large jar does not hold up the others
+                    tasks.put(jar.getKey(), pool.submit(() -> countJar(classifier, jar.getKey(), jar.getValue())));
+                }
+            }
+
+            for (Map.Entry<String, ForkJoinTask<List<SourceCount>>> task : tasks.entrySet()) {
+                try {
+                    cached.put(task.getKey(), task.getValue().join());
+                } catch (RuntimeException e) {
+                    throw new MojoExecutionException("Cannot read the source jar of " + task.getKey() + ": " + e.getMessage(), e);
+                }
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        Map<String, int[]> subtotals = new LinkedHashMap<>();
+
+        for (String coordinate : jars.keySet()) {
+            int[] subtotal = new int[5];
+
+            for (SourceCount count : cached.get(coordinate)) {
+                subtotal[0]++;
+                subtotal[1] += count.getBlank();
+                subtotal[2] += count.getJavaDoc();
+                subtotal[3] += count.getComment();
+                subtotal[4] += count.getCode();
+
+                if (cache != null && !isSnapshot(coordinate)) {
+                    cache.put(count);
+                }
+            }
+
+            subtotals.put(coordinate, subtotal);
+        }
+
+        if (cache != null) {
+            log.info("SLOC cache - reused " + (jars.size() - tasks.size()) + " artifact(s): " + cache.getFile());
+
+            try {
+                cache.save();
+            } catch (IOException e) {
+                log.warn("Cannot write the SLOC cache: " + e.getMessage());
+            }
+        }
+
+        return subtotals;
+    }
+
+    /**
+     * @return  the cached counts of the files of each released artifact
+     */
+    private Map<String, List<SourceCount>> loadCache(SourceClassifier classifier) {
+        Map<String, List<SourceCount>> cached = new HashMap<>();
+
+        if (cache != null) {
+            cache.load(classifier.getSettings(fileExt));
+
+            for (SourceCount count : cache.getCounts().values()) {
+                String coordinate = count.getPath().substring(0, count.getPath().indexOf('/'));
+
+                if (jars.containsKey(coordinate) && !isSnapshot(coordinate)) {
+                    cached.computeIfAbsent(coordinate, key -> new ArrayList<>()).add(count);
+                }
+            }
+        }
+
+        return cached;
+    }
+
+    /**
+     * Count the entries of a jar one after another, each entry is inflated while it is classified.
+     */
+    private List<SourceCount> countJar(SourceClassifier classifier, String coordinate, Path jar) {
+        List<SourceCount> counts = new ArrayList<>();
+
+        try (ZipFile zip = new ZipFile(jar.toFile())) {
+            Enumeration<? extends ZipEntry> entries = zip.entries();
+
+            while (entries.hasMoreElements()) {
+                ZipEntry entry = entries.nextElement();
+                String name = entry.getName().substring(entry.getName().lastIndexOf('/') + 1);
+
+                if (!entry.isDirectory() && LanguageRegistry.hasSuffix(name, suffixes)) {
+                    try (InputStream in = zip.getInputStream(entry)) {
+                        counts.add(classifier.classify(Channels.newChannel(in), coordinate + "/" + entry.getName(), name, FILE_TYPE));
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(jar + ": " + e.getMessage(), e);
+        }
+
+        return counts;
+    }
+
+    private boolean isSnapshot(String coordinate) {
+        return snapshots.contains(coordinate);
+    }
+
+    private void output(String data) {
+        if (display) {
+            if (data.length() > 0) {
+                log.info(String.format("SLOC - dependencies: %d source jar(s)\n%s", jars.size(), data));
+            } else {
+                log.warn("Does not have source jars of dependencies: " + baseDir);
+            }
+        }
+
+        if (save) {
+            try {
+                Files.write(Paths.get(baseDir, OUTPUT_DEPENDENCIES_FILE), data.getBytes(StandardCharsets.UTF_8));
+            } catch (IOException e) {
+                log.error(e.getMessage());
+            }
+        }
+    }
+}
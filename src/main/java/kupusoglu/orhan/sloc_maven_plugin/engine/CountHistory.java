@@ -0,0 +1,277 @@
+package kupusoglu.orhan.sloc_maven_plugin.engine;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.storage.file.FileRepositoryBuilder;
+import org.eclipse.jgit.treewalk.CanonicalTreeParser;
+import org.eclipse.jgit.treewalk.TreeWalk;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+
+
+/**
+ * Counts the source directory of each commit of a range, read from the local git object store without a checkout.
+ * <br>
+ * Each file blob is counted once, its counts are kept by blob id, and the totals of a directory are kept by its tree id,
+ * so an unchanged directory costs one lookup. The cost grows with the number of distinct blobs and trees, not with
+ * the number of commits times the number of files.
+ * <br>
+ * The history is printed as one row per commit, oldest first, and saved as CSV.
+ */
+public class CountHistory {
+    public final static String OUTPUT_HISTORY_FILE = "sloc-history.csv";
+    public final static int MAX_COMMITS = 1000;
+
+    private final static DateTimeFormatter DATE = DateTimeFormatter.ofPattern("yyyy-MM-dd").withZone(ZoneOffset.UTC);
+
+    private SlocLog log;
+    private String baseDir;
+    private String srcMain;
+    private String[] suffixes;
+    private boolean display;
+    private boolean save;
+    private SourceClassifier classifier;
+    private SourceFilter filter = SourceFilter.ALL;
+    private String range = Constants.HEAD;
+    private int maxCommits = MAX_COMMITS;
+    private boolean firstParent = true;
+
+    // language name to blob id to [blank, JavaDoc, comment, code]
+    private final Map<String, Map<ObjectId, int[]>> blobs = new HashMap<>();
+    // directory relative to the source directory and tree id to [files, blank, JavaDoc, comment, code]
+    private final Map<String, int[]> trees = new HashMap<>();
+    private int counted;
+
+
+    public CountHistory() {
+        super();
+    }
+
+    /**
+     * @param   range       revision, for example "HEAD", or range of revisions, for example "v1.0..HEAD"
+     * @param   maxCommits  commits counted at most, the most recent ones
+     * @param   firstParent follow only the first parent of merge commits, the history of the mainline
+     */
+    public CountHistory(SlocLog log, String baseDir, String srcMain, String fileExt, boolean display, boolean save, Charset charset,
+                        boolean nio, boolean lexer, int headerLines, SourceFilter filter, String range, int maxCommits,
+                        boolean firstParent) {
+        this();
+
+        this.log = log;
+        this.baseDir = baseDir;
+        this.srcMain = srcMain;
+        this.suffixes = LanguageRegistry.getSuffixes(fileExt);
+        this.display = display;
+        this.save = save;
+        this.classifier = new SourceClassifier(charset, nio, LanguageRegistry.defaults(), lexer, headerLines, false, false,
+                                               SourceMetrics.LONG_LINE);
+        this.filter = filter;
+        this.range = range;
+        this.maxCommits = maxCommits;
+        this.firstParent = firstParent;
+    }
+
+    public void execute() throws MojoExecutionException {
+        Path basePath = Paths.get(baseDir).toAbsolutePath().normalize();
+        Path srcDir = basePath.resolve(srcMain).normalize();
+
+        FileRepositoryBuilder builder = new FileRepositoryBuilder().findGitDir(basePath.toFile());
+
+        if (builder.getGitDir() == null) {
+            throw new MojoExecutionException("Not inside a git repository: " + basePath);
+        }
+
+        // the commits of either side of a symmetric difference are not one history
+        if (range.contains("...")) {
+            throw new MojoExecutionException("A range of three dots is not supported, use two: " + range);
+        }
+
+        long start = System.nanoTime();
+
+        try (Repository repository = builder.setMustExist(true).build();
+             ObjectReader reader = repository.newObjectReader();
+             RevWalk walk = new RevWalk(reader)) {
+            Path workTree = repository.getWorkTree().toPath().toAbsolutePath().normalize();
+            String prefix = workTree.relativize(srcDir).toString().replace(File.separatorChar, '/');
+
+            int dots = range.indexOf("..");
+            String until = dots < 0 ? range : range.substring(dots + 2);
+
+            walk.setFirstParent(firstParent);
+            walk.markStart(walk.parseCommit(resolve(repository, until.isEmpty() ? Constants.HEAD : until)));
+
+            if (dots > 0) {
+                walk.markUninteresting(walk.parseCommit(resolve(repository, range.substring(0, dots))));
+            }
+
+            List<RevCommit> commits = new ArrayList<>();
+            List<int[]> totals = new ArrayList<>();
+
+            for (RevCommit commit : walk) {
+                if (commits.size() >= maxCommits) {
+                    break;
+                }
+
+                ObjectId tree = getSourceTree(reader, commit, prefix);
+
+                commits.add(commit);
+                totals.add(tree == null ? new int[5] : countTree(reader, tree, ""));
+            }
+
+            Collections.reverse(commits);
+            Collections.reverse(totals);
+
+            output(commits, totals, (System.nanoTime() - start) / 1000000);
+        } catch (IOException e) {
+            throw new MojoExecutionException("Cannot read the git repository: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * @return  distinct file blobs counted so far, a blob is counted once for all commits and runs
+     */
+    public int getCounted() {
+        return counted;
+    }
+
+    private static ObjectId resolve(Repository repository, String revision) throws IOException, MojoExecutionException {
+        ObjectId id = repository.resolve(revision);
+
+        if (id == null) {
+            throw new MojoExecutionException("Unknown revision: " + revision);
+        }
+
+        return id;
+    }
+
+    /**
+     * @return  tree of the source directory in the commit, null if the commit has none
+     */
+    private static ObjectId getSourceTree(ObjectReader reader, RevCommit commit, String prefix) throws IOException {
+        if (prefix.isEmpty()) {
+            return commit.getTree();
+        }
+
+        try (TreeWalk walk = TreeWalk.forPath(reader, prefix, commit.getTree())) {
+            return walk != null && FileMode.TREE.equals(walk.getRawMode(0)) ? walk.getObjectId(0) : null;
+        }
+    }
+
+    /**
+     * @param   dir     path of the tree relative to the source directory, the filter depends on it
+     * @return  totals  [files, blank, JavaDoc, comment, code] of the tree and its subtrees
+     */
+    private int[] countTree(ObjectReader reader, ObjectId tree, String dir) throws IOException {
+        String key = dir + '\0' + tree.name();
+        int[] totals = trees.get(key);
+
+        if (totals != null) {
+            return totals;
+        }
+
+        totals = new int[5];
+
+        for (CanonicalTreeParser parser = new CanonicalTreeParser(null, reader, tree); !parser.eof(); parser.next()) {
+            String name = parser.getEntryPathString();
+            String path = dir.isEmpty() ? name : dir + "/" + name;
+            int mode = parser.getEntryRawMode();
+
+            if (FileMode.TREE.equals(mode)) {
+                if (!filter.isExcludedDirectory(Paths.get(path))) {
+                    add(totals, countTree(reader, parser.getEntryObjectId(), path), 0);
+                }
+            } else if ((FileMode.REGULAR_FILE.equals(mode) || FileMode.EXECUTABLE_FILE.equals(mode))
+                       && LanguageRegistry.hasSuffix(name, suffixes) && filter.isIncludedFile(Paths.get(path))) {
+                totals[0]++;
+                add(totals, countBlob(reader, parser.getEntryObjectId(), path, name), 1);
+            }
+        }
+
+        trees.put(key, totals);
+
+        return totals;
+    }
+
+    /**
+     * @return  counts  [blank, JavaDoc, comment, code] of the blob with the grammar of the file's extension
+     */
+    private int[] countBlob(ObjectReader reader, ObjectId blob, String path, String name) throws IOException {
+        Map<ObjectId, int[]> counts = blobs.computeIfAbsent(classifier.getLanguages().forFileName(name).getName(), language -> new HashMap<>());
+        int[] result = counts.get(blob);
+
+        if (result == null) {
+            try (InputStream in = reader.open(blob, Constants.OBJ_BLOB).openStream()) {
+                SourceCount count = classifier.classify(Channels.newChannel(in), path, name, Common.getFileType(Paths.get(srcMain, path)));
+                result = new int[]{count.getBlank(), count.getJavaDoc(), count.getComment(), count.getCode()};
+            }
+
+            counts.put(blob, result);
+            counted++;
+        }
+
+        return result;
+    }
+
+    private static void add(int[] totals, int[] counts, int offset) {
+        for (int i = 0; i < counts.length; i++) {
+            totals[i + offset] += counts[i];
+        }
+    }
+
+    private void output(List<RevCommit> commits, List<int[]> totals, long millis) {
+        if (commits.isEmpty()) {
+            log.warn("SLOC - no commits in: " + range);
+            return;
+        }
+
+        if (display) {
+            Map<String, int[]> rows = new LinkedHashMap<>();
+
+            for (int i = 0; i < commits.size(); i++) {
+                RevCommit commit = commits.get(i);
+                rows.put(commit.abbreviate(7).name() + " " + DATE.format(Instant.ofEpochSecond(commit.getCommitTime())), totals.get(i));
+            }
+
+            log.info(String.format("SLOC - history of: %s\n%sSLOC - %d commit(s), %d distinct file(s) counted in %d ms",
+                                   range, Common.processSLOCHistory(rows, "Commit"), commits.size(), counted, millis));
+        }
+
+        if (save) {
+            List<String> lines = new ArrayList<>();
+            lines.add("commit,time,files,blank,javaDoc,comment,code,total");
+
+            for (int i = 0; i < commits.size(); i++) {
+                int[] counts = totals.get(i);
+
+                lines.add(String.format("%s,%s,%d,%d,%d,%d,%d,%d", commits.get(i).name(),
+                                        Instant.ofEpochSecond(commits.get(i).getCommitTime()),
+                                        counts[0], counts[1], counts[2], counts[3], counts[4],
+                                        counts[1] + counts[2] + counts[3] + counts[4]));
+            }
+
+            try {
+                Files.write(Paths.get(baseDir, OUTPUT_HISTORY_FILE), lines, StandardCharsets.UTF_8);
+            } catch (IOException e) {
+                log.error(e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,197 @@
+package kupusoglu.orhan.sloc_maven_plugin.engine;
+
+import org.apache.maven.plugin.MojoExecutionException;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+
+/**
+ * Counts the source directories of all modules of a reactor in one pass, with one shared fork/join pool
+ * which lists the directories of all modules and counts their files: a pool of its own shared by the modules,
+ * or the common pool with 0 threads.
+ * <br>
+ * A module whose source directory lies inside the source directory of another module, for example with
+ * <strong>srcMain</strong> ".", is already covered by that module and skipped.
+ * <br>
+ * The report holds the files of all modules, their paths relative to the base directory of the reactor, as a count
+ * of a single tree would, in the output format. The table is followed by a subtotal per module and the total of the reactor.
+ * Files of the same package, name and type in several modules are all reported, so the total is the sum of the subtotals.
+ */
+public class CountModules {
+    private SlocLog log;
+    private String rootDir;
+    private Map<String, String> modules;
+    private SlocCounter counter;
+    private String srcMain;
+    private String fileExt;
+    private boolean display;
+    private boolean save;
+    private int threads;
+    private OutputFormat outputFormat = OutputFormat.TABLE;
+    private boolean trimPkgNames;
+
+
+    public CountModules() {
+        super();
+    }
+
+    /**
+     * @param   log         log of the goal
+     * @param   rootDir     base directory of the reactor, the report is saved there
+     * @param   modules     module name to base directory, in the order of the report
+     * @param   counter     options of the counts, its threads make a pool shared by all modules, 0 walks on the common pool
+     */
+    public CountModules(SlocLog log, String rootDir, Map<String, String> modules, SlocCounter counter) {
+        this();
+
+        this.log = log;
+        this.rootDir = rootDir;
+        this.modules = modules;
+        this.counter = counter;
+        this.srcMain = counter.getSrcMain();
+        this.fileExt = counter.getFileExt();
+        this.display = counter.isDisplay();
+        this.save = counter.isSave();
+        this.threads = counter.getThreads();
+        this.outputFormat = counter.getOutputFormat();
+        this.trimPkgNames = counter.isTrimPkgNames();
+    }
+
+    public void execute() throws MojoExecutionException {
+        Map<String, CountSLOC> counters = new LinkedHashMap<>();
+        List<ForkJoinTask<?>> walks = new ArrayList<>();
+        ForkJoinPool pool = threads > 0 ? new ForkJoinPool(threads) : ForkJoinPool.commonPool();
+
+        try {
+            for (Map.Entry<String, Path> module : getSourceDirs().entrySet()) {
+                CountSLOC countSLOC = new CountSLOC(counter, log, modules.get(module.getKey()), Collections.emptyMap(), null, null,
+                                                    () -> false);
+
+                // all modules are submitted before waiting, so the pool is busy across module boundaries
+                walks.add(pool.submit(countSLOC.walk(module.getValue())));
+                counters.put(module.getKey(), countSLOC);
+            }
+
+            for (ForkJoinTask<?> walk : walks) {
+                walk.join();
+            }
+        } finally {
+            if (pool != ForkJoinPool.commonPool()) {
+                pool.shutdownNow();
+            }
+        }
+
+        // the files of all modules by path, files of the same key in several modules are all reported
+        List<SourceCount> counts = new ArrayList<>();
+        Path rootPath = Paths.get(rootDir).toAbsolutePath().normalize();
+        Map<String, int[]> subtotals = new LinkedHashMap<>();
+
+        for (Map.Entry<String, CountSLOC> entry : counters.entrySet()) {
+            String prefix = getModulePath(rootPath, modules.get(entry.getKey()));
+            int[] subtotal = new int[5];
+
+            for (SourceCount count : entry.getValue().getCounts()) {
+                subtotal[0]++;
+                subtotal[1] += count.getBlank();
+                subtotal[2] += count.getJavaDoc();
+                subtotal[3] += count.getComment();
+                subtotal[4] += count.getCode();
+
+                counts.add(new SourceCount(prefix + count.getPath(), count.getPackageName(), count.getFileName(), count.getFileType(),
+                                            count.getLanguage(), count.getBlank(), count.getJavaDoc(), count.getComment(), count.getCode(),
+                                            count.getHash(), count.getMetrics()));
+            }
+
+            subtotals.put(entry.getKey(), subtotal);
+        }
+
+        // ordered by key as the counts of a single tree, then by path
+        counts.sort(Comparator.comparing(SourceCount::getKey).thenComparing(SourceCount::getPath));
+
+        output(counts, subtotals);
+    }
+
+    /**
+     * @return  directory of the module relative to the base directory of the reactor, followed by '/' unless it is the base directory
+     */
+    private static String getModulePath(Path rootPath, String moduleDir) {
+        String path = rootPath.relativize(Paths.get(moduleDir).toAbsolutePath().normalize()).toString().replace(File.separatorChar, '/');
+
+        return path.isEmpty() ? path : path + "/";
+    }
+
+    /**
+     * Source directories of the modules which exist and are not inside the source directory of another module.
+     */
+    private Map<String, Path> getSourceDirs() {
+        Map<String, Path> sourceDirs = new LinkedHashMap<>();
+
+        for (Map.Entry<String, String> module : modules.entrySet()) {
+            sourceDirs.put(module.getKey(), Paths.get(module.getValue(), srcMain).toAbsolutePath().normalize());
+        }
+
+        Set<Path> roots = new HashSet<>(sourceDirs.values());
+
+        sourceDirs.entrySet().removeIf(module -> {
+            Path sourceDir = module.getValue();
+
+            if (!Files.isDirectory(sourceDir)) {
+                log.debug("Does not contain a source directory: " + sourceDir);
+                return true;
+            }
+
+            for (Path parent = sourceDir.getParent(); parent != null; parent = parent.getParent()) {
+                if (roots.contains(parent)) {
+                    log.debug("Already covered by " + parent + ": " + module.getKey());
+                    return true;
+                }
+            }
+
+            return false;
+        });
+
+        return sourceDirs;
+    }
+
+    private void output(Collection<SourceCount> counts, Map<String, int[]> subtotals) {
+        StringBuilder data = new StringBuilder();
+
+        try {
+            if (!counts.isEmpty()) {
+                OutputFormat.TABLE.write(counts, fileExt, trimPkgNames, data);
+                data.append(Common.processSLOCTotals(subtotals, "Module", "module(s)", false));
+            }
+
+            if (display) {
+                if (data.length() > 0) {
+                    log.info(String.format("SLOC - reactor: %s\n%s", rootDir, data));
+                } else {
+                    log.warn("Does not contain source files: " + rootDir + " : *." + fileExt);
+                }
+            }
+
+            if (save) {
+                Path file = Paths.get(rootDir, outputFormat.getFileName());
+
+                if (outputFormat == OutputFormat.TABLE) {
+                    Files.write(file, data.toString().getBytes(StandardCharsets.UTF_8));
+                } else {
+                    try (Writer writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+                        outputFormat.write(counts, fileExt, trimPkgNames, writer);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            log.error(e.getMessage());
+        }
+    }
+}
@@ -1,24 +1,28 @@
 package kupusoglu.orhan.sloc_maven_plugin.engine;
 
-import org.apache.maven.plugin.logging.Log;
-
-import java.io.File;
-import java.io.FileWriter;
-import java.io.IOException;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.*;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.util.*;
-import java.util.regex.Matcher;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
 
 
 /**
- * A {@code FileVisitor} that finds Java source files, <strong>*.java</strong>, and counts lines.
+ * A {@code FileVisitor} that finds the source files of the given extensions, for example <strong>*.java</strong> and
+ * <strong>*.kt</strong>, and counts their lines with the comment grammar of their language, see {@link LanguageRegistry}.
  * <br>
  * @see <a href="https://docs.oracle.com/javase/tutorial/essential/io/walk.html">Walking the File Tree</a>
  * @see <a href="https://docs.oracle.com/javase/tutorial/essential/io/examples/Find.java">Find.java</a>
  */
 public class CountSLOC extends SimpleFileVisitor<Path> {
-    private Log log;
+    public final static int REPORT_BUFFER = 1 << 16;
+
+    private SlocLog log;
     private String baseDir;
     private String srcMain;
     private String fileExt;
@@ -26,29 +30,89 @@ public class CountSLOC extends SimpleFileVisitor<Path> {
     private boolean display;
     private boolean save;
 
-    private PathMatcher matcherJava;
-    private TreeMap<String, int[]> locData = new TreeMap<>();
-    private boolean isblockComment = false;
-    private boolean isblockDoc = false;
-    private boolean isPackageFound = false;
-    private String packageName;
+    private String[] suffixes;
+    private Path basePath;
+    private Path srcPath;
+    private Root srcRoot;
+    private List<Root> roots;
+    private SourceFilter filter;
+    private SourceClassifier classifier;
+    private ConcurrentSkipListMap<String, SourceCount> locData = new ConcurrentSkipListMap<>();
+    private ConcurrentSkipListMap<String, SourceCount> shadowed = new ConcurrentSkipListMap<>();
+    private Aggregation aggregation;
+    private SourceTable table;
+    private SourceStats stats;
+    private BooleanSupplier cancelled;
+    private Consumer<SourceCount> progress;
+    private int displayRows;
+    private int shardIndex;
+    private int shardCount;
+
+    private SourceCache cache;
+    private OutputFormat outputFormat;
 
-    public CountSLOC() {
+    /**
+     * A count of a {@link SlocCounter}: the options are those of the counter, the other arguments are the state of this count.
+     * The walk stops once cancelled returns true, every file counted or taken from the cache is passed to the progress
+     * of the counter by the thread which counted it.
+     * <br>
+     * The given source roots are walked instead of the source directory. The type of the files of a root is the type
+     * of the root, it is not derived from the path of each file, and the patterns of the filter are relative to the root.
+     * A root inside another root is walked with the outer one only.
+     *
+     * @param   roots   source root to the type of its files, for example "src" or "test", resolved against the base directory,
+     *                  the source directory is walked if empty
+     */
+    CountSLOC(SlocCounter counter, SlocLog log, String baseDir, Map<Path, String> roots, SourceStats stats, SourceCache cache,
+              BooleanSupplier cancelled) {
         super();
-    }
-
-    public CountSLOC(Log log, String baseDir, String srcMain, String fileExt, boolean trimPkgNames, boolean display, boolean save) {
-        this();
 
         this.log = log;
         this.baseDir = baseDir;
-        this.srcMain = srcMain;
-        this.fileExt = fileExt;
-        this.trimPkgNames = trimPkgNames;
-        this.display = display;
-        this.save = save;
+        this.srcMain = counter.getSrcMain();
+        this.fileExt = counter.getFileExt();
+        this.trimPkgNames = counter.isTrimPkgNames();
+        this.display = counter.isDisplay();
+        this.save = counter.isSave();
+        this.outputFormat = counter.getOutputFormat();
+        this.filter = counter.getFilter();
+        this.aggregation = counter.getAggregation();
+        this.classifier = counter.getClassifier();
+        this.stats = stats;
+        this.cache = cache;
+        this.cancelled = cancelled;
+        this.progress = counter.getProgress();
+        this.displayRows = counter.getDisplayRows();
+        this.shardIndex = counter.getShardIndex();
+        this.shardCount = counter.getShardCount();
+
+        this.suffixes = LanguageRegistry.getSuffixes(fileExt);
+        this.basePath = Paths.get(baseDir).toAbsolutePath().normalize();
+        this.srcPath = basePath.resolve(srcMain).normalize();
+        this.srcRoot = new Root(srcPath, null);
+        this.roots = Collections.singletonList(srcRoot);
+
+        if (aggregation == Aggregation.COLUMNAR) {
+            this.table = new SourceTable();
+        } else if (aggregation == Aggregation.PACKAGES) {
+            this.table = new SourceTable(SourceTable.RUN_SIZE);
+        }
+
+        Map<Path, String> dirs = new LinkedHashMap<>();
+
+        for (Map.Entry<Path, String> root : roots.entrySet()) {
+            dirs.putIfAbsent(basePath.resolve(root.getKey()).normalize(), root.getValue());
+        }
 
-        this.matcherJava = FileSystems.getDefault().getPathMatcher("glob:*." + fileExt);
+        if (!dirs.isEmpty()) {
+            this.roots = new ArrayList<>();
+
+            for (Map.Entry<Path, String> root : dirs.entrySet()) {
+                if (dirs.keySet().stream().noneMatch(dir -> !dir.equals(root.getKey()) && root.getKey().startsWith(dir))) {
+                    this.roots.add(new Root(root.getKey(), root.getValue()));
+                }
+            }
+        }
     }
 
     /**
@@ -58,13 +122,49 @@ public class CountSLOC extends SimpleFileVisitor<Path> {
      * @return  result  FileVisitResult
      */
     public FileVisitResult collect(Path file) {
+        return collect(file, null);
+    }
+
+    /**
+     * If file is a source file, take its counts from the cache or process it.
+     * Only the file itself is matched by the filter, its directories are pruned by the walk.
+     *
+     * @param   file    A regular file
+     * @param   attrs   attributes of the file, may be null
+     * @return  result  FileVisitResult
+     */
+    public FileVisitResult collect(Path file, BasicFileAttributes attrs) {
+        return collect(file, attrs, srcRoot);
+    }
+
+    private FileVisitResult collect(Path file, BasicFileAttributes attrs, Root root) {
+        if (cancelled.getAsBoolean()) {
+            return FileVisitResult.TERMINATE;
+        }
+
         Path name = file.getFileName();
 
         if (name != null) {
             Path absolutePathOfFile = file.toAbsolutePath().normalize();
 
-            if (matcherJava.matches(name)) {
-                processSource(absolutePathOfFile);
+            if (LanguageRegistry.hasSuffix(name.toString(), suffixes)
+                    && (filter.isEmpty() || isIncluded(absolutePathOfFile, root))
+                    && (shardCount == 1 || SourceShards.shardOf(getRelativePath(absolutePathOfFile), shardCount) == shardIndex)) {
+                if (cache != null && attrs != null) {
+                    // unchanged files are not even opened
+                    SourceCount cached = cache.get(getRelativePath(absolutePathOfFile), attrs.size(), attrs.lastModifiedTime().toMillis());
+
+                    if (cached != null) {
+                        if (stats != null) {
+                            stats.cached();
+                        }
+
+                        counted(cached);
+                        return FileVisitResult.CONTINUE;
+                    }
+                }
+
+                processSource(absolutePathOfFile, attrs, root.fileType);
             } else {
                 return FileVisitResult.CONTINUE;
             }
@@ -73,152 +173,422 @@ public class CountSLOC extends SimpleFileVisitor<Path> {
         return FileVisitResult.CONTINUE;
     }
 
-    public void processSource(Path absolutePath) {
-        int fileCounterTotal = 0;
-        int fileCounterBlank = 0;
-        int fileCounterComment = 0;
-        int fileCounterJavaDoc = 0;
-        String trimmedLine;
-
-        List<String> lines = Common.readTextFile(absolutePath);
-
-        fileCounterTotal = lines.size();
-
-        isblockComment = false;
-        isblockDoc = false;
-        isPackageFound = false;
-
-        for (String line : lines) {
-            trimmedLine = line.trim();
-
-            if (isJavaDoc(trimmedLine)) {
-                fileCounterJavaDoc++;
-            } else if (isComment(trimmedLine)) {
-                fileCounterComment++;
-            } else if (isBlank(trimmedLine)) {
-                fileCounterBlank++;
-            } else if (!isPackageFound) {
-                if (isPackage(trimmedLine)) {
-                    // found package declaration
-                }
-            }
+    private boolean isIncluded(Path absolutePath, Root root) {
+        if (filter.isIncludedFile(root.dir.relativize(absolutePath))) {
+            return true;
         }
 
-        locData.put((packageName == null ? "" : packageName) + ":" + absolutePath.getFileName() + ":" + getFileType(absolutePath),
-                    new int[]{fileCounterBlank, fileCounterJavaDoc, fileCounterComment,
-                              fileCounterTotal - (fileCounterBlank + fileCounterJavaDoc + fileCounterComment)});
+        if (stats != null) {
+            stats.excluded();
+        }
+
+        return false;
     }
 
-    private boolean isBlank(String line) {
-        return line.isEmpty();
+    /**
+     * A task which walks the tree as {@link Files#walkFileTree(Path, FileVisitor)} does, on a {@code ForkJoinPool}:
+     * each directory is listed by a task of its own and its files are counted by the thread which lists it,
+     * so a large tree on a slow or cold file system is not listed by one thread.
+     *
+     * @param   dir     root directory of the walk
+     * @return  task    the walk, to be invoked on a {@code ForkJoinPool}
+     */
+    public ForkJoinTask<Void> walk(Path dir) {
+        return new DirectoryWalk(dir, srcRoot);
     }
 
-    private boolean isComment(String line) {
-        if (line.endsWith("*/")) {
-            if (this.isblockComment) {
-                this.isblockComment = false;
-                return true;
-            } else {
-                return false;
+    /**
+     * A task which walks the source roots, or the source directory if none were given, each root by a task of its own,
+     * see {@link #walk(Path)}.
+     *
+     * @return  task    the walk, to be invoked on a {@code ForkJoinPool}
+     */
+    public ForkJoinTask<Void> walk() {
+        return new RecursiveAction() {
+            @Override
+            protected void compute() {
+                List<DirectoryWalk> walks = new ArrayList<>();
+
+                for (Root root : roots) {
+                    walks.add(new DirectoryWalk(root.dir, root));
+                }
+
+                invokeAll(walks);
             }
-        } else if (this.isblockComment) {
-            return true;
-        } else if (line.startsWith("//")) {
-            this.isblockComment = false;
-            return true;
-        } else if (line.startsWith("/*") && !line.contains("*/")) {
-            this.isblockComment = true;
-            return true;
-        } else if (line.startsWith("/*") && line.endsWith("*/")) {
-            this.isblockComment = false;
-            return true;
-        } else {
-            return false;
+        };
+    }
+
+    /**
+     * Walk the source roots, or the source directory if none were given, one after another in the calling thread.
+     *
+     * @throws  IOException     if a root cannot be walked
+     */
+    public void walkFileTree() throws IOException {
+        for (Root root : roots) {
+            if (cancelled.getAsBoolean()) {
+                break;
+            }
+
+            Files.walkFileTree(root.dir, root == srcRoot ? this : new RootVisitor(root));
         }
     }
 
-    private boolean isJavaDoc(String line) {
-        if (line.endsWith("*/")) {
-            if (this.isblockDoc) {
-                this.isblockDoc = false;
-                return true;
+    public void processSource(Path absolutePath) {
+        processSource(absolutePath, null, null);
+    }
+
+    /**
+     * @param   fileType    type of the file, derived from its path if null
+     */
+    private void processSource(Path absolutePath, BasicFileAttributes attrs, String fileType) {
+        String path = getRelativePath(absolutePath);
+
+        try {
+            if (cache != null && attrs != null) {
+                long size = attrs.size();
+                long modified = attrs.lastModifiedTime().toMillis();
+                long crc = cache.crc(absolutePath);
+                SourceCount count = cache.get(path, size, modified, crc);
+
+                if (count == null) {
+                    count = classify(absolutePath, path, size, fileType);
+                    cache.put(count, size, modified, crc);
+                } else if (stats != null) {
+                    stats.cached();
+                }
+
+                counted(count);
             } else {
-                return false;
+                counted(classify(absolutePath, path, attrs != null ? attrs.size() : -1, fileType));
             }
-        } else if (this.isblockDoc) {
-            return true;
-        } else if (line.startsWith("/**") && !line.contains("*/")) {
-            this.isblockDoc = true;
-            return true;
-        } else if (line.startsWith("/**") && line.endsWith("*/")) {
-            this.isblockDoc = false;
-            return true;
-        } else {
-            return false;
+        } catch (IOException e) {
+            failed(absolutePath + ": " + e.getMessage());
+        } catch (UncheckedIOException e) {
+            failed(e.getMessage());
         }
     }
 
-    private boolean isPackage(String line) {
-        Matcher matcher = Common.PACKAGE_DECLARATION.matcher(line);
-        isPackageFound = matcher.find();
+    /**
+     * @param   size        size of the file, negative if not known
+     * @param   fileType    type of the file, derived from its path if null
+     */
+    private SourceCount classify(Path absolutePath, String path, long size, String fileType) {
+        String type = fileType != null ? fileType : Common.getFileType(absolutePath);
+
+        if (stats == null) {
+            return classifier.classify(absolutePath, path, type);
+        }
+
+        long start = System.nanoTime();
+        SourceCount count = classifier.classify(absolutePath, path, type);
+        stats.counted(path, System.nanoTime() - start, size >= 0 ? size : absolutePath.toFile().length());
+
+        return count;
+    }
 
-        if (isPackageFound) {
-            packageName = matcher.group(Common.PACKAGE_INDEX);
+    private void failed(String message) {
+        if (stats != null) {
+            stats.failed();
         }
 
-        return isPackageFound;
+        log.error(message);
     }
 
-    private String getFileType(Path path) {
-        String pathStr = path.toString();
+    private void counted(SourceCount count) {
+        add(count);
+
+        if (progress != null) {
+            progress.accept(count);
+        }
+    }
+
+    /**
+     * @return  true if the walk was stopped before its end
+     */
+    public boolean isCancelled() {
+        return cancelled.getAsBoolean();
+    }
 
-        if (pathStr.contains("/test/")) {
-            return "test";
-        } else if (pathStr.contains("/integration-test/")) {
-            return "int-test";
+    /**
+     * Add the counts of a file which was counted elsewhere, for example read from git.
+     *
+     * @param   count   counts of the file
+     */
+    public void add(SourceCount count) {
+        if (table != null) {
+            table.add(count);
         } else {
-            return "src";
+            locData.compute(count.getKey(), (key, kept) -> {
+                if (kept == null || kept.getPath().equals(count.getPath())) {
+                    return count;
+                }
+
+                SourceCount preferred = SourceCount.preferred(kept, count);
+                SourceCount other = preferred == kept ? count : kept;
+
+                shadowed.put(other.getPath(), other);
+
+                return preferred;
+            });
         }
     }
 
+    /**
+     * @return  the counts of the files whose key is held by another file, by path, see {@link #recount(Path, SourceCount)}
+     */
+    Collection<SourceCount> getShadowed() {
+        return Collections.unmodifiableCollection(shadowed.values());
+    }
+
+    /**
+     * @return  counts  the counts of the files collected so far, ordered by key
+     */
+    public Collection<SourceCount> getCounts() {
+        return Collections.unmodifiableCollection(table != null ? table : locData.values());
+    }
+
+    /**
+     * @return  package name to [files, blank, JavaDoc, comment, code] of the files collected so far, ordered by package name
+     */
+    public Map<String, int[]> getPackages() {
+        if (table != null) {
+            return table.getPackages();
+        }
+
+        Map<String, int[]> packages = new TreeMap<>();
+
+        for (SourceCount count : locData.values()) {
+            int[] rollup = packages.computeIfAbsent(count.getPackageName(), packageName -> new int[5]);
+            int[] counters = count.getCounters();
+
+            rollup[0]++;
+            for (int i = 0; i < counters.length; i++) {
+                rollup[i + 1] += counters[i];
+            }
+        }
+
+        return Collections.unmodifiableMap(packages);
+    }
+
+    private String getRelativePath(Path absolutePath) {
+        return basePath.relativize(absolutePath).toString().replace(File.separatorChar, '/');
+    }
+
+    /**
+     * @return  the source directory, or the source roots relative to the base directory separated by commas
+     */
+    private String getDirectory() {
+        if (roots.contains(srcRoot)) {
+            return baseDir + File.separator + srcMain;
+        }
+
+        StringJoiner directory = new StringJoiner(", ");
+
+        for (Root root : roots) {
+            directory.add(getRelativePath(root.dir));
+        }
+
+        return directory.toString();
+    }
+
+    /**
+     * Render the table of the collected files straight from their counts, which are ordered by key, and log it.
+     * <br>
+     * The report is saved in the output format. The table is saved from the logged buffer,
+     * otherwise the report is streamed to the file.
+     * <br>
+     * If the files are aggregated per package only the packages are logged, the table of the files is streamed
+     * to the file, then the spilled rows are deleted.
+     * <br>
+     * With stats the rendering and the saving are measured, the json report holds the stats measured before it.
+     */
     public void done() {
-        String data = Common.processSLOCData(locData, fileExt, trimPkgNames).toString();
+        Collection<SourceCount> counts = getCounts();
+        String directory = getDirectory();
+        StringBuilder logged = null;
+        int tableStart = 0;
+        long start = System.nanoTime();
 
         if (display) {
-            if (data.length() > 0) {
-                log.info(String.format("SLOC - directory: %s\n%s", (baseDir + File.separator + srcMain), data));
+            if (counts.isEmpty()) {
+                log.warn("Does not contain source files: " + directory + " : *." + fileExt);
             } else {
-                log.warn("Does not contain source files: " + (baseDir + File.separator + srcMain) + " : *." + fileExt);
+                logged = new StringBuilder(roots.contains(srcRoot) ? "SLOC - directory: " : "SLOC - source roots: ").append(directory)
+                                                                                                                   .append('\n');
+                tableStart = logged.length();
+
+                if (aggregation == Aggregation.PACKAGES) {
+                    log.info(logged.append(Common.processSLOCTotals(table.getPackages(), "Package Name", "package(s)", false)));
+                    logged = null;
+                } else if (displayRows > 0 && counts.size() > displayRows) {
+                    // a summary keeps the log short, the report is rendered to its file by itself
+                    log.info(logged.append(Common.processSLOCTop(counts, displayRows)));
+                    logged = null;
+                } else {
+                    try {
+                        OutputFormat.TABLE.write(counts, fileExt, trimPkgNames, logged);
+                    } catch (IOException e) {
+                        // a StringBuilder does not throw
+                        throw new UncheckedIOException(e);
+                    }
+
+                    log.info(logged);
+                }
             }
         }
 
+        if (stats != null) {
+            stats.phase("render", System.nanoTime() - start);
+            start = System.nanoTime();
+        }
+
         if (save) {
-            File file = new File(baseDir + File.separator + Common.OUTPUT_SLOC_FILE);
-            FileWriter writer = null;
+            saveReport(counts, logged, tableStart);
+
+            if (stats != null) {
+                stats.phase("save", System.nanoTime() - start);
+            }
+        }
 
+        close();
+    }
+
+    /**
+     * Delete the rows spilled by {@link Aggregation#PACKAGES}, the counts cannot be read any more.
+     */
+    public void close() {
+        if (table != null) {
             try {
-                writer = new FileWriter(file);
-                writer.append(data);
-                writer.flush();
+                table.close();
             } catch (IOException e) {
-                log.error(e.getMessage());
-            } finally {
-                try {
-                    if (writer != null) {
-                        writer.close();
+                log.warn("Cannot delete the spilled SLOC rows: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Save the report of the files collected so far, whether or not it is saved by {@link #done()}.
+     */
+    public void saveReport() {
+        saveReport(getCounts(), null, 0);
+    }
+
+    /**
+     * The report is written in UTF-8 to a temporary file which then replaces it, so a reader never sees a partial report.
+     *
+     * @param   logged      the logged table, saved as it is if not null
+     * @param   tableStart  start of the table in the logged buffer
+     */
+    private void saveReport(Collection<SourceCount> counts, StringBuilder logged, int tableStart) {
+        Path file = Paths.get(baseDir, outputFormat.getFileName());
+
+        try {
+            // not a createTempFile, which would leave the report readable by its owner only
+            Path temp = file.resolveSibling("." + outputFormat.getFileName() + ".tmp");
+
+            try {
+                // streamed in large chunks, the report is never held as a whole unless it was logged
+                try (Writer writer = new BufferedWriter(new OutputStreamWriter(Files.newOutputStream(temp), StandardCharsets.UTF_8.newEncoder()),
+                                                        REPORT_BUFFER)) {
+                    if (logged != null && outputFormat == OutputFormat.TABLE) {
+                        writer.append(logged, tableStart, logged.length());
+                    } else {
+                        outputFormat.write(counts, fileExt, trimPkgNames, stats, writer);
                     }
-                } catch (IOException e) {
-                    log.error(e.getMessage());
                 }
+
+                try {
+                    Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+                }
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        } catch (IOException | UncheckedIOException e) {
+            log.error(e.getMessage());
+        }
+    }
+
+    /**
+     * Count a file again after it was created, changed or deleted. Its previous counts are removed first, if they were
+     * reported another file of the same key takes their place, the files which lost their key to another one are kept
+     * by path for this.
+     *
+     * @param   file        the file, which may not exist any more
+     * @param   previous    its counts before the change, null if it is new
+     * @return  counts      its new counts, null if it is not a source file any more or cannot be read
+     * @throws  IllegalStateException   if the files are not aggregated in a map, see {@link Aggregation#FILES}
+     */
+    public SourceCount recount(Path file, SourceCount previous) {
+        if (table != null) {
+            throw new IllegalStateException("Files cannot be recounted with aggregation " + aggregation);
+        }
+
+        if (previous != null && !shadowed.remove(previous.getPath(), previous) && locData.remove(previous.getKey(), previous)) {
+            shadowed.values()
+                    .stream()
+                    .filter(count -> count.getKey().equals(previous.getKey()))
+                    .reduce(SourceCount::preferred)
+                    .ifPresent(count -> {
+                        shadowed.remove(count.getPath());
+                        locData.put(count.getKey(), count);
+                    });
+        }
+
+        Path absolutePath = file.toAbsolutePath().normalize();
+        Path name = absolutePath.getFileName();
+
+        if (name == null || !LanguageRegistry.hasSuffix(name.toString(), suffixes) || !Files.isRegularFile(absolutePath, LinkOption.NOFOLLOW_LINKS)
+                || !filter.isEmpty() && !filter.isIncluded(srcPath.relativize(absolutePath))) {
+            return null;
+        }
+
+        String path = getRelativePath(absolutePath);
+
+        try {
+            SourceCount count = classify(absolutePath, path, -1, null);
+            add(count);
+            return count;
+        } catch (UncheckedIOException e) {
+            failed(e.getMessage());
+            return null;
+        }
+    }
+
+    @Override
+    public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+        return preVisitDirectory(dir, srcRoot);
+    }
+
+    private FileVisitResult preVisitDirectory(Path dir, Root root) {
+        if (cancelled.getAsBoolean()) {
+            return FileVisitResult.TERMINATE;
+        } else if (filter.isEmpty() || !filter.isExcludedDirectory(root.dir.relativize(dir.toAbsolutePath().normalize()))) {
+            return FileVisitResult.CONTINUE;
+        } else {
+            if (stats != null) {
+                stats.excluded();
             }
+
+            log.debug("excluded: " + dir);
+            return FileVisitResult.SKIP_SUBTREE;
         }
     }
 
     @Override
     public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+        return visitFile(file, attrs, srcRoot);
+    }
+
+    private FileVisitResult visitFile(Path file, BasicFileAttributes attrs, Root root) {
         if (attrs.isRegularFile()) {
-            return collect(file);
+            return collect(file, attrs, root);
         } else {
+            if (stats != null) {
+                stats.skipped();
+            }
+
             log.warn("ignored - not a regular file: " + file);
             return FileVisitResult.CONTINUE;
         }
@@ -226,7 +596,93 @@ public class CountSLOC extends SimpleFileVisitor<Path> {
 
     @Override
     public FileVisitResult visitFileFailed(Path file, IOException e) {
-        log.error(e.getMessage());
+        failed(e.getMessage());
         return FileVisitResult.CONTINUE;
     }
+
+    /**
+     * A source directory or root and the type of its files, null if the type is derived from the path of each file.
+     */
+    private static final class Root {
+        private final Path dir;
+        private final String fileType;
+
+        private Root(Path dir, String fileType) {
+            this.dir = dir;
+            this.fileType = fileType;
+        }
+    }
+
+    /**
+     * Walks a source root with its type, as this visitor walks the source directory.
+     */
+    private final class RootVisitor extends SimpleFileVisitor<Path> {
+        private final Root root;
+
+        private RootVisitor(Root root) {
+            this.root = root;
+        }
+
+        @Override
+        public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+            return CountSLOC.this.preVisitDirectory(dir, root);
+        }
+
+        @Override
+        public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+            return CountSLOC.this.visitFile(file, attrs, root);
+        }
+
+        @Override
+        public FileVisitResult visitFileFailed(Path file, IOException e) {
+            return CountSLOC.this.visitFileFailed(file, e);
+        }
+    }
+
+    private final class DirectoryWalk extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final Path dir;
+        private final Root root;
+
+        private DirectoryWalk(Path dir, Root root) {
+            this.dir = dir;
+            this.root = root;
+        }
+
+        @Override
+        protected void compute() {
+            List<DirectoryWalk> subdirs = new ArrayList<>();
+
+            try (DirectoryStream<Path> entries = Files.newDirectoryStream(dir)) {
+                for (Path entry : entries) {
+                    BasicFileAttributes attrs;
+
+                    try {
+                        // links are not followed, as by Files.walkFileTree
+                        attrs = Files.readAttributes(entry, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                    } catch (IOException e) {
+                        visitFileFailed(entry, e);
+                        continue;
+                    }
+
+                    FileVisitResult result = attrs.isDirectory() ? preVisitDirectory(entry, root) : visitFile(entry, attrs, root);
+
+                    if (result == FileVisitResult.TERMINATE) {
+                        break;
+                    } else if (attrs.isDirectory() && result == FileVisitResult.CONTINUE) {
+                        DirectoryWalk subdir = new DirectoryWalk(entry, root);
+                        subdir.fork();
+                        subdirs.add(subdir);
+                    }
+                }
+            } catch (IOException | DirectoryIteratorException e) {
+                failed(dir + ": " + e.getMessage());
+            }
+
+            for (DirectoryWalk subdir : subdirs) {
+                subdir.join();
+            }
+        }
+    }
 }
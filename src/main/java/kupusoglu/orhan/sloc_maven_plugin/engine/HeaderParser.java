@@ -0,0 +1,207 @@
+package kupusoglu.orhan.sloc_maven_plugin.engine;
+
+
+/**
+ * Finds the package declaration in the header of a file, before its first other declaration.
+ * <br>
+ * It is given the code lines of a file one at a time and stops at the first token which is neither an annotation nor
+ * the package keyword, or after a limited number of lines, so that a file without a package declaration costs
+ * a few lines, not a scan of the whole file. Comments between tokens and annotations with arguments before the
+ * package are skipped, for example in a package-info.java or in a Kotlin file with {@code @file:JvmName("X")}.
+ * The package name ends at a semicolon or at the end of its line, hence Kotlin, Scala and Groovy need none.
+ * <br>
+ * No regex is used. An instance keeps the state of the file being parsed, hence it is confined to one thread
+ * and {@link #reset(Language)} before each file.
+ */
+final class HeaderParser {
+    private final static int TOKENS = 0;
+    private final static int ANNOTATION = 1;
+    private final static int ARGUMENTS = 2;
+    private final static int PACKAGE = 3;
+    private final static int NAME = 4;
+    private final static int DOT = 5;
+
+    private final int maxLines;
+    private final StringBuilder name = new StringBuilder();
+    private Language language = Language.JAVA;
+    private int state;
+    private int depth;
+    private int lines;
+    private String packageName;
+
+    /**
+     * @param   maxLines    code lines searched at most
+     */
+    HeaderParser(int maxLines) {
+        super();
+
+        this.maxLines = maxLines;
+    }
+
+    void reset(Language language) {
+        this.language = language;
+        name.setLength(0);
+        state = TOKENS;
+        depth = 0;
+        lines = 0;
+        packageName = null;
+    }
+
+    /**
+     * @param   buf     buffer holding a code line
+     * @param   from    first character of the line
+     * @param   to      end of the line, excluding the line terminator
+     * @return  true if the header is parsed, with or without a package declaration
+     */
+    boolean line(char[] buf, int from, int to) {
+        // a script may start with an interpreter line
+        if (lines++ == 0 && to - from > 1 && buf[from] == '#' && buf[from + 1] == '!') {
+            return false;
+        }
+
+        int i = from;
+
+        while (i < to) {
+            char c = buf[i];
+
+            if (c <= ' ') {
+                if (state == ANNOTATION) {
+                    state = TOKENS;
+                }
+                i++;
+            } else if (language.startsLine(buf, i, to)) {
+                break;
+            } else if (language.startsBlock(buf, i, to)) {
+                i = skipBlock(buf, i + language.getBlockStartLength(), to);
+            } else if (state == TOKENS) {
+                if (c == '@') {
+                    state = ANNOTATION;
+                    i++;
+                } else if (isKeyword(buf, i, to)) {
+                    state = PACKAGE;
+                    i += language.getPackageKeyword().length();
+                } else {
+                    return done(null);
+                }
+            } else if (state == ANNOTATION) {
+                // the name, optionally with a use-site target such as "file:", and its arguments
+                if (c == '(' || c == '[') {
+                    state = ARGUMENTS;
+                    depth = 1;
+                    i++;
+                } else if (isIdentifierPart(c) || c == '.' || c == ':') {
+                    i++;
+                } else {
+                    state = TOKENS;
+                }
+            } else if (state == ARGUMENTS) {
+                int literal = language.startsLiteral(buf, i, to);
+
+                if (literal >= 0) {
+                    i = skipLiteral(literal, buf, i + language.getLiteralLength(literal), to);
+                } else {
+                    if (c == '(' || c == '[' || c == '{') {
+                        depth++;
+                    } else if ((c == ')' || c == ']' || c == '}') && --depth == 0) {
+                        state = TOKENS;
+                    }
+                    i++;
+                }
+            } else if (state == NAME) {
+                if (c != '.') {
+                    return done(name.toString());
+                }
+
+                name.append('.');
+                state = DOT;
+                i++;
+            } else if (isIdentifierPart(c)) {
+                int end = i + 1;
+                while (end < to && isIdentifierPart(buf[end])) {
+                    end++;
+                }
+
+                name.append(buf, i, end - i);
+                state = NAME;
+                i = end;
+            } else {
+                return done(null);
+            }
+        }
+
+        if (state == NAME) {
+            return done(name.toString());
+        } else if (state == ANNOTATION) {
+            state = TOKENS;
+        }
+
+        return lines >= maxLines && done(null);
+    }
+
+    /**
+     * @return  the package name, null if there is none or the header is not parsed yet
+     */
+    String getPackageName() {
+        return packageName;
+    }
+
+    private boolean done(String packageName) {
+        this.packageName = packageName;
+
+        return true;
+    }
+
+    private boolean isKeyword(char[] buf, int from, int to) {
+        String keyword = language.getPackageKeyword();
+        int end = from + keyword.length();
+
+        if (end > to || (end < to && isIdentifierPart(buf[end]))) {
+            return false;
+        }
+
+        for (int i = 0; i < keyword.length(); i++) {
+            if (buf[from + i] != keyword.charAt(i)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * @return  the end of the comment, or the end of the line if it continues on the next line
+     */
+    private int skipBlock(char[] buf, int i, int to) {
+        for (; i < to; i++) {
+            if (language.atBlockEnd(buf, i, to)) {
+                return i + language.getBlockEndLength();
+            }
+        }
+
+        return to;
+    }
+
+    /**
+     * @return  the end of the literal, or the end of the line if it is not closed
+     */
+    private int skipLiteral(int literal, char[] buf, int i, int to) {
+        while (i < to) {
+            if (buf[i] == language.getEscape() && language.getEscape() != 0) {
+                i += 2;
+            } else if (language.endsLiteral(literal, buf, i, to)) {
+                return i + language.getLiteralLength(literal);
+            } else {
+                i++;
+            }
+        }
+
+        return to;
+    }
+
+    /**
+     * Letters, digits, '_', '$' and the backticks of quoted Kotlin and Scala names.
+     */
+    private static boolean isIdentifierPart(char c) {
+        return Character.isJavaIdentifierPart(c) && !Character.isIdentifierIgnorable(c) || c == '`' || Character.isSurrogate(c);
+    }
+}
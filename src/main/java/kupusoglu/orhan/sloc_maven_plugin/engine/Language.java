@@ -0,0 +1,342 @@
+package kupusoglu.orhan.sloc_maven_plugin.engine;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+
+/**
+ * Comment grammar of a language: line comment markers, a block comment and a documentation comment,
+ * which starts with its own marker and ends as a block comment.
+ * <br>
+ * The delimiters of string and character literals are only used by the {@link LineLexer}, which tells markers inside
+ * literals from real comments. Text blocks are literals which span lines. Block comments may nest, as in Kotlin and Scala.
+ * <br>
+ * The markers are compiled into tables of their first and last characters, so most lines are rejected
+ * by a single lookup before any marker is compared. Markers are ASCII, hence they match the same on chars and bytes.
+ * <br>
+ * Instances are immutable and shared by all threads.
+ */
+public final class Language {
+    public final static Language JAVA = new Language("java", new String[] {"java"}, new String[] {"//"}, "/*", "*/", "/**", "package",
+                                                     new String[] {"\"", "'"}, new String[] {"\"\"\""}, '\\', false);
+
+    final static int LINE = 1;
+    final static int BLOCK = 2;
+    final static int DOC = 4;
+    final static int QUOTE = 8;
+
+    private final String name;
+    private final List<String> extensions;
+    private final char[][] lineMarkers;
+    private final char[] blockStart;
+    private final char[] blockEnd;
+    private final char[] docStart;
+    private final String packageKeyword;
+    // text blocks first, so that the longest delimiter is matched
+    private final char[][] literals;
+    private final int textBlocks;
+    private final char escape;
+    private final boolean nested;
+
+    // flags of the first characters of the starting markers, and the last character of the block end
+    private final byte[] starts = new byte[128];
+    private final char blockEndLast;
+
+    /**
+     * @param   name            name of the language in the report
+     * @param   extensions      file extensions without the dot
+     * @param   lineMarkers     markers of line comments, may be empty
+     * @param   blockStart      start of block comments, null if there are none
+     * @param   blockEnd        end of block and documentation comments
+     * @param   docStart        start of documentation comments, null if there are none
+     * @param   packageKeyword  starts the package declaration in the header, null if there is none
+     */
+    public Language(String name, String[] extensions, String[] lineMarkers, String blockStart, String blockEnd, String docStart,
+                    String packageKeyword) {
+        this(name, extensions, lineMarkers, blockStart, blockEnd, docStart, packageKeyword, new String[0], new String[0],
+             (char) 0, false);
+    }
+
+    /**
+     * @param   strings         delimiters of string and character literals which end with their line
+     * @param   textBlocks      delimiters of literals which span lines
+     * @param   escape          escapes the next character inside a literal, 0 if there is none
+     * @param   nested          block comments nest
+     */
+    public Language(String name, String[] extensions, String[] lineMarkers, String blockStart, String blockEnd, String docStart,
+                    String packageKeyword, String[] strings, String[] textBlocks, char escape, boolean nested) {
+        this.name = name;
+        this.extensions = Collections.unmodifiableList(Arrays.asList(extensions.clone()));
+        this.lineMarkers = new char[lineMarkers.length][];
+        this.blockStart = blockStart == null ? null : ascii(blockStart);
+        this.blockEnd = blockStart == null ? null : ascii(blockEnd);
+        this.docStart = blockStart == null || docStart == null ? null : ascii(docStart);
+        this.packageKeyword = packageKeyword;
+        this.literals = new char[textBlocks.length + strings.length][];
+        this.textBlocks = textBlocks.length;
+        this.escape = escape;
+        this.nested = nested;
+
+        for (int i = 0; i < lineMarkers.length; i++) {
+            this.lineMarkers[i] = ascii(lineMarkers[i]);
+            starts[this.lineMarkers[i][0]] |= LINE;
+        }
+
+        for (int i = 0; i < literals.length; i++) {
+            literals[i] = ascii(i < this.textBlocks ? textBlocks[i] : strings[i - this.textBlocks]);
+            starts[literals[i][0]] |= QUOTE;
+        }
+
+        if (this.blockStart != null) {
+            starts[this.blockStart[0]] |= BLOCK;
+        }
+        if (this.docStart != null) {
+            starts[this.docStart[0]] |= DOC;
+        }
+
+        this.blockEndLast = this.blockEnd == null ? 0 : this.blockEnd[this.blockEnd.length - 1];
+    }
+
+    /**
+     * The same grammar under another name, for example for an unregistered extension.
+     */
+    Language rename(String name, String extension) {
+        return new Language(name, new String[] {extension}, toStrings(lineMarkers), toString(blockStart), toString(blockEnd),
+                            toString(docStart), packageKeyword,
+                            toStrings(Arrays.copyOfRange(literals, textBlocks, literals.length)),
+                            toStrings(Arrays.copyOf(literals, textBlocks)), escape, nested);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public List<String> getExtensions() {
+        return extensions;
+    }
+
+    String getPackageKeyword() {
+        return packageKeyword;
+    }
+
+    /**
+     * @return  flags of the markers starting with each ASCII character, 0 for most characters
+     */
+    byte[] getStarts() {
+        return starts;
+    }
+
+    boolean isNested() {
+        return nested;
+    }
+
+    char getEscape() {
+        return escape;
+    }
+
+    int getBlockStartLength() {
+        return blockStart.length;
+    }
+
+    int getBlockEndLength() {
+        return blockEnd.length;
+    }
+
+    int getDocStartLength() {
+        return docStart.length;
+    }
+
+    char getBlockStartFirst() {
+        return blockStart[0];
+    }
+
+    char getBlockEndFirst() {
+        return blockEnd[0];
+    }
+
+    char getLiteralFirst(int literal) {
+        return literals[literal][0];
+    }
+
+    int getLiteralLength(int literal) {
+        return literals[literal].length;
+    }
+
+    /**
+     * @return  true if the literal spans lines
+     */
+    boolean isTextBlock(int literal) {
+        return literal < textBlocks;
+    }
+
+    boolean startsLine(char[] buf, int from, int to) {
+        if (from == to || buf[from] >= 128 || (starts[buf[from]] & LINE) == 0) {
+            return false;
+        }
+
+        for (char[] marker : lineMarkers) {
+            if (matches(buf, from, to, marker)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    boolean startsBlock(char[] buf, int from, int to) {
+        return from < to && buf[from] < 128 && (starts[buf[from]] & BLOCK) != 0 && matches(buf, from, to, blockStart);
+    }
+
+    boolean startsDoc(char[] buf, int from, int to) {
+        return from < to && buf[from] < 128 && (starts[buf[from]] & DOC) != 0 && matches(buf, from, to, docStart);
+    }
+
+    boolean endsBlock(char[] buf, int from, int to) {
+        return blockEnd != null && to > from && buf[to - 1] == blockEndLast && to - blockEnd.length >= from
+                && matches(buf, to - blockEnd.length, to, blockEnd);
+    }
+
+    boolean containsBlockEnd(char[] buf, int from, int to) {
+        char first = blockEnd[0];
+
+        for (int i = from; i <= to - blockEnd.length; i++) {
+            if (buf[i] == first && matches(buf, i, to, blockEnd)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * @return  true if the block end is at the position
+     */
+    boolean atBlockEnd(char[] buf, int pos, int to) {
+        return blockEnd != null && matches(buf, pos, to, blockEnd);
+    }
+
+    /**
+     * @return  index of the literal delimiter at the position, or -1
+     */
+    int startsLiteral(char[] buf, int pos, int to) {
+        for (int i = 0; i < literals.length; i++) {
+            if (matches(buf, pos, to, literals[i])) {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+    boolean endsLiteral(int literal, char[] buf, int pos, int to) {
+        return matches(buf, pos, to, literals[literal]);
+    }
+
+    boolean startsLine(ByteBuffer buf, int from, int to) {
+        if (from == to || buf.get(from) < 0 || (starts[buf.get(from)] & LINE) == 0) {
+            return false;
+        }
+
+        for (char[] marker : lineMarkers) {
+            if (matches(buf, from, to, marker)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    boolean startsBlock(ByteBuffer buf, int from, int to) {
+        return from < to && buf.get(from) >= 0 && (starts[buf.get(from)] & BLOCK) != 0 && matches(buf, from, to, blockStart);
+    }
+
+    boolean startsDoc(ByteBuffer buf, int from, int to) {
+        return from < to && buf.get(from) >= 0 && (starts[buf.get(from)] & DOC) != 0 && matches(buf, from, to, docStart);
+    }
+
+    boolean endsBlock(ByteBuffer buf, int from, int to) {
+        return blockEnd != null && to > from && buf.get(to - 1) == blockEndLast && to - blockEnd.length >= from
+                && matches(buf, to - blockEnd.length, to, blockEnd);
+    }
+
+    boolean containsBlockEnd(ByteBuffer buf, int from, int to) {
+        char first = blockEnd[0];
+
+        for (int i = from; i <= to - blockEnd.length; i++) {
+            if (buf.get(i) == first && matches(buf, i, to, blockEnd)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    boolean atBlockEnd(ByteBuffer buf, int pos, int to) {
+        return blockEnd != null && matches(buf, pos, to, blockEnd);
+    }
+
+    int startsLiteral(ByteBuffer buf, int pos, int to) {
+        for (int i = 0; i < literals.length; i++) {
+            if (matches(buf, pos, to, literals[i])) {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+    boolean endsLiteral(int literal, ByteBuffer buf, int pos, int to) {
+        return matches(buf, pos, to, literals[literal]);
+    }
+
+    private static boolean matches(char[] buf, int pos, int to, char[] marker) {
+        if (to - pos < marker.length) {
+            return false;
+        }
+
+        for (int i = 0; i < marker.length; i++) {
+            if (buf[pos + i] != marker[i]) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private static boolean matches(ByteBuffer buf, int pos, int to, char[] marker) {
+        if (to - pos < marker.length) {
+            return false;
+        }
+
+        for (int i = 0; i < marker.length; i++) {
+            if (buf.get(pos + i) != marker[i]) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private static char[] ascii(String marker) {
+        if (marker.isEmpty() || !marker.chars().allMatch(c -> c > ' ' && c < 128)) {
+            throw new IllegalArgumentException("Comment markers must be printable ASCII: \"" + marker + "\"");
+        }
+
+        return marker.toCharArray();
+    }
+
+    private static String toString(char[] marker) {
+        return marker == null ? null : new String(marker);
+    }
+
+    private static String[] toStrings(char[][] markers) {
+        return Arrays.stream(markers).map(String::new).toArray(String[]::new);
+    }
+
+    @Override
+    public String toString() {
+        return name + extensions;
+    }
+}
@@ -0,0 +1,136 @@
+package kupusoglu.orhan.sloc_maven_plugin.engine;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+
+/**
+ * Maps file extensions to the comment grammars of their languages.
+ * <br>
+ * Files of an unregistered extension are counted with the Java grammar, as all files were before languages existed,
+ * and reported under their extension.
+ * <br>
+ * Register languages before counting, lookups are thread-safe.
+ */
+public class LanguageRegistry {
+    private final Map<String, Language> languages = new ConcurrentHashMap<>();
+
+    public LanguageRegistry() {
+        super();
+    }
+
+    /**
+     * @return  registry    Java, Kotlin, Scala, Groovy, XML, SQL, shell scripts and properties files
+     */
+    public static LanguageRegistry defaults() {
+        LanguageRegistry registry = new LanguageRegistry();
+
+        registry.register(Language.JAVA);
+        registry.register(new Language("kotlin", new String[] {"kt", "kts"}, new String[] {"//"}, "/*", "*/", "/**",
+                                       "package", new String[] {"\"", "'"}, new String[] {"\"\"\""}, '\\', true));
+        registry.register(new Language("scala", new String[] {"scala", "sc"}, new String[] {"//"}, "/*", "*/", "/**",
+                                       "package", new String[] {"\"", "'"}, new String[] {"\"\"\""}, '\\', true));
+        registry.register(new Language("groovy", new String[] {"groovy", "gradle"}, new String[] {"//"}, "/*", "*/", "/**",
+                                       "package", new String[] {"\"", "'"}, new String[] {"\"\"\"", "'''"}, '\\', false));
+        registry.register(new Language("xml", new String[] {"xml", "xsd", "xsl", "xslt", "wsdl"}, new String[0], "<!--", "-->", null, null));
+        registry.register(new Language("sql", new String[] {"sql"}, new String[] {"--"}, "/*", "*/", null, null,
+                                       new String[] {"'", "\""}, new String[0], (char) 0, false));
+        registry.register(new Language("shell", new String[] {"sh", "bash"}, new String[] {"#"}, null, null, null, null,
+                                       new String[] {"\"", "'"}, new String[0], '\\', false));
+        registry.register(new Language("properties", new String[] {"properties"}, new String[] {"#", "!"}, null, null, null, null));
+
+        return registry;
+    }
+
+    /**
+     * Register a language for its extensions, replacing the languages previously registered for them.
+     *
+     * @param   language    the grammar
+     * @return  registry    this
+     */
+    public LanguageRegistry register(Language language) {
+        for (String extension : language.getExtensions()) {
+            languages.put(normalize(extension), language);
+        }
+
+        return this;
+    }
+
+    /**
+     * @param   extension   file extension, without the dot
+     * @return  language    the registered language, or the Java grammar named after the extension, which is not registered
+     */
+    public Language get(String extension) {
+        String key = normalize(extension);
+        Language language = languages.get(key);
+
+        return language != null ? language : Language.JAVA.rename(key, key);
+    }
+
+    /**
+     * @param   fileName    name of a file
+     * @return  language    the language of its extension
+     */
+    public Language forFileName(String fileName) {
+        return get(fileName.substring(fileName.lastIndexOf('.') + 1));
+    }
+
+    /**
+     * @param   fileExt     extensions separated by commas, for example "java,kt,xml"
+     * @return  extensions  the extensions without dots and blanks, in the given order
+     */
+    public static List<String> getExtensions(String fileExt) {
+        Set<String> extensions = new LinkedHashSet<>();
+
+        for (String extension : fileExt.split(",")) {
+            String ext = normalize(extension);
+
+            if (!ext.isEmpty()) {
+                extensions.add(ext);
+            }
+        }
+
+        return new ArrayList<>(extensions);
+    }
+
+    /**
+     * @param   fileExt     extensions separated by commas
+     * @return  glob        pattern of file names with one of the extensions, for example "glob:*.{java,kt}"
+     */
+    public static String getGlob(String fileExt) {
+        List<String> extensions = getExtensions(fileExt);
+
+        return extensions.size() > 1 ? "glob:*.{" + String.join(",", extensions) + "}" : "glob:*." + String.join("", extensions);
+    }
+
+    /**
+     * @param   fileExt     extensions separated by commas
+     * @return  suffixes    the extensions with a leading dot, for {@link #hasSuffix(String, String[])}
+     */
+    public static String[] getSuffixes(String fileExt) {
+        return getExtensions(fileExt).stream().map(extension -> "." + extension).toArray(String[]::new);
+    }
+
+    /**
+     * Same as the glob "*.{java,kt}" of the extensions, without a regex per file.
+     *
+     * @param   name        file name
+     * @param   suffixes    see {@link #getSuffixes(String)}
+     * @return  true if the name ends with one of the suffixes
+     */
+    public static boolean hasSuffix(String name, String[] suffixes) {
+        for (String suffix : suffixes) {
+            if (name.endsWith(suffix)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private static String normalize(String extension) {
+        String ext = extension.trim();
+
+        return ext.startsWith(".") ? ext.substring(1) : ext;
+    }
+}
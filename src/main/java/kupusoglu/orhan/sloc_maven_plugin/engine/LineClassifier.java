@@ -0,0 +1,378 @@
+package kupusoglu.orhan.sloc_maven_plugin.engine;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+
+/**
+ * Classifies the lines of one file as blank, JavaDoc, comment or code.
+ * <br>
+ * Lines are given as a region of a char or byte buffer and are neither copied nor trimmed into a new {@code String}.
+ * Only the code lines of the header are given to the {@link HeaderParser}, in NIO mode they are decoded for it.
+ * <br>
+ * The comment markers are those of the file's {@link Language}. By default they are checked at the start and the end
+ * of the trimmed line, as they always have been; with a {@link LineLexer} every character is lexed instead.
+ * <br>
+ * Optionally the trimmed code lines are hashed while they are classified, a 64-bit FNV-1a hash updated once per
+ * character or byte, so files of the same code are found without reading them again. The package declaration is not
+ * hashed, a file copied to another package is still a copy. With the lexer only the code of a line is hashed, not a comment
+ * before or after it.
+ * <br>
+ * Optionally the {@link SourceMetrics} are computed from the same lines by a {@link CodeMetrics}, the code lines are
+ * scanned for declarations, braces and decision points in the buffer they were read into.
+ * <br>
+ * An instance keeps the block state of the file being counted, hence it is confined to one thread
+ * and {@link #reset(Language)} before each file.
+ */
+final class LineClassifier {
+    private final static long FNV_OFFSET = 0xcbf29ce484222325L;
+    private final static long FNV_PRIME = 0x100000001b3L;
+
+    private final LineLexer lexer;
+    private final HeaderParser header;
+    private final boolean hash;
+    private final CodeMetrics metrics;
+    private Language language = Language.JAVA;
+    private boolean isblockComment;
+    private boolean isblockDoc;
+    private boolean isHeaderParsed;
+    private String packageName;
+    private boolean utf8;
+
+    private int total;
+    private int blank;
+    private int javaDoc;
+    private int comment;
+    private long contentHash;
+    private boolean isCode;
+
+    /**
+     * @param   lexer       classify the lines with a {@link LineLexer}
+     * @param   headerLines code lines searched for the package declaration at most
+     * @param   hash        hash the trimmed code lines, see {@link #getHash()}
+     * @param   metrics     compute the metrics of the lines, see {@link #getMetrics()}
+     * @param   longLine    lines longer than that many columns are long
+     */
+    LineClassifier(boolean lexer, int headerLines, boolean hash, boolean metrics, int longLine) {
+        super();
+
+        this.lexer = lexer ? new LineLexer() : null;
+        this.header = new HeaderParser(headerLines);
+        this.hash = hash;
+        this.metrics = metrics ? new CodeMetrics(longLine) : null;
+    }
+
+    void reset() {
+        reset(Language.JAVA);
+    }
+
+    /**
+     * @param   charset     encoding of the lines given as bytes
+     */
+    void reset(Language language, Charset charset) {
+        reset(language);
+
+        utf8 = charset.equals(StandardCharsets.UTF_8);
+    }
+
+    void reset(Language language) {
+        this.language = language;
+        isblockComment = false;
+        isblockDoc = false;
+        // a language without packages is not searched for one
+        isHeaderParsed = language.getPackageKeyword() == null;
+        packageName = null;
+        header.reset(language);
+
+        if (lexer != null) {
+            lexer.reset(language);
+        }
+
+        if (metrics != null) {
+            metrics.reset();
+        }
+
+        total = 0;
+        blank = 0;
+        javaDoc = 0;
+        comment = 0;
+        contentHash = FNV_OFFSET;
+    }
+
+    /**
+     * @param   buf     buffer holding the line
+     * @param   from    first character of the line
+     * @param   to      end of the line, excluding the line terminator
+     */
+    void line(char[] buf, int from, int to) {
+        if (metrics != null) {
+            metrics.columns(to - from);
+        }
+
+        // trim as String.trim() does
+        while (from < to && buf[from] <= ' ') {
+            from++;
+        }
+        while (to > from && buf[to - 1] <= ' ') {
+            to--;
+        }
+
+        int len = to - from;
+        boolean search;
+
+        if (lexer != null) {
+            search = count(lexer.line(buf, from, to));
+        } else {
+            boolean startsBlock = language.startsBlock(buf, from, to);
+            boolean startsDoc = startsBlock && language.startsDoc(buf, from, to);
+            boolean startsLine = language.startsLine(buf, from, to);
+            boolean endsBlock = language.endsBlock(buf, from, to);
+            boolean containsEnd = startsBlock && language.containsBlockEnd(buf, from, to);
+
+            search = count(len, startsLine, startsBlock, startsDoc, endsBlock, containsEnd);
+        }
+
+        if (hash && isCode && !isPackage(buf, from, to)) {
+            long h = contentHash;
+            int end = lexer != null ? lexer.getCodeTo() : to;
+            for (int i = lexer != null ? lexer.getCodeFrom() : from; i < end; i++) {
+                h = (h ^ buf[i]) * FNV_PRIME;
+            }
+            contentHash = (h ^ '\n') * FNV_PRIME;
+        }
+
+        if (metrics != null && isCode) {
+            metrics.line(buf, from, to);
+        }
+
+        if (search) {
+            findPackage(buf, from, to);
+        }
+    }
+
+    /**
+     * The line is classified on its bytes, which requires a charset that encodes ASCII as single bytes.
+     * Only the lines searched for the package declaration are decoded.
+     *
+     * @param   buf     buffer holding the line
+     * @param   from    first byte of the line
+     * @param   to      end of the line, excluding the line terminator
+     * @param   charset encoding of the line, as given to {@link #reset(Language, Charset)}
+     */
+    void line(ByteBuffer buf, int from, int to, Charset charset) {
+        if (metrics != null) {
+            metrics.columns(buf, from, to, utf8);
+        }
+
+        // bytes above 0x7F are parts of non-ASCII characters, never whitespace
+        while (from < to && (buf.get(from) & 0xFF) <= ' ') {
+            from++;
+        }
+        while (to > from && (buf.get(to - 1) & 0xFF) <= ' ') {
+            to--;
+        }
+
+        int len = to - from;
+        boolean search;
+
+        if (lexer != null) {
+            search = count(lexer.line(buf, from, to));
+        } else {
+            boolean startsBlock = language.startsBlock(buf, from, to);
+            boolean startsDoc = startsBlock && language.startsDoc(buf, from, to);
+            boolean startsLine = language.startsLine(buf, from, to);
+            boolean endsBlock = language.endsBlock(buf, from, to);
+            boolean containsEnd = startsBlock && language.containsBlockEnd(buf, from, to);
+
+            search = count(len, startsLine, startsBlock, startsDoc, endsBlock, containsEnd);
+        }
+
+        if (hash && isCode && !isPackage(buf, from, to)) {
+            long h = contentHash;
+            int end = lexer != null ? lexer.getCodeTo() : to;
+            for (int i = lexer != null ? lexer.getCodeFrom() : from; i < end; i++) {
+                h = (h ^ (buf.get(i) & 0xFF)) * FNV_PRIME;
+            }
+            contentHash = (h ^ '\n') * FNV_PRIME;
+        }
+
+        if (metrics != null && isCode) {
+            metrics.line(buf, from, to);
+        }
+
+        if (search) {
+            ByteBuffer slice = buf.duplicate();
+            slice.limit(to).position(from);
+            CharBuffer chars = charset.decode(slice);
+            findPackage(chars.array(), chars.arrayOffset() + chars.position(), chars.arrayOffset() + chars.limit());
+        }
+    }
+
+    /**
+     * @return  true if the line is code and the header is still parsed
+     */
+    private boolean count(int len, boolean startsLine, boolean startsBlock, boolean startsDoc, boolean endsBlock, boolean containsEnd) {
+        total++;
+        isCode = false;
+
+        if (isJavaDoc(startsDoc, endsBlock, containsEnd)) {
+            javaDoc++;
+        } else if (isComment(startsLine, startsBlock, endsBlock, containsEnd)) {
+            comment++;
+        } else if (len == 0) {
+            blank++;
+        } else {
+            isCode = true;
+            return !isHeaderParsed;
+        }
+
+        return false;
+    }
+
+    /**
+     * @param   kind    kind of the line, as lexed
+     * @return  true if the line is code and the header is still parsed
+     */
+    private boolean count(int kind) {
+        total++;
+        isCode = kind == LineLexer.CODE;
+
+        switch (kind) {
+            case LineLexer.JAVADOC:
+                javaDoc++;
+                return false;
+            case LineLexer.COMMENT:
+                comment++;
+                return false;
+            case LineLexer.BLANK:
+                blank++;
+                return false;
+            default:
+                return !isHeaderParsed;
+        }
+    }
+
+    private boolean isComment(boolean startsLine, boolean startsBlock, boolean endsBlock, boolean containsEnd) {
+        if (endsBlock) {
+            if (this.isblockComment) {
+                this.isblockComment = false;
+                return true;
+            } else {
+                return false;
+            }
+        } else if (this.isblockComment) {
+            return true;
+        } else if (startsLine) {
+            return true;
+        } else if (startsBlock && !containsEnd) {
+            this.isblockComment = true;
+            return true;
+        } else {
+            return false;
+        }
+    }
+
+    private boolean isJavaDoc(boolean startsDoc, boolean endsBlock, boolean containsEnd) {
+        if (endsBlock) {
+            if (this.isblockDoc) {
+                this.isblockDoc = false;
+                return true;
+            } else {
+                return false;
+            }
+        } else if (this.isblockDoc) {
+            return true;
+        } else if (startsDoc && !containsEnd) {
+            this.isblockDoc = true;
+            return true;
+        } else {
+            return false;
+        }
+    }
+
+    /**
+     * @return  true if the trimmed line of the header starts with the package keyword
+     */
+    private boolean isPackage(char[] buf, int from, int to) {
+        String keyword = language.getPackageKeyword();
+
+        if (isHeaderParsed || keyword == null || to - from <= keyword.length() || buf[from + keyword.length()] > ' ') {
+            return false;
+        }
+
+        for (int i = 0; i < keyword.length(); i++) {
+            if (buf[from + i] != keyword.charAt(i)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private boolean isPackage(ByteBuffer buf, int from, int to) {
+        String keyword = language.getPackageKeyword();
+
+        if (isHeaderParsed || keyword == null || to - from <= keyword.length() || (buf.get(from + keyword.length()) & 0xFF) > ' ') {
+            return false;
+        }
+
+        for (int i = 0; i < keyword.length(); i++) {
+            if (buf.get(from + i) != keyword.charAt(i)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private void findPackage(char[] buf, int from, int to) {
+        if (header.line(buf, from, to)) {
+            isHeaderParsed = true;
+            packageName = header.getPackageName();
+        }
+    }
+
+    String getPackageName() {
+        return packageName;
+    }
+
+    int getTotal() {
+        return total;
+    }
+
+    int getBlank() {
+        return blank;
+    }
+
+    int getJavaDoc() {
+        return javaDoc;
+    }
+
+    int getComment() {
+        return comment;
+    }
+
+    int getCode() {
+        return total - (blank + javaDoc + comment);
+    }
+
+    /**
+     * @return  hash of the trimmed code lines, 0 if they are not hashed or there are none but the package declaration
+     */
+    long getHash() {
+        if (!hash || contentHash == FNV_OFFSET) {
+            return 0;
+        }
+
+        return contentHash != 0 ? contentHash : 1;
+    }
+
+    /**
+     * @return  metrics of the lines, null if they are not computed
+     */
+    SourceMetrics getMetrics() {
+        return metrics != null ? metrics.getMetrics() : null;
+    }
+}
@@ -0,0 +1,347 @@
+package kupusoglu.orhan.sloc_maven_plugin.engine;
+
+import java.nio.ByteBuffer;
+
+
+/**
+ * Classifies lines character by character, in one pass over each line with the state carried across lines:
+ * code, block comment, documentation comment or literal.
+ * <br>
+ * Unlike the marker checks on the trimmed line, a comment marker inside a string is code, code before or after
+ * a comment on the same line makes the line code, and lines inside a text block are code.
+ * A line is code if it holds any character outside comments, else documentation or comment if it holds any part
+ * of one, else blank. Hence a single-line documentation comment is documentation, and "/**&#47;" is a block comment.
+ * <br>
+ * A literal which is not a text block ends with its line, so an unterminated quote cannot swallow the rest of a file.
+ * <br>
+ * The span of the code of a code line, from its first code character to its last one, is kept for the hash of the line.
+ * <br>
+ * No regex is used and nothing is allocated per line. An instance keeps the state of the file being counted,
+ * hence it is confined to one thread and {@link #reset(Language)} before each file.
+ */
+final class LineLexer {
+    final static int BLANK = 0;
+    final static int CODE = 1;
+    final static int JAVADOC = 2;
+    final static int COMMENT = 3;
+
+    private final static int IN_CODE = 0;
+    private final static int IN_BLOCK = 1;
+    private final static int IN_DOC = 2;
+    private final static int IN_LITERAL = 3;
+
+    private Language language = Language.JAVA;
+    private int state;
+    private int depth;
+    private int literal;
+    private int codeFrom;
+    private int codeTo;
+
+    LineLexer() {
+        super();
+    }
+
+    void reset(Language language) {
+        this.language = language;
+        state = IN_CODE;
+        depth = 0;
+        literal = -1;
+    }
+
+    /**
+     * @param   buf     buffer holding the line
+     * @param   from    first character of the line
+     * @param   to      end of the line, excluding the line terminator
+     * @return  kind    one of BLANK, CODE, JAVADOC, COMMENT
+     */
+    int line(char[] buf, int from, int to) {
+        Language language = this.language;
+        boolean code = state == IN_LITERAL;
+        boolean doc = state == IN_DOC;
+        boolean comment = state == IN_BLOCK;
+        int i = from;
+
+        // a line inside a text block starts with code
+        codeFrom = code ? from : -1;
+        codeTo = from;
+
+        while (i < to) {
+            if (state == IN_CODE) {
+                byte[] starts = language.getStarts();
+                int flags = 0;
+                int segment = i;
+
+                // most characters start no marker
+                for (; i < to; i++) {
+                    char c = buf[i];
+
+                    if (c < 128 && (flags = starts[c]) != 0) {
+                        break;
+                    }
+                }
+
+                int end = i;
+
+                // the code of the segment ends with its last non-whitespace character
+                while (end > segment && buf[end - 1] <= ' ') {
+                    end--;
+                }
+
+                if (end > segment) {
+                    while (buf[segment] <= ' ') {
+                        segment++;
+                    }
+
+                    code(segment, end);
+                    code = true;
+                }
+
+                if (i == to) {
+                    break;
+                } else if ((flags & Language.BLOCK) != 0 && language.startsBlock(buf, i, to)) {
+                    depth = 1;
+
+                    if ((flags & Language.DOC) != 0 && language.startsDoc(buf, i, to)
+                            && !language.atBlockEnd(buf, i + language.getBlockStartLength(), to)) {
+                        state = IN_DOC;
+                        doc = true;
+                        i += language.getDocStartLength();
+                    } else {
+                        state = IN_BLOCK;
+                        comment = true;
+                        i += language.getBlockStartLength();
+                    }
+                } else if ((flags & Language.LINE) != 0 && language.startsLine(buf, i, to)) {
+                    comment = true;
+                    i = to;
+                } else if ((flags & Language.QUOTE) != 0 && (literal = language.startsLiteral(buf, i, to)) >= 0) {
+                    state = IN_LITERAL;
+                    code = true;
+                    code(i, i + language.getLiteralLength(literal));
+                    i += language.getLiteralLength(literal);
+                } else {
+                    code = true;
+                    code(i, i + 1);
+                    i++;
+                }
+            } else if (state == IN_LITERAL) {
+                char close = language.getLiteralFirst(literal);
+                char escape = language.getEscape() != 0 ? language.getEscape() : close;
+
+                for (; i < to && buf[i] != close && buf[i] != escape; i++) {
+                    // inside the literal
+                }
+
+                if (i == to) {
+                    break;
+                } else if (buf[i] == language.getEscape()) {
+                    i += 2;
+                } else if (language.endsLiteral(literal, buf, i, to)) {
+                    state = IN_CODE;
+                    code(i, i + language.getLiteralLength(literal));
+                    i += language.getLiteralLength(literal);
+                } else {
+                    i++;
+                }
+            } else {
+                char end = language.getBlockEndFirst();
+                char start = language.isNested() ? language.getBlockStartFirst() : end;
+
+                for (; i < to && buf[i] != end && buf[i] != start; i++) {
+                    // inside the comment
+                }
+
+                if (i == to) {
+                    break;
+                } else if (language.atBlockEnd(buf, i, to)) {
+                    i += language.getBlockEndLength();
+
+                    if (--depth == 0) {
+                        state = IN_CODE;
+                    }
+                } else if (language.isNested() && language.startsBlock(buf, i, to)) {
+                    depth++;
+                    i += language.getBlockStartLength();
+                } else {
+                    i++;
+                }
+            }
+        }
+
+        if (state == IN_LITERAL) {
+            // the literal goes on to the end of the line
+            codeTo = to;
+        }
+
+        return endLine(code, doc, comment);
+    }
+
+    /**
+     * The line is lexed on its bytes, which requires a charset that encodes ASCII as single bytes.
+     * Bytes above 0x7F are parts of non-ASCII characters, never markers nor whitespace.
+     *
+     * @param   buf     buffer holding the line
+     * @param   from    first byte of the line
+     * @param   to      end of the line, excluding the line terminator
+     * @return  kind    one of BLANK, CODE, JAVADOC, COMMENT
+     */
+    int line(ByteBuffer buf, int from, int to) {
+        Language language = this.language;
+        boolean code = state == IN_LITERAL;
+        boolean doc = state == IN_DOC;
+        boolean comment = state == IN_BLOCK;
+        int i = from;
+
+        // a line inside a text block starts with code
+        codeFrom = code ? from : -1;
+        codeTo = from;
+
+        while (i < to) {
+            if (state == IN_CODE) {
+                byte[] starts = language.getStarts();
+                int flags = 0;
+                int segment = i;
+
+                // most bytes start no marker
+                for (; i < to; i++) {
+                    byte c = buf.get(i);
+
+                    if (c >= 0 && (flags = starts[c]) != 0) {
+                        break;
+                    }
+                }
+
+                int end = i;
+
+                // the code of the segment ends with its last non-whitespace byte
+                while (end > segment && (buf.get(end - 1) & 0xFF) <= ' ') {
+                    end--;
+                }
+
+                if (end > segment) {
+                    while ((buf.get(segment) & 0xFF) <= ' ') {
+                        segment++;
+                    }
+
+                    code(segment, end);
+                    code = true;
+                }
+
+                if (i == to) {
+                    break;
+                } else if ((flags & Language.BLOCK) != 0 && language.startsBlock(buf, i, to)) {
+                    depth = 1;
+
+                    if ((flags & Language.DOC) != 0 && language.startsDoc(buf, i, to)
+                            && !language.atBlockEnd(buf, i + language.getBlockStartLength(), to)) {
+                        state = IN_DOC;
+                        doc = true;
+                        i += language.getDocStartLength();
+                    } else {
+                        state = IN_BLOCK;
+                        comment = true;
+                        i += language.getBlockStartLength();
+                    }
+                } else if ((flags & Language.LINE) != 0 && language.startsLine(buf, i, to)) {
+                    comment = true;
+                    i = to;
+                } else if ((flags & Language.QUOTE) != 0 && (literal = language.startsLiteral(buf, i, to)) >= 0) {
+                    state = IN_LITERAL;
+                    code = true;
+                    code(i, i + language.getLiteralLength(literal));
+                    i += language.getLiteralLength(literal);
+                } else {
+                    code = true;
+                    code(i, i + 1);
+                    i++;
+                }
+            } else if (state == IN_LITERAL) {
+                char close = language.getLiteralFirst(literal);
+                char escape = language.getEscape() != 0 ? language.getEscape() : close;
+
+                for (; i < to && buf.get(i) != close && buf.get(i) != escape; i++) {
+                    // inside the literal
+                }
+
+                if (i == to) {
+                    break;
+                } else if (buf.get(i) == language.getEscape()) {
+                    i += 2;
+                } else if (language.endsLiteral(literal, buf, i, to)) {
+                    state = IN_CODE;
+                    code(i, i + language.getLiteralLength(literal));
+                    i += language.getLiteralLength(literal);
+                } else {
+                    i++;
+                }
+            } else {
+                char end = language.getBlockEndFirst();
+                char start = language.isNested() ? language.getBlockStartFirst() : end;
+
+                for (; i < to && buf.get(i) != end && buf.get(i) != start; i++) {
+                    // inside the comment
+                }
+
+                if (i == to) {
+                    break;
+                } else if (language.atBlockEnd(buf, i, to)) {
+                    i += language.getBlockEndLength();
+
+                    if (--depth == 0) {
+                        state = IN_CODE;
+                    }
+                } else if (language.isNested() && language.startsBlock(buf, i, to)) {
+                    depth++;
+                    i += language.getBlockStartLength();
+                } else {
+                    i++;
+                }
+            }
+        }
+
+        if (state == IN_LITERAL) {
+            // the literal goes on to the end of the line
+            codeTo = to;
+        }
+
+        return endLine(code, doc, comment);
+    }
+
+    /**
+     * @return  first character of the code of the last line, if it was code
+     */
+    int getCodeFrom() {
+        return codeFrom;
+    }
+
+    /**
+     * @return  end of the code of the last line, before a trailing comment, if it was code
+     */
+    int getCodeTo() {
+        return codeTo;
+    }
+
+    private void code(int from, int to) {
+        if (codeFrom < 0) {
+            codeFrom = from;
+        }
+
+        codeTo = to;
+    }
+
+    private int endLine(boolean code, boolean doc, boolean comment) {
+        if (state == IN_LITERAL && !language.isTextBlock(literal)) {
+            state = IN_CODE;
+        }
+
+        if (code) {
+            return CODE;
+        } else if (doc) {
+            return JAVADOC;
+        } else if (comment) {
+            return COMMENT;
+        } else {
+            return BLANK;
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package kupusoglu.orhan.sloc_maven_plugin.engine;
+
+import org.apache.maven.plugin.MojoExecutionException;
+
+import java.nio.charset.Charset;
+import java.util.Locale;
+
+
+/**
+ * Parses the parameters of the goals, an invalid value fails the goal. It is kept apart from {@link Common} so that
+ * the engine can be loaded without the Maven runtime.
+ */
+public final class MavenOptions {
+    private MavenOptions() {
+    }
+
+    /**
+     * @param   outputFormat    one of table, json, csv, case-insensitive
+     * @return  format          OutputFormat
+     * @throws  MojoExecutionException  if the format is not supported
+     */
+    public static OutputFormat getOutputFormat(String outputFormat) throws MojoExecutionException {
+        try {
+            return OutputFormat.valueOf(outputFormat.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException | NullPointerException e) {
+            throw new MojoExecutionException("Unsupported output format: " + outputFormat + ", use one of table, json, csv", e);
+        }
+    }
+
+    /**
+     * @param   aggregation     one of files, columnar, packages, case-insensitive
+     * @return  aggregation     Aggregation
+     * @throws  MojoExecutionException  if the aggregation is not supported
+     */
+    public static Aggregation getAggregation(String aggregation) throws MojoExecutionException {
+        try {
+            return Aggregation.valueOf(aggregation.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException | NullPointerException e) {
+            throw new MojoExecutionException("Unsupported aggregation: " + aggregation + ", use one of files, columnar, packages", e);
+        }
+    }
+
+    /**
+     * @param   includes    patterns of the files to count, separated by commas, may be empty
+     * @param   excludes    patterns of the files and directories to skip, separated by commas, may be empty
+     * @return  filter      SourceFilter
+     * @throws  MojoExecutionException  if a pattern is not a valid glob
+     */
+    public static SourceFilter getSourceFilter(String includes, String excludes) throws MojoExecutionException {
+        try {
+            return new SourceFilter(includes, excludes);
+        } catch (IllegalArgumentException e) {
+            throw new MojoExecutionException("Invalid include or exclude pattern: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Charset of the source files, the platform encoding is used only if none is configured.
+     *
+     * @param   log         log of the goal
+     * @param   encoding    value of <strong>project.build.sourceEncoding</strong>, may be empty
+     * @return  charset     Charset
+     * @throws  MojoExecutionException  if the encoding is not supported
+     */
+    public static Charset getCharset(SlocLog log, String encoding) throws MojoExecutionException {
+        if (encoding == null || encoding.trim().isEmpty()) {
+            log.warn("File encoding has not been set, using platform encoding " + Charset.defaultCharset().name());
+            return Charset.defaultCharset();
+        }
+
+        try {
+            return Charset.forName(encoding.trim());
+        } catch (IllegalArgumentException e) {
+            throw new MojoExecutionException("Unsupported encoding: " + encoding, e);
+        }
+    }
+}
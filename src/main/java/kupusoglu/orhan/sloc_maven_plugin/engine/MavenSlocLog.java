@@ -0,0 +1,64 @@
+package kupusoglu.orhan.sloc_maven_plugin.engine;
+
+import org.apache.maven.plugin.logging.Log;
+
+
+/**
+ * Passes the messages of the engine on to the log of a goal, the engine logs through a {@link SlocLog} and does not
+ * depend on the Maven log.
+ */
+public final class MavenSlocLog implements SlocLog {
+    private final Log log;
+
+    public MavenSlocLog(Log log) {
+        this.log = log;
+    }
+
+    @Override
+    public void log(Level level, String message) {
+        switch (level) {
+            case DEBUG:
+                if (log.isDebugEnabled()) {
+                    log.debug(message);
+                }
+                break;
+            case INFO:
+                log.info(message);
+                break;
+            case WARN:
+                log.warn(message);
+                break;
+            default:
+                log.error(message);
+                break;
+        }
+    }
+
+    /**
+     * The cause is logged with its stack trace, the Maven log does not take a null cause.
+     */
+    @Override
+    public void log(Level level, String message, Throwable cause) {
+        if (cause == null) {
+            log(level, message);
+            return;
+        }
+
+        switch (level) {
+            case DEBUG:
+                if (log.isDebugEnabled()) {
+                    log.debug(message, cause);
+                }
+                break;
+            case INFO:
+                log.info(message, cause);
+                break;
+            case WARN:
+                log.warn(message, cause);
+                break;
+            default:
+                log.error(message, cause);
+                break;
+        }
+    }
+}
@@ -0,0 +1,457 @@
+package kupusoglu.orhan.sloc_maven_plugin.engine;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+
+/**
+ * Formats of the saved report.
+ * <br>
+ * The table is meant to be read, it is followed by the totals per language if the files are of several languages
+ * and by the groups of duplicated files if the files were hashed.
+ * JSON and CSV are meant to be parsed: they hold the full package names,
+ * a row per file and rollups per package, per type, per language and in total. Each file is written as it is visited,
+ * only the rollups are kept in memory.
+ * <br>
+ * JSON:
+ * <pre>
+ * {"fileExt":"java",
+ *  "files":[{"path":"..","package":"..","file":"..","type":"src","language":"java","blank":0,"javaDoc":0,"comment":0,"code":0,"total":0,
+ *            "hash":"..","metrics":{"types":0,"methods":0,"maxDepth":0,"longLines":0,"complexity":0}},..],
+ *  "packages":[{"package":"..","files":0,"blank":0,..},..],
+ *  "types":[{"type":"src","files":0,"blank":0,..},..],
+ *  "languages":[{"language":"java","files":0,"blank":0,..},..],
+ *  "total":{"files":0,"blank":0,..},
+ *  "duplicates":{"copies":0,"code":0,"uniqueCode":0,"groups":[{"hash":"..","code":0,"paths":["..",..]},..]},
+ *  "stats":{"phases":{"walk":0.0,..},"counted":0,"cached":0,"excluded":0,"skipped":0,"failed":0,"bytes":0,"filesPerSecond":0,
+ *           "slowest":[{"path":"..","ms":0.0,"bytes":0},..]}}
+ * </pre>
+ * The hashes and the duplicates are written only if the files were hashed, the stats only if the count was measured,
+ * the phase of the report itself is not part of them. The metrics are written only if they were computed, for the files
+ * and for each rollup, whose depth is the deepest one of its files.
+ * CSV, with a header line, the level is one of file, package, type, language, total and duplicate, a copy of
+ * another file, whose code is not part of the unique code:
+ * <pre>
+ * level,package,file,type,language,path,files,blank,javaDoc,comment,code,total
+ * </pre>
+ * followed by the columns of the metrics if the first file has them:
+ * <pre>
+ * types,methods,maxDepth,longLines,complexity
+ * </pre>
+ */
+public enum OutputFormat {
+    TABLE("sloc.txt") {
+        @Override
+        public void write(Collection<SourceCount> counts, String fileExt, boolean trimPkgNames, Appendable out) throws IOException {
+            Common.processSLOCData(counts, fileExt, trimPkgNames, out);
+
+            Map<String, int[]> languages = new TreeMap<>();
+            SourceDuplicates duplicates = new SourceDuplicates();
+            for (SourceCount count : counts) {
+                if (!count.getLanguage().isEmpty()) {
+                    Rollups.add(languages.computeIfAbsent(count.getLanguage(), key -> new int[5]), count);
+                }
+                duplicates.add(count);
+            }
+
+            // files of several languages are broken down per language
+            if (languages.size() > 1) {
+                out.append(Common.processSLOCTotals(languages, "Language", "language(s)", false));
+            }
+
+            out.append(duplicates.toTable());
+        }
+    },
+
+    JSON("sloc.json") {
+        @Override
+        public void write(Collection<SourceCount> counts, String fileExt, boolean trimPkgNames, Appendable out) throws IOException {
+            write(counts, fileExt, trimPkgNames, null, out);
+        }
+
+        @Override
+        public void write(Collection<SourceCount> counts, String fileExt, boolean trimPkgNames, SourceStats stats, Appendable out)
+                throws IOException {
+            Rollups rollups = new Rollups();
+            String separator = "\n  ";
+
+            out.append("{\n\"fileExt\": ");
+            appendJson(out, fileExt);
+            out.append(",\n\"files\": [");
+
+            for (SourceCount count : counts) {
+                out.append(separator).append("{\"path\": ");
+                appendJson(out, count.getPath());
+                out.append(", \"package\": ");
+                appendJson(out, count.getPackageName());
+                out.append(", \"file\": ");
+                appendJson(out, count.getFileName());
+                out.append(", \"type\": ");
+                appendJson(out, count.getFileType());
+                out.append(", \"language\": ");
+                appendJson(out, count.getLanguage());
+                appendJson(out, -1, count.getBlank(), count.getJavaDoc(), count.getComment(), count.getCode());
+                if (count.getHash() != 0) {
+                    out.append(", \"hash\": ");
+                    appendJson(out, toHex(count.getHash()));
+                }
+                if (count.getMetrics() != null) {
+                    appendJsonMetrics(out, count.getMetrics().getCounters(), 0);
+                }
+                out.append('}');
+
+                separator = ",\n  ";
+                rollups.add(count);
+            }
+
+            out.append("\n],\n\"packages\": [");
+            appendJson(out, "package", rollups.packages, rollups.metrics);
+            out.append("\n],\n\"types\": [");
+            appendJson(out, "type", rollups.types, rollups.metrics);
+            out.append("\n],\n\"languages\": [");
+            appendJson(out, "language", rollups.languages, rollups.metrics);
+            out.append("\n],\n\"total\": {");
+            int[] total = rollups.total;
+            out.append("\"files\": ").append(Integer.toString(total[0]));
+            appendJson(out, -1, total[1], total[2], total[3], total[4]);
+            if (rollups.metrics) {
+                appendJsonMetrics(out, total, 5);
+            }
+            out.append('}');
+
+            if (rollups.duplicates.isHashed()) {
+                out.append(",\n\"duplicates\": ");
+                appendJson(out, rollups.duplicates);
+            }
+
+            if (stats != null) {
+                out.append(",\n\"stats\": ");
+                appendJson(out, stats);
+            }
+
+            out.append("\n}\n");
+        }
+    },
+
+    CSV("sloc.csv") {
+        @Override
+        public void write(Collection<SourceCount> counts, String fileExt, boolean trimPkgNames, Appendable out) throws IOException {
+            Rollups rollups = new Rollups();
+            boolean metrics = !counts.isEmpty() && counts.iterator().next().getMetrics() != null;
+
+            out.append("level,package,file,type,language,path,files,blank,javaDoc,comment,code,total")
+               .append(metrics ? ",types,methods,maxDepth,longLines,complexity\n" : "\n");
+
+            for (SourceCount count : counts) {
+                out.append("file,");
+                appendCsv(out, count.getPackageName());
+                out.append(',');
+                appendCsv(out, count.getFileName());
+                out.append(',');
+                appendCsv(out, count.getFileType());
+                out.append(',');
+                appendCsv(out, count.getLanguage());
+                out.append(',');
+                appendCsv(out, count.getPath());
+                appendCsv(out, 1, count.getBlank(), count.getJavaDoc(), count.getComment(), count.getCode());
+                appendCsvMetrics(out, metrics, count.getMetrics() != null ? count.getMetrics().getCounters() : null, 0);
+
+                rollups.add(count);
+            }
+
+            for (Map.Entry<String, int[]> entry : rollups.packages.entrySet()) {
+                out.append("package,");
+                appendCsv(out, entry.getKey());
+                out.append(",,,,");
+                int[] rollup = entry.getValue();
+                appendCsv(out, rollup[0], rollup[1], rollup[2], rollup[3], rollup[4]);
+                appendCsvMetrics(out, metrics, rollup, 5);
+            }
+
+            for (Map.Entry<String, int[]> entry : rollups.types.entrySet()) {
+                out.append("type,,,");
+                appendCsv(out, entry.getKey());
+                out.append(",,");
+                int[] rollup = entry.getValue();
+                appendCsv(out, rollup[0], rollup[1], rollup[2], rollup[3], rollup[4]);
+                appendCsvMetrics(out, metrics, rollup, 5);
+            }
+
+            for (Map.Entry<String, int[]> entry : rollups.languages.entrySet()) {
+                out.append("language,,,,");
+                appendCsv(out, entry.getKey());
+                out.append(',');
+                int[] rollup = entry.getValue();
+                appendCsv(out, rollup[0], rollup[1], rollup[2], rollup[3], rollup[4]);
+                appendCsvMetrics(out, metrics, rollup, 5);
+            }
+
+            int[] total = rollups.total;
+            out.append("total,,,");
+            appendCsv(out, fileExt);
+            out.append(",,");
+            appendCsv(out, total[0], total[1], total[2], total[3], total[4]);
+            appendCsvMetrics(out, metrics, total, 5);
+
+            for (SourceDuplicates.Group group : rollups.duplicates.getGroups()) {
+                for (SourceCount count : group.getCopies()) {
+                    out.append("duplicate,");
+                    appendCsv(out, count.getPackageName());
+                    out.append(',');
+                    appendCsv(out, count.getFileName());
+                    out.append(',');
+                    appendCsv(out, count.getFileType());
+                    out.append(',');
+                    appendCsv(out, count.getLanguage());
+                    out.append(',');
+                    appendCsv(out, count.getPath());
+                    appendCsv(out, 1, count.getBlank(), count.getJavaDoc(), count.getComment(), count.getCode());
+                    appendCsvMetrics(out, metrics, count.getMetrics() != null ? count.getMetrics().getCounters() : null, 0);
+                }
+            }
+        }
+    };
+
+    private final String fileName;
+
+    OutputFormat(String fileName) {
+        this.fileName = fileName;
+    }
+
+    /**
+     * @return  name of the saved report, in the base directory
+     */
+    public String getFileName() {
+        return fileName;
+    }
+
+    /**
+     * Write the report of the files, ordered by key.
+     *
+     * @param   counts          counts of the files
+     * @param   fileExt         extension of the files
+     * @param   trimPkgNames    remove the common prefix of the package names, in the table only
+     * @param   out             the report is appended to it
+     * @throws  IOException     if the report cannot be written
+     */
+    public abstract void write(Collection<SourceCount> counts, String fileExt, boolean trimPkgNames, Appendable out) throws IOException;
+
+    /**
+     * Write the report of the files, ordered by key, with the stats of the count in the formats which hold them.
+     *
+     * @param   stats   stats of the count, may be null
+     */
+    public void write(Collection<SourceCount> counts, String fileExt, boolean trimPkgNames, SourceStats stats, Appendable out)
+            throws IOException {
+        write(counts, fileExt, trimPkgNames, out);
+    }
+
+    /**
+     * Files and counters per package, per type and in total, followed by the metrics.
+     */
+    private static final class Rollups {
+        private final Map<String, int[]> packages = new TreeMap<>();
+        private final Map<String, int[]> types = new TreeMap<>();
+        private final Map<String, int[]> languages = new TreeMap<>();
+        private final int[] total = new int[10];
+        private final SourceDuplicates duplicates = new SourceDuplicates();
+        private boolean metrics;
+
+        private void add(SourceCount count) {
+            add(packages.computeIfAbsent(count.getPackageName(), key -> new int[10]), count);
+            add(types.computeIfAbsent(count.getFileType(), key -> new int[10]), count);
+            if (!count.getLanguage().isEmpty()) {
+                add(languages.computeIfAbsent(count.getLanguage(), key -> new int[10]), count);
+            }
+            add(total, count);
+            duplicates.add(count);
+            metrics |= count.getMetrics() != null;
+        }
+
+        /**
+         * @param   rollup  [files, blank, JavaDoc, comment, code], followed by the metrics if it is longer
+         */
+        private static void add(int[] rollup, SourceCount count) {
+            rollup[0]++;
+            rollup[1] += count.getBlank();
+            rollup[2] += count.getJavaDoc();
+            rollup[3] += count.getComment();
+            rollup[4] += count.getCode();
+
+            if (rollup.length > 5 && count.getMetrics() != null) {
+                count.getMetrics().addTo(rollup, 5);
+            }
+        }
+    }
+
+    /**
+     * ", "files": n, "blank": n, .. "total": n", the files are omitted if negative
+     */
+    private static void appendJson(Appendable out, int files, int blank, int javaDoc, int comment, int code) throws IOException {
+        if (files >= 0) {
+            out.append(", \"files\": ").append(Integer.toString(files));
+        }
+
+        out.append(", \"blank\": ").append(Integer.toString(blank))
+           .append(", \"javaDoc\": ").append(Integer.toString(javaDoc))
+           .append(", \"comment\": ").append(Integer.toString(comment))
+           .append(", \"code\": ").append(Integer.toString(code))
+           .append(", \"total\": ").append(Integer.toString(blank + javaDoc + comment + code));
+    }
+
+    private static void appendJson(Appendable out, String name, Map<String, int[]> rollups, boolean metrics) throws IOException {
+        String separator = "\n  ";
+
+        for (Map.Entry<String, int[]> entry : rollups.entrySet()) {
+            int[] rollup = entry.getValue();
+
+            out.append(separator).append("{\"").append(name).append("\": ");
+            appendJson(out, entry.getKey());
+            appendJson(out, rollup[0], rollup[1], rollup[2], rollup[3], rollup[4]);
+            if (metrics) {
+                appendJsonMetrics(out, rollup, 5);
+            }
+            out.append('}');
+
+            separator = ",\n  ";
+        }
+    }
+
+    /**
+     * ", "metrics": {"types": n, "methods": n, "maxDepth": n, "longLines": n, "complexity": n}"
+     */
+    private static void appendJsonMetrics(Appendable out, int[] metrics, int offset) throws IOException {
+        out.append(", \"metrics\": {\"types\": ").append(Integer.toString(metrics[offset]))
+           .append(", \"methods\": ").append(Integer.toString(metrics[offset + 1]))
+           .append(", \"maxDepth\": ").append(Integer.toString(metrics[offset + 2]))
+           .append(", \"longLines\": ").append(Integer.toString(metrics[offset + 3]))
+           .append(", \"complexity\": ").append(Integer.toString(metrics[offset + 4])).append('}');
+    }
+
+    private static void appendJson(Appendable out, SourceStats stats) throws IOException {
+        out.append("{\"phases\": {");
+        String separator = "";
+        for (Map.Entry<String, Long> phase : stats.getPhases().entrySet()) {
+            out.append(separator);
+            appendJson(out, phase.getKey());
+            out.append(": ").append(SourceStats.millis(phase.getValue()));
+            separator = ", ";
+        }
+
+        out.append("}, \"counted\": ").append(Long.toString(stats.getCounted()))
+           .append(", \"cached\": ").append(Long.toString(stats.getCached()))
+           .append(", \"excluded\": ").append(Long.toString(stats.getExcluded()))
+           .append(", \"skipped\": ").append(Long.toString(stats.getSkipped()))
+           .append(", \"failed\": ").append(Long.toString(stats.getFailed()))
+           .append(", \"bytes\": ").append(Long.toString(stats.getBytes()))
+           .append(", \"filesPerSecond\": ").append(Long.toString(Math.round(stats.getFilesPerSecond())))
+           .append(", \"slowest\": [");
+
+        separator = "\n  ";
+        for (SourceStats.TimedFile file : stats.getSlowest()) {
+            out.append(separator).append("{\"path\": ");
+            appendJson(out, file.getPath());
+            out.append(", \"ms\": ").append(SourceStats.millis(file.getNanos()))
+               .append(", \"bytes\": ").append(Long.toString(file.getBytes())).append('}');
+            separator = ",\n  ";
+        }
+
+        out.append("\n]}");
+    }
+
+    private static void appendJson(Appendable out, SourceDuplicates duplicates) throws IOException {
+        out.append("{\"copies\": ").append(Integer.toString(duplicates.getCopies()))
+           .append(", \"code\": ").append(Integer.toString(duplicates.getCode()))
+           .append(", \"uniqueCode\": ").append(Integer.toString(duplicates.getUniqueCode()))
+           .append(", \"groups\": [");
+
+        String separator = "\n  ";
+        for (SourceDuplicates.Group group : duplicates.getGroups()) {
+            out.append(separator).append("{\"hash\": ");
+            appendJson(out, toHex(group.getHash()));
+            out.append(", \"code\": ").append(Integer.toString(group.getCode())).append(", \"paths\": [");
+            appendJson(out, group.getOriginal());
+
+            for (SourceCount count : group.getCopies()) {
+                out.append(", ");
+                appendJson(out, count.getPath());
+            }
+
+            out.append("]}");
+            separator = ",\n  ";
+        }
+
+        out.append("\n]}");
+    }
+
+    private static String toHex(long hash) {
+        String hex = Long.toHexString(hash);
+
+        return "0000000000000000".substring(hex.length()) + hex;
+    }
+
+    private static void appendJson(Appendable out, String value) throws IOException {
+        out.append('"');
+
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+
+            if (c == '"' || c == '\\') {
+                out.append('\\').append(c);
+            } else if (c < ' ') {
+                out.append(String.format("\\u%04x", (int) c));
+            } else {
+                out.append(c);
+            }
+        }
+
+        out.append('"');
+    }
+
+    /**
+     * ",files,blank,javaDoc,comment,code,total"
+     */
+    private static void appendCsv(Appendable out, int files, int blank, int javaDoc, int comment, int code) throws IOException {
+        out.append(',').append(Integer.toString(files))
+           .append(',').append(Integer.toString(blank))
+           .append(',').append(Integer.toString(javaDoc))
+           .append(',').append(Integer.toString(comment))
+           .append(',').append(Integer.toString(code))
+           .append(',').append(Integer.toString(blank + javaDoc + comment + code));
+    }
+
+    /**
+     * ",types,methods,maxDepth,longLines,complexity" if there are columns of metrics, empty cells without metrics,
+     * and the end of the line
+     */
+    private static void appendCsvMetrics(Appendable out, boolean columns, int[] metrics, int offset) throws IOException {
+        if (columns) {
+            for (int i = offset; i < offset + 5; i++) {
+                out.append(',');
+                if (metrics != null) {
+                    out.append(Integer.toString(metrics[i]));
+                }
+            }
+        }
+
+        out.append('\n');
+    }
+
+    private static void appendCsv(Appendable out, String value) throws IOException {
+        boolean quote = false;
+
+        for (int i = 0; i < value.length() && !quote; i++) {
+            char c = value.charAt(i);
+            quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+
+        if (quote) {
+            out.append('"').append(value.replace("\"", "\"\"")).append('"');
+        } else {
+            out.append(value);
+        }
+    }
+}
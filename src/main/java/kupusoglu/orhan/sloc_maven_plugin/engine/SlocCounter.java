@@ -0,0 +1,689 @@
+package kupusoglu.orhan.sloc_maven_plugin.engine;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+
+/**
+ * Counts the source directory of a base directory without Maven: configured once by a {@link Builder}, it returns
+ * a {@link SlocResult} per count.
+ * <br>
+ * A counter is immutable and may count several base directories at once, every count has its own state.
+ * A long-lived service keeps one counter and one executor for all of its counts.
+ *
+ * <pre>
+ * SlocCounter counter = SlocCounter.builder().fileExt("java,kt").filter(null, "**&#47;generated/**").build();
+ * SlocResult result = counter.count(Paths.get("checkout"));
+ * CompletableFuture&lt;SlocResult&gt; future = counter.countAsync(Paths.get("other-checkout"));
+ * </pre>
+ */
+public final class SlocCounter {
+    private final String srcMain;
+    private final Map<Path, String> roots;
+    private final String fileExt;
+    private final boolean trimPkgNames;
+    private final boolean display;
+    private final int displayRows;
+    private final boolean save;
+    private final int threads;
+    private final Charset charset;
+    private final boolean nio;
+    private final OutputFormat outputFormat;
+    private final boolean lexer;
+    private final int headerLines;
+    private final SourceFilter filter;
+    private final Aggregation aggregation;
+    private final boolean stats;
+    private final boolean duplicates;
+    private final boolean metrics;
+    private final int longLine;
+    private final int shardIndex;
+    private final int shardCount;
+    private final SourceShards shards;
+    private final SourceClassifier classifier;
+    private final Function<Path, SourceCache> cache;
+    private final Executor executor;
+    private final Consumer<SourceCount> progress;
+    private final SlocLog log;
+
+    private SlocCounter(Builder builder) {
+        this.srcMain = builder.srcMain;
+        this.roots = Collections.unmodifiableMap(new LinkedHashMap<>(builder.roots));
+        this.fileExt = builder.fileExt;
+        this.trimPkgNames = builder.trimPkgNames;
+        this.display = builder.display;
+        this.displayRows = builder.displayRows;
+        this.save = builder.save;
+        this.threads = builder.threads;
+        this.charset = builder.charset;
+        this.nio = builder.nio;
+        this.outputFormat = builder.outputFormat;
+        this.lexer = builder.lexer;
+        this.headerLines = builder.headerLines;
+        this.filter = builder.filter;
+        this.aggregation = builder.aggregation;
+        this.stats = builder.stats;
+        this.duplicates = builder.duplicates;
+        this.metrics = builder.metrics;
+        this.longLine = builder.longLine;
+        this.shardIndex = builder.shardIndex;
+        this.shardCount = builder.shardCount;
+        this.shards = builder.shards;
+        this.cache = builder.cache;
+        this.classifier = new SourceClassifier(charset, nio, LanguageRegistry.defaults(), lexer, headerLines, duplicates, metrics, longLine);
+        this.executor = builder.executor;
+        this.progress = builder.progress;
+        this.log = builder.log;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Count and wait for the result in the calling thread. The tree is walked as configured by {@link Builder#threads(int)}:
+     * on a pool of its own, on the executor if it is a {@code ForkJoinPool}, which the common pool of the defaults is,
+     * or in the calling thread. Every task of the walk checks the interrupt flag of the calling thread, so interrupting it
+     * stops the walk wherever it runs, the files being counted are finished first.
+     *
+     * @param   baseDir     base directory, the source directory is resolved against it and the report is saved there
+     * @return  result      the counts
+     * @throws  NoSuchFileException     if the base directory has no source directory, or none of the source roots
+     * @throws  IOException             if the cache cannot be read
+     * @throws  CancellationException   if the thread was interrupted
+     */
+    public SlocResult count(Path baseDir) throws IOException {
+        Thread caller = Thread.currentThread();
+
+        return count(baseDir, log, stats ? new SourceStats() : null, cache != null ? cache.apply(baseDir) : null, caller::isInterrupted);
+    }
+
+    /**
+     * Count on the executor. Cancelling the future stops the walk, the files being counted are finished first.
+     *
+     * @param   baseDir     base directory, the source directory is resolved against it and the report is saved there
+     * @return  future      completed with the counts, or with the exception of {@link #count(Path)}
+     */
+    public CompletableFuture<SlocResult> countAsync(Path baseDir) {
+        CompletableFuture<SlocResult> future = new CompletableFuture<>();
+
+        executor.execute(() -> {
+            try {
+                if (!future.isCancelled()) {
+                    future.complete(count(baseDir, log, stats ? new SourceStats() : null, cache != null ? cache.apply(baseDir) : null,
+                                          future::isCancelled));
+                }
+            } catch (IOException | RuntimeException e) {
+                future.completeExceptionally(e);
+            }
+        });
+
+        return future;
+    }
+
+    /**
+     * @return  the options of the counts of single files, the counts of a cache are only valid for the same settings
+     */
+    public String getSettings() {
+        return getSettings(roots);
+    }
+
+    private String getSettings(Map<Path, String> roots) {
+        return classifier.getSettings(fileExt) + (roots.isEmpty() ? "" : ";roots=" + roots);
+    }
+
+    SlocResult count(Path baseDir, SlocLog log, SourceStats stats, SourceCache cache, BooleanSupplier cancelled) throws IOException {
+        CountLog countLog = new CountLog(log);
+        CountSLOC countSLOC = walk(baseDir, countLog, stats, cache, cancelled);
+
+        if (countSLOC.isCancelled()) {
+            countSLOC.close();
+            throw new CancellationException("SLOC count cancelled: " + baseDir);
+        }
+
+        if (shards != null) {
+            long start = System.nanoTime();
+
+            try {
+                // the roots are relative, the shards may be checked out to other directories
+                Path base = baseDir.toAbsolutePath().normalize();
+                Map<Path, String> relativeRoots = new LinkedHashMap<>();
+                roots.forEach((dir, fileType) -> relativeRoots.put(base.relativize(base.resolve(dir).normalize()), fileType));
+
+                countLog.info("SLOC shard " + shardIndex + " of " + shardCount + " - partial result: "
+                              + shards.write(shardIndex, shardCount, getSettings(relativeRoots), countSLOC.getCounts()));
+            } catch (IOException e) {
+                countLog.error("Cannot write the SLOC partial result: " + e.getMessage());
+            }
+
+            phase(stats, "partial save", start);
+        }
+
+        return done(baseDir, countSLOC, countLog, stats, cache);
+    }
+
+    /**
+     * Merge the partial results written by the shards of a count, the report is displayed and saved as the report of
+     * a single count of all files would be. The options of the counts of single files are those of the shards.
+     *
+     * @param   baseDir     base directory, the report is saved there
+     * @return  result      the counts of the files of all shards
+     * @throws  NoSuchFileException     if there are no partial results
+     * @throws  IOException             if a partial result cannot be read or is missing
+     * @throws  IllegalStateException   if the counter has no partial results, see {@link Builder#shards(SourceShards)}
+     */
+    public SlocResult merge(Path baseDir) throws IOException {
+        if (shards == null) {
+            throw new IllegalStateException("Missing SLOC partial results");
+        }
+
+        CountLog countLog = new CountLog(log);
+        SourceStats stats = this.stats ? new SourceStats() : null;
+        long start = System.nanoTime();
+        List<SourceCount> counts = shards.read();
+        CountSLOC countSLOC = newCountSLOC(baseDir, getExistingRoots(baseDir), countLog, stats, null, () -> false);
+
+        for (SourceCount count : counts) {
+            countSLOC.add(count);
+        }
+
+        countLog.info("SLOC shards - merged " + counts.size() + " file(s): " + shards.getDir());
+        phase(stats, "merge", start);
+
+        return done(baseDir, countSLOC, countLog, stats, null);
+    }
+
+    private SlocResult done(Path baseDir, CountSLOC countSLOC, CountLog countLog, SourceStats stats, SourceCache cache) {
+        List<SourceCount> counts = aggregation == Aggregation.PACKAGES ? Collections.emptyList() : new ArrayList<>(countSLOC.getCounts());
+        Map<String, int[]> packages = countSLOC.getPackages();
+
+        countSLOC.done();
+
+        if (cache != null) {
+            countLog.info("SLOC cache - reused " + cache.getReused() + " file(s): " + cache.getFile());
+
+            long start = System.nanoTime();
+
+            try {
+                cache.save();
+            } catch (IOException e) {
+                countLog.warn("Cannot write the SLOC cache: " + e.getMessage());
+            }
+
+            phase(stats, "cache save", start);
+        }
+
+        if (stats != null) {
+            countLog.info(stats.toString());
+        }
+
+        return new SlocResult(baseDir, fileExt, trimPkgNames, counts, packages, stats, countLog.getErrors());
+    }
+
+    /**
+     * Walk the source directory, or the source roots which exist, the counts are neither displayed nor saved.
+     */
+    CountSLOC walk(Path baseDir, SlocLog log, SourceStats stats, SourceCache cache, BooleanSupplier cancelled) throws IOException {
+        Path srcDir = baseDir.resolve(srcMain).toAbsolutePath();
+        Map<Path, String> existing = getExistingRoots(baseDir);
+
+        if (roots.isEmpty() ? !Files.exists(srcDir) : existing.isEmpty()) {
+            throw new NoSuchFileException(roots.isEmpty() ? srcDir.toString() : roots.keySet().toString());
+        }
+
+        long start = System.nanoTime();
+
+        if (cache != null) {
+            cache.load(getSettings());
+            phase(stats, "cache load", start);
+            start = System.nanoTime();
+        }
+
+        CountSLOC countSLOC = newCountSLOC(baseDir, existing, log, stats, cache, cancelled);
+
+        if (threads > 1) {
+            ForkJoinPool pool = new ForkJoinPool(threads);
+
+            try {
+                // the roots and their directories are listed in parallel, the files are counted by the threads which list them
+                pool.invoke(countSLOC.walk());
+            } finally {
+                pool.shutdownNow();
+            }
+        } else if (threads == 0 && executor instanceof ForkJoinPool) {
+            ((ForkJoinPool) executor).invoke(countSLOC.walk());
+        } else {
+            countSLOC.walkFileTree();
+        }
+
+        phase(stats, "walk", start);
+
+        return countSLOC;
+    }
+
+    String getSrcMain() {
+        return srcMain;
+    }
+
+    Map<Path, String> getRoots() {
+        return roots;
+    }
+
+    String getFileExt() {
+        return fileExt;
+    }
+
+    boolean isTrimPkgNames() {
+        return trimPkgNames;
+    }
+
+    boolean isDisplay() {
+        return display;
+    }
+
+    int getDisplayRows() {
+        return displayRows;
+    }
+
+    boolean isSave() {
+        return save;
+    }
+
+    int getThreads() {
+        return threads;
+    }
+
+    OutputFormat getOutputFormat() {
+        return outputFormat;
+    }
+
+    SourceFilter getFilter() {
+        return filter;
+    }
+
+    Aggregation getAggregation() {
+        return aggregation;
+    }
+
+    boolean isStats() {
+        return stats;
+    }
+
+    int getShardIndex() {
+        return shardIndex;
+    }
+
+    int getShardCount() {
+        return shardCount;
+    }
+
+    boolean hasCache() {
+        return cache != null;
+    }
+
+    /**
+     * @return  the classifier of the files of all counts, with the options of the counts of single files
+     */
+    SourceClassifier getClassifier() {
+        return classifier;
+    }
+
+    Consumer<SourceCount> getProgress() {
+        return progress;
+    }
+
+    private Map<Path, String> getExistingRoots(Path baseDir) {
+        Map<Path, String> existing = new LinkedHashMap<>();
+
+        for (Map.Entry<Path, String> root : roots.entrySet()) {
+            Path dir = baseDir.resolve(root.getKey()).toAbsolutePath();
+
+            // a project registers its roots whether or not they exist
+            if (Files.isDirectory(dir)) {
+                existing.put(dir, root.getValue());
+            }
+        }
+
+        return existing;
+    }
+
+    private CountSLOC newCountSLOC(Path baseDir, Map<Path, String> existing, SlocLog log, SourceStats stats, SourceCache cache,
+                                   BooleanSupplier cancelled) {
+        return new CountSLOC(this, log != null ? log : new CountLog(null), baseDir.toString(), existing, stats, cache, cancelled);
+    }
+
+    private static void phase(SourceStats stats, String name, long start) {
+        if (stats != null) {
+            stats.phase(name, System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Options of a {@link SlocCounter}, the defaults are those of the goal <strong>sloc</strong>, except that nothing
+     * is displayed or saved and the directories are walked on the executor.
+     */
+    public static final class Builder {
+        private String srcMain = "src";
+        private final Map<Path, String> roots = new LinkedHashMap<>();
+        private String fileExt = "java";
+        private boolean trimPkgNames = true;
+        private boolean display;
+        private int displayRows;
+        private boolean save;
+        private int threads;
+        private Charset charset = StandardCharsets.UTF_8;
+        private boolean nio = true;
+        private OutputFormat outputFormat = OutputFormat.TABLE;
+        private boolean lexer;
+        private int headerLines = SourceClassifier.HEADER_LINES;
+        private SourceFilter filter = SourceFilter.ALL;
+        private Aggregation aggregation = Aggregation.FILES;
+        private boolean stats;
+        private boolean duplicates;
+        private boolean metrics;
+        private int longLine = SourceMetrics.LONG_LINE;
+        private int shardIndex;
+        private int shardCount = 1;
+        private SourceShards shards;
+        private Function<Path, SourceCache> cache;
+        private Executor executor = ForkJoinPool.commonPool();
+        private Consumer<SourceCount> progress;
+        private SlocLog log;
+
+        private Builder() {
+            super();
+        }
+
+        /**
+         * @param   srcMain     source directory, relative to the base directory
+         */
+        public Builder srcMain(String srcMain) {
+            this.srcMain = srcMain;
+            return this;
+        }
+
+        /**
+         * Count the given source root instead of the source directory, for example a compile or test source root of a
+         * Maven project. All files of a root are of its type, the patterns of the filter are relative to each root.
+         * Roots which do not exist are skipped.
+         *
+         * @param   dir         source root, relative to the base directory or absolute
+         * @param   fileType    type of its files, for example "src", "test" or "generated"
+         */
+        public Builder sourceRoot(Path dir, String fileType) {
+            this.roots.put(dir, fileType);
+            return this;
+        }
+
+        /**
+         * Count the given source roots of a Maven project, see {@link #sourceRoot(Path, String)}.
+         *
+         * @param   roots           compile or test source roots of the project
+         * @param   fileType        type of their files, "src" or "test"
+         * @param   buildDir        build directory of the project
+         * @param   splitGenerated  the files of the roots in the build directory are of type "generated-" + fileType
+         */
+        public Builder sourceRoots(List<String> roots, String fileType, Path buildDir, boolean splitGenerated) {
+            Path absoluteBuildDir = buildDir.toAbsolutePath();
+
+            for (String root : roots) {
+                Path dir = Paths.get(root).toAbsolutePath();
+
+                sourceRoot(dir, splitGenerated && dir.startsWith(absoluteBuildDir) ? "generated-" + fileType : fileType);
+            }
+
+            return this;
+        }
+
+        /**
+         * @param   fileExt     extensions of the source files, separated by commas, for example "java,kt"
+         */
+        public Builder fileExt(String fileExt) {
+            this.fileExt = fileExt;
+            return this;
+        }
+
+        public Builder trimPkgNames(boolean trimPkgNames) {
+            this.trimPkgNames = trimPkgNames;
+            return this;
+        }
+
+        /**
+         * @param   display     log the table of the counts
+         */
+        public Builder display(boolean display) {
+            this.display = display;
+            return this;
+        }
+
+        /**
+         * @param   displayRows     files logged at most, those with the most code, followed by the totals, 0 logs the whole table
+         */
+        public Builder displayRows(int displayRows) {
+            this.displayRows = displayRows;
+            return this;
+        }
+
+        /**
+         * @param   save        save the report in the output format to the base directory
+         */
+        public Builder save(boolean save) {
+            this.save = save;
+            return this;
+        }
+
+        /**
+         * @param   threads     threads of a pool of each count, 1 walks serially, 0 walks on the executor if it is a
+         *                      {@code ForkJoinPool} and serially otherwise
+         */
+        public Builder threads(int threads) {
+            if (threads < 0) {
+                throw new IllegalArgumentException("Invalid number of threads: " + threads);
+            }
+
+            this.threads = threads;
+            return this;
+        }
+
+        public Builder charset(Charset charset) {
+            this.charset = charset;
+            return this;
+        }
+
+        /**
+         * @param   nio     classify lines on their bytes, if the charset is ASCII-compatible
+         */
+        public Builder nio(boolean nio) {
+            this.nio = nio;
+            return this;
+        }
+
+        public Builder outputFormat(OutputFormat outputFormat) {
+            this.outputFormat = outputFormat;
+            return this;
+        }
+
+        /**
+         * @param   lexer   classify lines with the character lexer
+         */
+        public Builder lexer(boolean lexer) {
+            this.lexer = lexer;
+            return this;
+        }
+
+        /**
+         * @param   headerLines     code lines searched for the package declaration at most
+         */
+        public Builder headerLines(int headerLines) {
+            this.headerLines = headerLines;
+            return this;
+        }
+
+        public Builder filter(SourceFilter filter) {
+            this.filter = filter;
+            return this;
+        }
+
+        /**
+         * @param   includes    patterns of the files to count, see {@link SourceFilter}
+         * @param   excludes    patterns of the files and directories to skip
+         * @throws  IllegalArgumentException    if a pattern is not a valid glob
+         */
+        public Builder filter(String includes, String excludes) {
+            return filter(new SourceFilter(includes, excludes));
+        }
+
+        public Builder aggregation(Aggregation aggregation) {
+            this.aggregation = aggregation;
+            return this;
+        }
+
+        /**
+         * @param   stats   measure each count, see {@link SlocResult#getStats()}
+         */
+        public Builder stats(boolean stats) {
+            this.stats = stats;
+            return this;
+        }
+
+        /**
+         * @param   duplicates  hash the code lines of the files while counting them, the reports group the files of the same code
+         */
+        public Builder duplicates(boolean duplicates) {
+            this.duplicates = duplicates;
+            return this;
+        }
+
+        /**
+         * @param   metrics     compute the code metrics of the files while counting them, the reports show them as extra columns
+         */
+        public Builder metrics(boolean metrics) {
+            this.metrics = metrics;
+            return this;
+        }
+
+        /**
+         * @param   longLine    lines longer than that many columns are counted as long lines by the metrics
+         */
+        public Builder longLine(int longLine) {
+            this.longLine = longLine;
+            return this;
+        }
+
+        /**
+         * Count only the files of one shard of the tree, see {@link SourceShards#shardOf(String, int)}.
+         *
+         * @param   shardIndex  shard of the counts, from 0 to shardCount - 1
+         * @param   shardCount  number of shards, 1 counts all files
+         */
+        public Builder shard(int shardIndex, int shardCount) {
+            if (shardCount < 1 || shardIndex < 0 || shardIndex >= shardCount) {
+                throw new IllegalArgumentException("Invalid SLOC shard: " + shardIndex + " of " + shardCount);
+            }
+
+            this.shardIndex = shardIndex;
+            this.shardCount = shardCount;
+            return this;
+        }
+
+        /**
+         * @param   shards  where each count writes the partial result of its shard and {@link SlocCounter#merge(Path)} reads
+         *                  them, nothing is written if null
+         */
+        public Builder shards(SourceShards shards) {
+            this.shards = shards;
+            return this;
+        }
+
+        /**
+         * @param   cache   the cache of a base directory, asked for once per count, may return null
+         */
+        public Builder cache(Function<Path, SourceCache> cache) {
+            this.cache = cache;
+            return this;
+        }
+
+        /**
+         * @param   executor    runs {@link SlocCounter#countAsync(Path)}, the common pool by default
+         */
+        public Builder executor(Executor executor) {
+            this.executor = executor;
+            return this;
+        }
+
+        /**
+         * @param   progress    given every file counted or taken from the cache, called by the threads counting the files
+         */
+        public Builder progress(Consumer<SourceCount> progress) {
+            this.progress = progress;
+            return this;
+        }
+
+        /**
+         * @param   log     log of the tables, warnings and errors, nothing is logged by default
+         */
+        public Builder log(SlocLog log) {
+            this.log = log;
+            return this;
+        }
+
+        public SlocCounter build() {
+            if (srcMain == null || fileExt == null || charset == null || outputFormat == null || filter == null || aggregation == null
+                    || executor == null) {
+                throw new IllegalStateException("Missing SLOC counter option");
+            }
+
+            return new SlocCounter(this);
+        }
+    }
+
+    /**
+     * Collects the errors of one count and passes every message on to the log of the counter, if any.
+     */
+    private static final class CountLog implements SlocLog {
+        private final SlocLog log;
+        private final ConcurrentLinkedQueue<String> errors = new ConcurrentLinkedQueue<>();
+
+        private CountLog(SlocLog log) {
+            this.log = log;
+        }
+
+        private List<String> getErrors() {
+            return new ArrayList<>(errors);
+        }
+
+        @Override
+        public void log(Level level, String message) {
+            log(level, message, null);
+        }
+
+        @Override
+        public void log(Level level, String message, Throwable cause) {
+            if (level == Level.ERROR) {
+                errors.add(message);
+            }
+
+            if (log != null) {
+                log.log(level, message, cause);
+            }
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package kupusoglu.orhan.sloc_maven_plugin.engine;
+
+
+/**
+ * Receives the messages of a count by {@link SlocCounter}: the tables, the warnings and the errors of the files
+ * which could not be read. It is called by the threads counting the files.
+ * <br>
+ * It is the log of the whole engine, which does not depend on the Maven runtime, the goals pass their log on
+ * through {@link MavenSlocLog}.
+ *
+ * <pre>
+ * SlocCounter.builder().log((level, message) -&gt; System.err.println(level + ": " + message))
+ * </pre>
+ */
+@FunctionalInterface
+public interface SlocLog {
+    enum Level {
+        DEBUG, INFO, WARN, ERROR
+    }
+
+    /**
+     * @param   level       level of the message
+     * @param   message     the message, a table may span several lines
+     */
+    void log(Level level, String message);
+
+    /**
+     * @param   level       level of the message
+     * @param   message     the message
+     * @param   cause       the exception behind the message, may be null, only the message is logged by default
+     */
+    default void log(Level level, String message, Throwable cause) {
+        log(level, message);
+    }
+
+    default void debug(CharSequence message) {
+        log(Level.DEBUG, String.valueOf(message));
+    }
+
+    default void info(CharSequence message) {
+        log(Level.INFO, String.valueOf(message));
+    }
+
+    default void warn(CharSequence message) {
+        log(Level.WARN, String.valueOf(message));
+    }
+
+    default void error(CharSequence message) {
+        log(Level.ERROR, String.valueOf(message));
+    }
+
+    default void error(CharSequence message, Throwable cause) {
+        log(Level.ERROR, String.valueOf(message), cause);
+    }
+}
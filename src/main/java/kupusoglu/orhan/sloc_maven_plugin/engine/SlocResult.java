@@ -0,0 +1,113 @@
+package kupusoglu.orhan.sloc_maven_plugin.engine;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+
+/**
+ * Immutable result of a count by {@link SlocCounter}: the counts of the files ordered by key, the totals per package
+ * and of the source directory, the stats if measured and the errors of the files which could not be read.
+ */
+public final class SlocResult {
+    private final Path baseDir;
+    private final String fileExt;
+    private final boolean trimPkgNames;
+    private final List<SourceCount> counts;
+    private final Map<String, int[]> packages;
+    private final int[] totals = new int[5];
+    private final SourceStats stats;
+    private final List<String> errors;
+
+    /**
+     * @param   counts      counts of the files ordered by key, empty if they were not kept
+     * @param   packages    package name to [files, blank, JavaDoc, comment, code]
+     * @param   stats       stats of the count, may be null
+     * @param   errors      messages of the files and directories which could not be read
+     */
+    SlocResult(Path baseDir, String fileExt, boolean trimPkgNames, List<SourceCount> counts, Map<String, int[]> packages, SourceStats stats,
+               List<String> errors) {
+        this.baseDir = baseDir;
+        this.fileExt = fileExt;
+        this.trimPkgNames = trimPkgNames;
+        this.counts = Collections.unmodifiableList(counts);
+        this.packages = Collections.unmodifiableMap(packages);
+        this.stats = stats;
+        this.errors = Collections.unmodifiableList(errors);
+
+        for (int[] rollup : packages.values()) {
+            for (int i = 0; i < totals.length; i++) {
+                totals[i] += rollup[i];
+            }
+        }
+    }
+
+    public Path getBaseDir() {
+        return baseDir;
+    }
+
+    /**
+     * @return  counts of the files ordered by key, empty with {@link Aggregation#PACKAGES}, which does not keep them
+     */
+    public List<SourceCount> getCounts() {
+        return counts;
+    }
+
+    /**
+     * @return  package name to [files, blank, JavaDoc, comment, code], ordered by package name
+     */
+    public Map<String, int[]> getPackages() {
+        return packages;
+    }
+
+    public int getFiles() {
+        return totals[0];
+    }
+
+    public int getBlank() {
+        return totals[1];
+    }
+
+    public int getJavaDoc() {
+        return totals[2];
+    }
+
+    public int getComment() {
+        return totals[3];
+    }
+
+    public int getCode() {
+        return totals[4];
+    }
+
+    public int getTotal() {
+        return totals[1] + totals[2] + totals[3] + totals[4];
+    }
+
+    /**
+     * @return  stats of the count, null if not measured
+     */
+    public SourceStats getStats() {
+        return stats;
+    }
+
+    /**
+     * @return  messages of the files and directories which could not be read, they are not counted
+     */
+    public List<String> getErrors() {
+        return errors;
+    }
+
+    /**
+     * Write the report of the counts in the given format, as saved by the goal.
+     *
+     * @param   outputFormat    format of the report
+     * @param   out             destination of the report
+     * @throws  IOException     if out cannot be written
+     */
+    public void write(OutputFormat outputFormat, Appendable out) throws IOException {
+        outputFormat.write(counts, fileExt, trimPkgNames, stats, out);
+    }
+}
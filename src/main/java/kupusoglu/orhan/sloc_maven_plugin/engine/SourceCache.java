@@ -0,0 +1,379 @@
+package kupusoglu.orhan.sloc_maven_plugin.engine;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
+
+
+/**
+ * Persistent per-file counts, so that only changed files are counted again.
+ * <br>
+ * An entry is reused if the path, size and modification time of the file are unchanged.
+ * With content hashes a file whose modification time changed, for example by a fresh checkout,
+ * is still reused if its size and CRC-32 are unchanged.
+ * <br>
+ * The cache is discarded if it was written by another plugin version or with other settings, for example
+ * another file extension. Files which are not looked up during a run are dropped when it is saved.
+ * <br>
+ * Binary format, big-endian as written by {@link DataOutputStream}:
+ * <pre>
+ * int     magic "SLOC"
+ * int     format version
+ * UTF     plugin version
+ * UTF     settings
+ * int     number of strings, then each string as UTF: package names, file types and languages
+ * int     number of entries, then each entry:
+ *         UTF path, long size, long modification time, long CRC-32 or -1,
+ *         int package index, int type index, int language index, int blank, int JavaDoc, int comment, int code, long hash,
+ *         boolean metrics, then if true int types, int methods, int max depth, int long lines, int complexity
+ * </pre>
+ */
+public class SourceCache {
+    public final static String CACHE_FILE = "sloc-cache.bin";
+
+    private final static int MAGIC = 0x534C4F43;
+    private final static int FORMAT_VERSION = 4;
+    private final static long NO_HASH = -1L;
+
+    private final Path file;
+    private final String pluginVersion;
+    private final boolean hash;
+    private String settings = "";
+    private boolean loaded;
+
+    private Map<String, Entry> previous = Collections.emptyMap();
+    private final ConcurrentHashMap<String, Entry> current = new ConcurrentHashMap<>();
+    private final AtomicInteger reused = new AtomicInteger();
+
+    /**
+     * @param   file            cache file, for example <strong>target/sloc-cache.bin</strong>
+     * @param   pluginVersion   version of the plugin which writes the cache
+     * @param   hash            reuse entries of files with changed modification times but unchanged content
+     */
+    public SourceCache(Path file, String pluginVersion, boolean hash) {
+        this.file = file;
+        this.pluginVersion = pluginVersion == null ? "" : pluginVersion;
+        this.hash = hash;
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    public boolean isHash() {
+        return hash;
+    }
+
+    /**
+     * @return  number of files reused in this run
+     */
+    public int getReused() {
+        return reused.get();
+    }
+
+    /**
+     * Load the entries of a previous run, a missing, outdated or corrupt cache is ignored.
+     *
+     * @param   settings    settings which affect the counts, for example file extension and encoding
+     * @return  number of entries loaded
+     */
+    public int load(String settings) {
+        return Math.max(0, read(settings == null ? "" : settings));
+    }
+
+    /**
+     * Load the entries whatever the settings they were written with, for example a partial result of a shard.
+     *
+     * @return  number of entries loaded, -1 if the file is missing, outdated or corrupt
+     * @see     #getSettings()
+     */
+    public int load() {
+        return read(null);
+    }
+
+    /**
+     * @return  true if the last load read the entries of a previous run, even if there were none
+     */
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    /**
+     * @return  the settings of the entries loaded, or of the entries to be saved
+     */
+    public String getSettings() {
+        return settings;
+    }
+
+    /**
+     * Start from no entries without reading the previous run, for example a partial result which is always rewritten.
+     *
+     * @param   settings    settings of the entries to be saved
+     */
+    public void setSettings(String settings) {
+        this.settings = settings == null ? "" : settings;
+        loaded = false;
+        previous = Collections.emptyMap();
+        current.clear();
+        reused.set(0);
+    }
+
+    /**
+     * @param   expected    settings of the entries, any settings if null
+     */
+    private int read(String expected) {
+        setSettings(expected);
+
+        if (!Files.isRegularFile(file)) {
+            return -1;
+        }
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION || !pluginVersion.equals(in.readUTF())) {
+                return -1;
+            }
+
+            String written = in.readUTF();
+
+            if (expected == null) {
+                settings = written;
+            } else if (!expected.equals(written)) {
+                return -1;
+            }
+
+            String[] strings = new String[in.readInt()];
+            for (int i = 0; i < strings.length; i++) {
+                strings[i] = in.readUTF();
+            }
+
+            int size = in.readInt();
+            Map<String, Entry> entries = new HashMap<>(size * 4 / 3 + 1);
+
+            for (int i = 0; i < size; i++) {
+                String path = in.readUTF();
+                long fileSize = in.readLong();
+                long modified = in.readLong();
+                long crc = in.readLong();
+                String packageName = strings[in.readInt()];
+                String fileType = strings[in.readInt()];
+                String language = strings[in.readInt()];
+
+                int blank = in.readInt();
+                int javaDoc = in.readInt();
+                int comment = in.readInt();
+                int code = in.readInt();
+                long contentHash = in.readLong();
+                SourceMetrics metrics = in.readBoolean()
+                                        ? new SourceMetrics(in.readInt(), in.readInt(), in.readInt(), in.readInt(), in.readInt()) : null;
+
+                SourceCount count = new SourceCount(path, packageName, getFileName(path), fileType, language,
+                                                    blank, javaDoc, comment, code, contentHash, metrics);
+
+                entries.put(path, new Entry(count, fileSize, modified, crc));
+            }
+
+            previous = entries;
+            loaded = true;
+        } catch (IOException | RuntimeException e) {
+            // a corrupt cache is counted again
+            previous = Collections.emptyMap();
+            return -1;
+        }
+
+        return previous.size();
+    }
+
+    /**
+     * @return  the counts loaded from the previous run by path, for example a baseline of a commit
+     */
+    public Map<String, SourceCount> getCounts() {
+        Map<String, SourceCount> counts = new HashMap<>(previous.size() * 4 / 3 + 1);
+
+        for (Map.Entry<String, Entry> entry : previous.entrySet()) {
+            counts.put(entry.getKey(), entry.getValue().count);
+        }
+
+        return counts;
+    }
+
+    /**
+     * Look up a file by its attributes only, without reading it.
+     *
+     * @param   path        path of the file relative to the base directory
+     * @param   size        size of the file
+     * @param   modified    modification time of the file in milliseconds
+     * @return  count       the cached counts, or null if the file has to be checked or counted
+     */
+    public SourceCount get(String path, long size, long modified) {
+        Entry entry = previous.get(path);
+
+        if (entry != null && entry.size == size && entry.modified == modified) {
+            current.put(path, entry);
+            reused.incrementAndGet();
+            return entry.count;
+        }
+
+        return null;
+    }
+
+    /**
+     * Look up a file whose modification time changed by the hash of its content.
+     *
+     * @param   path            path of the file relative to the base directory
+     * @param   size            size of the file
+     * @param   modified        modification time of the file in milliseconds
+     * @param   crc             hash of the content of the file, see {@link #crc(Path)}
+     * @return  count           the cached counts, or null if the file has to be counted
+     */
+    public SourceCount get(String path, long size, long modified, long crc) {
+        Entry entry = previous.get(path);
+
+        if (crc != NO_HASH && entry != null && entry.size == size && entry.crc == crc) {
+            current.put(path, new Entry(entry.count, size, modified, crc));
+            reused.incrementAndGet();
+            return entry.count;
+        }
+
+        return null;
+    }
+
+    /**
+     * Store the counts of a file counted in this run.
+     *
+     * @param   count           counts of the file
+     * @param   size            size of the file
+     * @param   modified        modification time of the file in milliseconds
+     * @param   crc             hash of the content of the file as given to {@link #get(String, long, long, long)}
+     */
+    public void put(SourceCount count, long size, long modified, long crc) {
+        current.put(count.getPath(), new Entry(count, size, modified, crc));
+    }
+
+    /**
+     * Store the counts of a file which is not on disk, for example a blob of a commit.
+     *
+     * @param   count           counts of the file
+     */
+    public void put(SourceCount count) {
+        current.put(count.getPath(), new Entry(count, -1L, -1L, NO_HASH));
+    }
+
+    /**
+     * Write the entries of this run to a temporary file, which then replaces the cache.
+     *
+     * @throws  IOException     if the cache cannot be written
+     */
+    public void save() throws IOException {
+        List<Entry> entries = new ArrayList<>(current.values());
+        Map<String, Integer> strings = new LinkedHashMap<>();
+
+        for (Entry entry : entries) {
+            strings.putIfAbsent(entry.count.getPackageName(), strings.size());
+            strings.putIfAbsent(entry.count.getFileType(), strings.size());
+            strings.putIfAbsent(entry.count.getLanguage(), strings.size());
+        }
+
+        Path dir = file.toAbsolutePath().getParent();
+        Files.createDirectories(dir);
+        Path temp = Files.createTempFile(dir, CACHE_FILE, ".tmp");
+
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(FORMAT_VERSION);
+                out.writeUTF(pluginVersion);
+                out.writeUTF(settings);
+
+                out.writeInt(strings.size());
+                for (String string : strings.keySet()) {
+                    out.writeUTF(string);
+                }
+
+                out.writeInt(entries.size());
+                for (Entry entry : entries) {
+                    SourceCount count = entry.count;
+
+                    out.writeUTF(count.getPath());
+                    out.writeLong(entry.size);
+                    out.writeLong(entry.modified);
+                    out.writeLong(entry.crc);
+                    out.writeInt(strings.get(count.getPackageName()));
+                    out.writeInt(strings.get(count.getFileType()));
+                    out.writeInt(strings.get(count.getLanguage()));
+                    out.writeInt(count.getBlank());
+                    out.writeInt(count.getJavaDoc());
+                    out.writeInt(count.getComment());
+                    out.writeInt(count.getCode());
+                    out.writeLong(count.getHash());
+                    out.writeBoolean(count.getMetrics() != null);
+                    if (count.getMetrics() != null) {
+                        for (int counter : count.getMetrics().getCounters()) {
+                            out.writeInt(counter);
+                        }
+                    }
+                }
+            }
+
+            try {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private static String getFileName(String path) {
+        return path.substring(path.lastIndexOf('/') + 1);
+    }
+
+    /**
+     * Hash the content of a file whose attributes changed, once for its look up and for its new entry.
+     *
+     * @param   absolutePath    the file
+     * @return  CRC-32 of the file, or -1 without reading it if content hashes are disabled
+     * @throws  IOException     if the file cannot be read
+     */
+    public long crc(Path absolutePath) throws IOException {
+        if (!hash) {
+            return NO_HASH;
+        }
+
+        CRC32 crc = new CRC32();
+        ByteBuffer buffer = ByteBuffer.allocate(8192);
+
+        try (FileChannel channel = FileChannel.open(absolutePath, StandardOpenOption.READ)) {
+            while (channel.read(buffer) >= 0) {
+                buffer.flip();
+                crc.update(buffer);
+                buffer.clear();
+            }
+        }
+
+        return crc.getValue();
+    }
+
+    private static final class Entry {
+        private final SourceCount count;
+        private final long size;
+        private final long modified;
+        private final long crc;
+
+        private Entry(SourceCount count, long size, long modified, long crc) {
+            this.count = count;
+            this.size = size;
+            this.modified = modified;
+            this.crc = crc;
+        }
+    }
+}
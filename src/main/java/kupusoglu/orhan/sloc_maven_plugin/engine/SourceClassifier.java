@@ -0,0 +1,195 @@
+package kupusoglu.orhan.sloc_maven_plugin.engine;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+
+
+/**
+ * Classifies the lines of a source file as blank, JavaDoc, comment or code, with the comment grammar of its language.
+ * <br>
+ * The lines are streamed from the file through a reused buffer, no line is materialized as a {@code String}.
+ * In NIO mode files of an ASCII-compatible charset are not even decoded, their lines are classified on the bytes.
+ * The state of a file lives only during {@link #classify}, and the buffers are confined to the calling thread.
+ * Hence a single instance can count any number of files concurrently.
+ */
+public class SourceClassifier {
+    public final static int HEADER_LINES = 100;
+
+    private final Charset charset;
+    private final boolean nio;
+    private final LanguageRegistry languages;
+    private final boolean lexer;
+    private final int headerLines;
+    private final boolean hash;
+    private final boolean metrics;
+    private final int longLine;
+    private final ThreadLocal<Worker> workers;
+
+    /**
+     * UTF-8 files, the lines are decoded and classified by the comment grammars of {@link LanguageRegistry#defaults()}.
+     */
+    public SourceClassifier() {
+        this(StandardCharsets.UTF_8, false, LanguageRegistry.defaults(), false, HEADER_LINES, false, false, SourceMetrics.LONG_LINE);
+    }
+
+    /**
+     * @param   charset     encoding of the source files
+     * @param   nio         classify lines on their bytes if the charset is ASCII-compatible, else decode them
+     * @param   languages   comment grammars by file extension
+     * @param   lexer       lex every character, so that markers in strings and trailing comments are told apart
+     * @param   headerLines code lines searched for the package declaration at most
+     * @param   hash        hash the trimmed code lines while they are classified, see {@link SourceCount#getHash()}
+     * @param   metrics     compute the code metrics while the lines are classified, see {@link SourceCount#getMetrics()}
+     * @param   longLine    lines longer than that many columns are long
+     */
+    public SourceClassifier(Charset charset, boolean nio, LanguageRegistry languages, boolean lexer, int headerLines, boolean hash,
+                            boolean metrics, int longLine) {
+        this.charset = charset;
+        this.nio = nio && ByteLineScanner.isAsciiCompatible(charset);
+        this.languages = languages;
+        this.lexer = lexer;
+        this.headerLines = headerLines;
+        this.hash = hash;
+        this.metrics = metrics;
+        this.longLine = longLine;
+        this.workers = ThreadLocal.withInitial(() -> new Worker(charset, this.nio, lexer, headerLines, hash, metrics, longLine));
+    }
+
+    public Charset getCharset() {
+        return charset;
+    }
+
+    public LanguageRegistry getLanguages() {
+        return languages;
+    }
+
+    /**
+     * @return  true if lines are lexed character by character
+     */
+    public boolean isLexer() {
+        return lexer;
+    }
+
+    public int getHeaderLines() {
+        return headerLines;
+    }
+
+    /**
+     * @return  true if the code lines are hashed
+     */
+    public boolean isHash() {
+        return hash;
+    }
+
+    /**
+     * @return  true if the code metrics are computed
+     */
+    public boolean isMetrics() {
+        return metrics;
+    }
+
+    public int getLongLine() {
+        return longLine;
+    }
+
+    /**
+     * @return  true if lines are classified on their bytes
+     */
+    public boolean isNio() {
+        return nio;
+    }
+
+    /**
+     * @param   fileExt     extensions of the classified files, separated by commas
+     * @return  the options which affect the counts, the counts of a cache are only valid for the same settings
+     */
+    public String getSettings(String fileExt) {
+        return "fileExt=" + fileExt + ";encoding=" + charset.name() + (lexer ? ";lexer=true" : "")
+               + (headerLines != HEADER_LINES ? ";headerLines=" + headerLines : "") + (hash ? ";duplicates=true" : "")
+               + (metrics ? ";metrics=" + longLine : "");
+    }
+
+    /**
+     * Count the lines of a single file.
+     *
+     * @param   absolutePath    A source file
+     * @param   path            path of the file relative to the base directory
+     * @param   fileType        one of src, test, int-test
+     * @return  count           immutable counts of the file
+     */
+    public SourceCount classify(Path absolutePath, String path, String fileType) {
+        try (FileChannel channel = FileChannel.open(absolutePath, StandardOpenOption.READ)) {
+            return classify(channel, path, absolutePath.getFileName().toString(), fileType);
+        } catch (IOException e) {
+            throw new UncheckedIOException(absolutePath + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Count the lines read from a channel, which is not closed, with the grammar of the file's extension.
+     *
+     * @param   channel     content of the source file
+     * @param   path        path of the file relative to the base directory
+     * @param   fileName    name of the file
+     * @param   fileType    one of src, test, int-test
+     * @return  count       immutable counts of the file
+     * @throws  IOException if the channel cannot be read
+     */
+    public SourceCount classify(ReadableByteChannel channel, String path, String fileName, String fileType) throws IOException {
+        Worker worker = workers.get();
+        LineClassifier lines = worker.lines;
+        Language language = worker.forFileName(languages, fileName);
+
+        lines.reset(language, charset);
+
+        if (worker.byteScanner != null) {
+            worker.byteScanner.scan(channel, lines);
+        } else {
+            worker.charScanner.scan(channel, lines);
+        }
+
+        return new SourceCount(path,
+                               lines.getPackageName(),
+                               fileName,
+                               fileType,
+                               language.getName(),
+                               lines.getBlank(),
+                               lines.getJavaDoc(),
+                               lines.getComment(),
+                               lines.getCode(),
+                               lines.getHash(),
+                               lines.getMetrics());
+    }
+
+    /**
+     * Buffers and line state reused by one thread.
+     */
+    private static final class Worker {
+        private final CharLineScanner charScanner;
+        private final ByteLineScanner byteScanner;
+        private final LineClassifier lines;
+        private final Map<String, Language> languages = new HashMap<>();
+
+        private Worker(Charset charset, boolean nio, boolean lexer, int headerLines, boolean hash, boolean metrics, int longLine) {
+            this.charScanner = nio ? null : new CharLineScanner(charset);
+            this.byteScanner = nio ? new ByteLineScanner(charset) : null;
+            this.lines = new LineClassifier(lexer, headerLines, hash, metrics, longLine);
+        }
+
+        /**
+         * The languages of the extensions met by this thread, the grammar of an unregistered extension is built once
+         * and not added to the shared registry.
+         */
+        private Language forFileName(LanguageRegistry registry, String fileName) {
+            return languages.computeIfAbsent(fileName.substring(fileName.lastIndexOf('.') + 1), registry::get);
+        }
+    }
+}
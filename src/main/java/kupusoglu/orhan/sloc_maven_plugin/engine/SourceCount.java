@@ -0,0 +1,129 @@
+package kupusoglu.orhan.sloc_maven_plugin.engine;
+
+
+/**
+ * Immutable line counts of a single source file.
+ */
+public final class SourceCount {
+    private final String path;
+    private final String packageName;
+    private final String fileName;
+    private final String fileType;
+    private final String language;
+    private final int blank;
+    private final int javaDoc;
+    private final int comment;
+    private final int code;
+    private final long hash;
+    private final SourceMetrics metrics;
+
+    /**
+     * @param   path        path of the file relative to the base directory, with '/' separators
+     * @param   packageName declared package, empty for the default package
+     * @param   fileName    name of the file
+     * @param   fileType    one of src, test, int-test
+     * @param   language    name of the language, empty if unknown
+     * @param   blank       blank lines
+     * @param   javaDoc     JavaDoc lines
+     * @param   comment     comment lines
+     * @param   code        code lines
+     * @param   hash        hash of the trimmed code lines, 0 if not computed
+     * @param   metrics     code metrics of the file, null if not computed
+     */
+    public SourceCount(String path, String packageName, String fileName, String fileType, String language,
+                       int blank, int javaDoc, int comment, int code, long hash, SourceMetrics metrics) {
+        this.path = path;
+        this.packageName = packageName == null ? "" : packageName;
+        this.fileName = fileName;
+        this.fileType = fileType;
+        this.language = language == null ? "" : language;
+        this.blank = blank;
+        this.javaDoc = javaDoc;
+        this.comment = comment;
+        this.code = code;
+        this.hash = hash;
+        this.metrics = metrics;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public String getPackageName() {
+        return packageName;
+    }
+
+    public String getFileName() {
+        return fileName;
+    }
+
+    public String getFileType() {
+        return fileType;
+    }
+
+    public String getLanguage() {
+        return language;
+    }
+
+    public int getBlank() {
+        return blank;
+    }
+
+    public int getJavaDoc() {
+        return javaDoc;
+    }
+
+    public int getComment() {
+        return comment;
+    }
+
+    public int getCode() {
+        return code;
+    }
+
+    /**
+     * @return  hash of the trimmed code lines but the package declaration, files with the same hash have the same code,
+     *          0 if not computed or there is no other code line
+     */
+    public long getHash() {
+        return hash;
+    }
+
+    /**
+     * @return  code metrics of the file, null if not computed
+     */
+    public SourceMetrics getMetrics() {
+        return metrics;
+    }
+
+    public int getTotal() {
+        return blank + javaDoc + comment + code;
+    }
+
+    /**
+     * @return  key "package:file:type" which orders the rows of the SLOC table
+     */
+    public String getKey() {
+        return packageName + ":" + fileName + ":" + fileType;
+    }
+
+    /**
+     * @return  a new array [blank, JavaDoc, comment, code]
+     */
+    public int[] getCounters() {
+        return new int[]{blank, javaDoc, comment, code};
+    }
+
+    /**
+     * Two files may share a key, for example the same class under two source folders of one package.
+     * The one with the greater path wins, so the result does not depend on the order of the walk.
+     */
+    static SourceCount preferred(SourceCount a, SourceCount b) {
+        return a.path.compareTo(b.path) >= 0 ? a : b;
+    }
+
+    @Override
+    public String toString() {
+        return getKey() + " " + path;
+    }
+}
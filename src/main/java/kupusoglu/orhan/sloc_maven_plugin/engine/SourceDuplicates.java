@@ -0,0 +1,149 @@
+package kupusoglu.orhan.sloc_maven_plugin.engine;
+
+import java.util.*;
+
+
+/**
+ * Groups the files of the same code by the hash of their trimmed code lines, see {@link SourceCount#getHash()}.
+ * <br>
+ * The first file of a group is the original, the others are its copies: the unique code is the code of all files
+ * less the code of the copies. Files without a hash or without code are never duplicates.
+ * Only the path of the first file of each hash is kept, the counts of a file are kept once it is a copy.
+ */
+public final class SourceDuplicates {
+    private final Map<Long, String> originals = new HashMap<>();
+    private final Map<Long, Group> groups = new HashMap<>();
+    private boolean hashed;
+    private int code;
+    private int copies;
+    private int copiedCode;
+
+    /**
+     * @param   count   counts of a file, added in the order of the report
+     */
+    public void add(SourceCount count) {
+        code += count.getCode();
+
+        if (count.getHash() == 0) {
+            return;
+        }
+
+        hashed = true;
+
+        if (count.getCode() > 0) {
+            String original = originals.putIfAbsent(count.getHash(), count.getPath());
+
+            if (original != null) {
+                groups.computeIfAbsent(count.getHash(), hash -> new Group(hash, original)).copies.add(count);
+                copies++;
+                copiedCode += count.getCode();
+            }
+        }
+    }
+
+    /**
+     * @return  true if the files were hashed, else nothing is known of duplicates
+     */
+    public boolean isHashed() {
+        return hashed;
+    }
+
+    /**
+     * @return  code of all files
+     */
+    public int getCode() {
+        return code;
+    }
+
+    /**
+     * @return  code of all files less the code of the copies
+     */
+    public int getUniqueCode() {
+        return code - copiedCode;
+    }
+
+    /**
+     * @return  files which are copies of another file
+     */
+    public int getCopies() {
+        return copies;
+    }
+
+    /**
+     * @return  files of the same code, the groups of the most copied code first
+     */
+    public List<Group> getGroups() {
+        List<Group> result = new ArrayList<>(groups.values());
+
+        result.sort(Comparator.comparingInt((Group group) -> group.getCopies().size() * group.getCode()).reversed()
+                              .thenComparing(Group::getOriginal));
+
+        return result;
+    }
+
+    /**
+     * @return  the table of the groups, empty if the files were not hashed
+     */
+    public StringBuilder toTable() {
+        StringBuilder sb = new StringBuilder();
+
+        if (hashed) {
+            List<Group> sorted = getGroups();
+
+            sb.append(String.format("SLOC - duplicates: %d copied file(s) in %d group(s), code %d, unique code %d\n",
+                                    copies, sorted.size(), code, getUniqueCode()));
+
+            for (Group group : sorted) {
+                sb.append(String.format("%8d code x %d:", group.getCode(), group.getCopies().size() + 1));
+                sb.append(' ').append(group.getOriginal());
+
+                for (SourceCount count : group.getCopies()) {
+                    sb.append(' ').append(count.getPath());
+                }
+
+                sb.append('\n');
+            }
+        }
+
+        return sb;
+    }
+
+    /**
+     * Files of the same code: the path of the original and the counts of its copies.
+     */
+    public static final class Group {
+        private final long hash;
+        private final String original;
+        private final List<SourceCount> copies = new ArrayList<>();
+
+        private Group(long hash, String original) {
+            this.hash = hash;
+            this.original = original;
+        }
+
+        public long getHash() {
+            return hash;
+        }
+
+        /**
+         * @return  path of the first file of the code
+         */
+        public String getOriginal() {
+            return original;
+        }
+
+        /**
+         * @return  the other files of the code, in the order they were added
+         */
+        public List<SourceCount> getCopies() {
+            return Collections.unmodifiableList(copies);
+        }
+
+        /**
+         * @return  code of a copy
+         */
+        public int getCode() {
+            return copies.get(0).getCode();
+        }
+    }
+}
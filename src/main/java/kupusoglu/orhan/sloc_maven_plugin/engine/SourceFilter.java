@@ -0,0 +1,117 @@
+package kupusoglu.orhan.sloc_maven_plugin.engine;
+
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.util.ArrayList;
+import java.util.List;
+
+
+/**
+ * Include and exclude patterns of the files to count, globs relative to the source directory separated by commas,
+ * for example "main/**" or "**&#47;resources/**,**&#47;node_modules/**".
+ * <br>
+ * As in Maven, a leading "**&#47;" also matches no directory at all, so "**&#47;resources/**" matches "resources/x".
+ * A directory matched by an exclude pattern, or by one ending with "/**", is pruned and its subtree is never listed.
+ * Include patterns only select files: any file below a directory may be included, hence it cannot be pruned by them.
+ */
+public final class SourceFilter {
+    public final static SourceFilter ALL = new SourceFilter(null, null);
+
+    private final List<PathMatcher> includes = new ArrayList<>();
+    private final List<PathMatcher> excludes = new ArrayList<>();
+    private final List<PathMatcher> excludedDirs = new ArrayList<>();
+
+    /**
+     * @param   includes    patterns of the files to count, none counts all files
+     * @param   excludes    patterns of the files and directories to skip
+     * @throws  IllegalArgumentException    if a pattern is not a valid glob
+     */
+    public SourceFilter(String includes, String excludes) {
+        super();
+
+        for (String pattern : split(includes)) {
+            addPattern(this.includes, pattern);
+        }
+
+        for (String pattern : split(excludes)) {
+            addPattern(this.excludes, pattern);
+            addPattern(excludedDirs, pattern);
+
+            if (pattern.endsWith("/**")) {
+                addPattern(excludedDirs, pattern.substring(0, pattern.length() - 3));
+            }
+        }
+    }
+
+    /**
+     * @return  true if all files are counted
+     */
+    public boolean isEmpty() {
+        return includes.isEmpty() && excludes.isEmpty();
+    }
+
+    /**
+     * @param   dir     directory relative to the source directory
+     * @return  true if the directory and its subtree are skipped
+     */
+    public boolean isExcludedDirectory(Path dir) {
+        return matchesAny(excludedDirs, dir);
+    }
+
+    /**
+     * Only the file itself is matched, its directories are expected to be pruned by the walk.
+     *
+     * @param   file    file relative to the source directory
+     * @return  true if the file is counted
+     */
+    public boolean isIncludedFile(Path file) {
+        return (includes.isEmpty() || matchesAny(includes, file)) && !matchesAny(excludes, file);
+    }
+
+    /**
+     * @param   file    file relative to the source directory
+     * @return  true if the file is counted and none of its directories is excluded
+     */
+    public boolean isIncluded(Path file) {
+        for (Path dir = file.getParent(); dir != null; dir = dir.getParent()) {
+            if (isExcludedDirectory(dir)) {
+                return false;
+            }
+        }
+
+        return isIncludedFile(file);
+    }
+
+    private static List<String> split(String patterns) {
+        List<String> result = new ArrayList<>();
+
+        if (patterns != null) {
+            for (String pattern : patterns.split(",")) {
+                if (!pattern.trim().isEmpty()) {
+                    result.add(pattern.trim());
+                }
+            }
+        }
+
+        return result;
+    }
+
+    private static void addPattern(List<PathMatcher> matchers, String pattern) {
+        matchers.add(FileSystems.getDefault().getPathMatcher("glob:" + pattern));
+
+        if (pattern.startsWith("**/")) {
+            matchers.add(FileSystems.getDefault().getPathMatcher("glob:" + pattern.substring(3)));
+        }
+    }
+
+    private static boolean matchesAny(List<PathMatcher> matchers, Path path) {
+        for (PathMatcher matcher : matchers) {
+            if (matcher.matches(path)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+}
@@ -0,0 +1,82 @@
+package kupusoglu.orhan.sloc_maven_plugin.engine;
+
+
+/**
+ * Immutable code metrics of a single source file, computed while its lines are classified, see {@link SourceCount#getMetrics()}.
+ * <br>
+ * The declarations, the depth and the complexity are found by a rough scan of the tokens of the code lines, not by
+ * a parser, so they are meant for the brace languages: Java, Kotlin, Scala and Groovy. The complexity is the number of
+ * methods plus the decision points, "if", "for", "while", "case", "catch", "&amp;&amp;", "||" and the conditional operator,
+ * the sum of the cyclomatic complexities of the methods.
+ * The long lines are counted among all lines, their columns are characters, a tab is one column.
+ */
+public final class SourceMetrics {
+    public final static int LONG_LINE = 120;
+
+    private final int types;
+    private final int methods;
+    private final int maxDepth;
+    private final int longLines;
+    private final int complexity;
+
+    /**
+     * @param   types       type declarations, classes, interfaces, enums, records, objects and traits
+     * @param   methods     method and constructor declarations
+     * @param   maxDepth    deepest nesting of braces
+     * @param   longLines   lines longer than the limit
+     * @param   complexity  methods plus decision points
+     */
+    public SourceMetrics(int types, int methods, int maxDepth, int longLines, int complexity) {
+        this.types = types;
+        this.methods = methods;
+        this.maxDepth = maxDepth;
+        this.longLines = longLines;
+        this.complexity = complexity;
+    }
+
+    public int getTypes() {
+        return types;
+    }
+
+    public int getMethods() {
+        return methods;
+    }
+
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+
+    public int getLongLines() {
+        return longLines;
+    }
+
+    public int getComplexity() {
+        return complexity;
+    }
+
+    /**
+     * @return  a new array [types, methods, maxDepth, longLines, complexity]
+     */
+    public int[] getCounters() {
+        return new int[]{types, methods, maxDepth, longLines, complexity};
+    }
+
+    /**
+     * Add the metrics to a rollup of several files: the depth is the deepest one, the others are summed.
+     *
+     * @param   rollup  [.., types, methods, maxDepth, longLines, complexity]
+     * @param   offset  index of the types in the rollup
+     */
+    void addTo(int[] rollup, int offset) {
+        rollup[offset] += types;
+        rollup[offset + 1] += methods;
+        rollup[offset + 2] = Math.max(rollup[offset + 2], maxDepth);
+        rollup[offset + 3] += longLines;
+        rollup[offset + 4] += complexity;
+    }
+
+    @Override
+    public String toString() {
+        return "types=" + types + " methods=" + methods + " maxDepth=" + maxDepth + " longLines=" + longLines + " complexity=" + complexity;
+    }
+}
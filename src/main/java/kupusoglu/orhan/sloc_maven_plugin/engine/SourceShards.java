@@ -0,0 +1,129 @@
+package kupusoglu.orhan.sloc_maven_plugin.engine;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.List;
+import java.util.zip.CRC32;
+
+
+/**
+ * The partial results of a count split into shards, for example across the nodes of a pipeline.
+ * <br>
+ * A file belongs to the shard of the CRC-32 of its path relative to the base directory, so the shards of a tree agree
+ * on their files whatever the machine and the order they are walked in. Each shard writes the counts of its files to
+ * a partial file in the format of {@link SourceCache}, <strong>sloc-shard-1-of-4.bin</strong>, whose settings are those
+ * of the count followed by the shard. The merge reads the partials of all shards back, their files are then reported
+ * as the files of a single count.
+ */
+public final class SourceShards {
+    public final static String PARTIAL_PREFIX = "sloc-shard-";
+    public final static String PARTIAL_SUFFIX = ".bin";
+
+    private final static String SHARD = ";shard=";
+
+    private final Path dir;
+    private final String pluginVersion;
+
+    /**
+     * @param   dir             directory of the partial files, written by the shards and read by the merge
+     * @param   pluginVersion   version of the plugin, the partials of another version are not merged
+     */
+    public SourceShards(Path dir, String pluginVersion) {
+        this.dir = dir;
+        this.pluginVersion = pluginVersion;
+    }
+
+    public Path getDir() {
+        return dir;
+    }
+
+    /**
+     * @param   path        path of the file relative to the base directory, separated by '/'
+     * @param   shardCount  number of shards
+     * @return  index of the shard of the file, from 0 to shardCount - 1
+     */
+    public static int shardOf(String path, int shardCount) {
+        CRC32 crc = new CRC32();
+        crc.update(path.getBytes(StandardCharsets.UTF_8));
+
+        return (int) (crc.getValue() % shardCount);
+    }
+
+    /**
+     * Write the partial result of a shard, it replaces the one of a previous run.
+     *
+     * @param   settings    settings of the count, see {@link SlocCounter#getSettings()}
+     * @param   counts      counts of the files of the shard
+     * @return  the partial file
+     * @throws  IOException     if the partial cannot be written
+     */
+    public Path write(int shardIndex, int shardCount, String settings, Collection<SourceCount> counts) throws IOException {
+        Path file = dir.resolve(PARTIAL_PREFIX + shardIndex + "-of-" + shardCount + PARTIAL_SUFFIX);
+        SourceCache partial = new SourceCache(file, pluginVersion, false);
+
+        partial.setSettings(settings + SHARD + shardIndex + "/" + shardCount);
+
+        for (SourceCount count : counts) {
+            partial.put(count);
+        }
+
+        partial.save();
+
+        return file;
+    }
+
+    /**
+     * Read the partial results of all shards of a count.
+     *
+     * @return  counts of the files of all shards
+     * @throws  NoSuchFileException     if there are no partials
+     * @throws  IOException             if a partial cannot be read, is missing or was written with other settings
+     */
+    public List<SourceCount> read() throws IOException {
+        List<SourceCount> counts = new ArrayList<>();
+        BitSet shards = new BitSet();
+        String settings = null;
+        int shardCount = 0;
+
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, PARTIAL_PREFIX + "*" + PARTIAL_SUFFIX)) {
+            for (Path file : files) {
+                SourceCache partial = new SourceCache(file, pluginVersion, false);
+                int separator;
+
+                if (partial.load() < 0 || (separator = partial.getSettings().lastIndexOf(SHARD)) < 0) {
+                    throw new IOException("Not a SLOC partial result of this plugin version: " + file);
+                }
+
+                String[] shard = partial.getSettings().substring(separator + SHARD.length()).split("/");
+                int index = Integer.parseInt(shard[0]);
+
+                if (settings == null) {
+                    settings = partial.getSettings().substring(0, separator);
+                    shardCount = Integer.parseInt(shard[1]);
+                } else if (!settings.equals(partial.getSettings().substring(0, separator)) || shardCount != Integer.parseInt(shard[1])) {
+                    throw new IOException("SLOC partial result of another count: " + file);
+                }
+
+                shards.set(index);
+                counts.addAll(partial.getCounts().values());
+            }
+        }
+
+        if (settings == null) {
+            throw new NoSuchFileException(dir.resolve(PARTIAL_PREFIX + "*" + PARTIAL_SUFFIX).toString());
+        }
+
+        if (shards.cardinality() != shardCount) {
+            throw new IOException("Missing SLOC partial result of shard " + shards.nextClearBit(0) + " of " + shardCount + ": " + dir);
+        }
+
+        return counts;
+    }
+}
@@ -0,0 +1,218 @@
+package kupusoglu.orhan.sloc_maven_plugin.engine;
+
+import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
+
+
+/**
+ * Where the time of a count goes: the wall time of each phase, the files counted, reused, excluded, skipped or failed,
+ * the bytes read and the slowest files.
+ * <br>
+ * The counters are updated by the threads counting files without locks, only the slowest files are kept under a lock.
+ * Nothing is measured unless an instance is given to the count.
+ */
+public final class SourceStats {
+    public final static int SLOWEST = 10;
+
+    private final Map<String, Long> phases = new LinkedHashMap<>();
+    private final LongAdder counted = new LongAdder();
+    private final LongAdder cached = new LongAdder();
+    private final LongAdder excluded = new LongAdder();
+    private final LongAdder skipped = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder bytes = new LongAdder();
+    private final LongAdder nanos = new LongAdder();
+    private final int slowestSize;
+    private final PriorityQueue<TimedFile> slowest = new PriorityQueue<>(Comparator.comparingLong(file -> file.nanos));
+
+    public SourceStats() {
+        this(SLOWEST);
+    }
+
+    /**
+     * @param   slowestSize     number of the slowest files kept
+     */
+    public SourceStats(int slowestSize) {
+        super();
+
+        this.slowestSize = slowestSize;
+    }
+
+    /**
+     * @param   name    name of the phase, the times of a phase are added up
+     * @param   nanos   wall time of the phase
+     */
+    public synchronized void phase(String name, long nanos) {
+        phases.merge(name, nanos, Long::sum);
+    }
+
+    /**
+     * @param   path    path of the file counted
+     * @param   nanos   time to read and classify it
+     * @param   bytes   size of the file
+     */
+    public void counted(String path, long nanos, long bytes) {
+        counted.increment();
+        this.nanos.add(nanos);
+        this.bytes.add(bytes);
+
+        synchronized (slowest) {
+            if (slowest.size() < slowestSize) {
+                slowest.add(new TimedFile(path, nanos, bytes));
+            } else if (slowestSize > 0 && slowest.peek().nanos < nanos) {
+                slowest.poll();
+                slowest.add(new TimedFile(path, nanos, bytes));
+            }
+        }
+    }
+
+    /**
+     * A file whose counts were reused from the cache, it is not read.
+     */
+    public void cached() {
+        cached.increment();
+    }
+
+    /**
+     * A file or a directory not walked because of the include and exclude patterns.
+     */
+    public void excluded() {
+        excluded.increment();
+    }
+
+    /**
+     * An entry which is not a regular file, such as a link.
+     */
+    public void skipped() {
+        skipped.increment();
+    }
+
+    /**
+     * A file or directory which could not be read.
+     */
+    public void failed() {
+        failed.increment();
+    }
+
+    /**
+     * @return  name to wall time in nanoseconds, in the order of the phases
+     */
+    public synchronized Map<String, Long> getPhases() {
+        return new LinkedHashMap<>(phases);
+    }
+
+    public long getCounted() {
+        return counted.sum();
+    }
+
+    public long getCached() {
+        return cached.sum();
+    }
+
+    public long getExcluded() {
+        return excluded.sum();
+    }
+
+    public long getSkipped() {
+        return skipped.sum();
+    }
+
+    public long getFailed() {
+        return failed.sum();
+    }
+
+    /**
+     * @return  bytes of the files counted
+     */
+    public long getBytes() {
+        return bytes.sum();
+    }
+
+    /**
+     * @return  time to read and classify the files counted, summed over all threads
+     */
+    public long getFileNanos() {
+        return nanos.sum();
+    }
+
+    /**
+     * @return  files counted and reused per second of the walk, 0 if there was no walk
+     */
+    public double getFilesPerSecond() {
+        Long walk = getPhases().get("walk");
+
+        return walk == null || walk == 0 ? 0 : (getCounted() + getCached()) * 1e9 / walk;
+    }
+
+    /**
+     * @return  the slowest files, the slowest first
+     */
+    public List<TimedFile> getSlowest() {
+        List<TimedFile> files;
+
+        synchronized (slowest) {
+            files = new ArrayList<>(slowest);
+        }
+
+        files.sort(Comparator.comparingLong((TimedFile file) -> file.nanos).reversed());
+
+        return files;
+    }
+
+    /**
+     * @return  a summary for the log, one line per subject
+     */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("SLOC - stats\n");
+
+        sb.append("phases  :");
+        String separator = " ";
+        for (Map.Entry<String, Long> phase : getPhases().entrySet()) {
+            sb.append(separator).append(phase.getKey()).append(' ').append(millis(phase.getValue())).append(" ms");
+            separator = ", ";
+        }
+
+        sb.append("\nfiles   : ").append(getCounted()).append(" counted, ").append(getCached()).append(" cached, ")
+          .append(getExcluded()).append(" excluded, ").append(getSkipped()).append(" skipped, ").append(getFailed()).append(" failed");
+        sb.append("\nread    : ").append(getBytes()).append(" bytes in ").append(millis(getFileNanos())).append(" ms of all threads, ")
+          .append(String.format(Locale.ROOT, "%.0f", getFilesPerSecond())).append(" files/s");
+
+        for (TimedFile file : getSlowest()) {
+            sb.append("\nslowest : ").append(millis(file.nanos)).append(" ms ").append(file.bytes).append(" bytes ").append(file.path);
+        }
+
+        return sb.toString();
+    }
+
+    static String millis(long nanos) {
+        return String.format(Locale.ROOT, "%.1f", nanos / 1e6);
+    }
+
+    /**
+     * A file counted, with its time and size.
+     */
+    public static final class TimedFile {
+        private final String path;
+        private final long nanos;
+        private final long bytes;
+
+        private TimedFile(String path, long nanos, long bytes) {
+            this.path = path;
+            this.nanos = nanos;
+            this.bytes = bytes;
+        }
+
+        public String getPath() {
+            return path;
+        }
+
+        public long getNanos() {
+            return nanos;
+        }
+
+        public long getBytes() {
+            return bytes;
+        }
+    }
+}
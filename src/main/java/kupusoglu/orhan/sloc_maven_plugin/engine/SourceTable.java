@@ -0,0 +1,551 @@
+package kupusoglu.orhan.sloc_maven_plugin.engine;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+
+/**
+ * The counts of the files in primitive columns, a compact alternative to a map of {@link SourceCount} by key.
+ * <br>
+ * Package names, types, languages and the directories of the paths are interned, so a row costs its file name and
+ * eight ints and a hash instead of a key, a path, a map entry and a {@code SourceCount}. The rows are sorted by key when they are first read, rows of the same
+ * key are reduced to the {@link SourceCount#preferred} one as in the map. The column of the {@link SourceMetrics} is only
+ * allocated once a row has metrics, a row without them is marked by -1.
+ * <br>
+ * With a run size, at most that many rows are kept: a full run is sorted and spilled to a temporary file, and the rows
+ * are read back by merging the runs, so the heap holds one row per run and the interned names only.
+ * <br>
+ * The rows are read as new {@code SourceCount} objects each time the table is iterated. Rows may be added by several
+ * threads, the table is read once all of them are added and {@link #close()} deletes the spilled runs.
+ */
+public final class SourceTable extends AbstractCollection<SourceCount> implements Closeable {
+    public final static int RUN_SIZE = 1 << 16;
+
+    // types, methods, max depth, long lines and complexity of a row
+    private final static int METRICS = 5;
+
+    private final int runSize;
+    private final Map<String, Integer> ids = new HashMap<>();
+    private final List<String> names = new ArrayList<>();
+    private final List<Path> runs = new ArrayList<>();
+    private final List<Closeable> readers = new ArrayList<>();
+
+    private int[] dirs = new int[16];
+    private String[] fileNames = new String[16];
+    private int[] packages = new int[16];
+    private int[] types = new int[16];
+    private int[] languages = new int[16];
+    private int[] counters = new int[16 * 4];
+    private long[] hashes = new long[16];
+    private int[] metrics;
+    private int rows;
+    private boolean sorted = true;
+
+    private int size = -1;
+    private Map<String, int[]> packageRollups;
+
+    /**
+     * All rows are kept in memory.
+     */
+    public SourceTable() {
+        this(0);
+    }
+
+    /**
+     * @param   runSize     rows kept in memory at most, the others are spilled to temporary files, 0 spills none
+     */
+    public SourceTable(int runSize) {
+        super();
+
+        this.runSize = runSize;
+    }
+
+    /**
+     * @param   count   counts of a file, only its values are kept
+     * @throws  UncheckedIOException    if a full run cannot be spilled
+     */
+    @Override
+    public synchronized boolean add(SourceCount count) {
+        if (runSize > 0 && rows == runSize) {
+            spill();
+        }
+
+        if (rows == fileNames.length) {
+            int capacity = runSize > 0 ? Math.min(runSize, rows + (rows >> 1)) : rows + (rows >> 1);
+
+            dirs = Arrays.copyOf(dirs, capacity);
+            fileNames = Arrays.copyOf(fileNames, capacity);
+            packages = Arrays.copyOf(packages, capacity);
+            types = Arrays.copyOf(types, capacity);
+            languages = Arrays.copyOf(languages, capacity);
+            counters = Arrays.copyOf(counters, capacity * 4);
+            hashes = Arrays.copyOf(hashes, capacity);
+            if (metrics != null) {
+                metrics = Arrays.copyOf(metrics, capacity * METRICS);
+            }
+        }
+
+        if (metrics == null && count.getMetrics() != null) {
+            metrics = new int[fileNames.length * METRICS];
+            for (int row = 0; row < rows; row++) {
+                metrics[row * METRICS] = -1;
+            }
+        }
+
+        String path = count.getPath();
+        String fileName = count.getFileName();
+
+        // the directory is shared by the files in it, a path which does not end with the file name is kept whole
+        dirs[rows] = path.endsWith(fileName) ? intern(path.substring(0, path.length() - fileName.length())) : ~intern(path);
+        fileNames[rows] = fileName;
+        packages[rows] = intern(count.getPackageName());
+        types[rows] = intern(count.getFileType());
+        languages[rows] = intern(count.getLanguage());
+        counters[rows * 4] = count.getBlank();
+        counters[rows * 4 + 1] = count.getJavaDoc();
+        counters[rows * 4 + 2] = count.getComment();
+        counters[rows * 4 + 3] = count.getCode();
+        hashes[rows] = count.getHash();
+        if (metrics != null) {
+            setMetrics(metrics, rows, count.getMetrics());
+        }
+        rows++;
+
+        sorted = false;
+        size = -1;
+        packageRollups = null;
+
+        return true;
+    }
+
+    @Override
+    public synchronized boolean isEmpty() {
+        return rows == 0 && runs.isEmpty();
+    }
+
+    /**
+     * @return  number of files, without the rows reduced by key, the spilled runs are read once to count them
+     */
+    @Override
+    public synchronized int size() {
+        if (runs.isEmpty()) {
+            sort();
+            return rows;
+        } else if (size < 0) {
+            scan();
+        }
+
+        return size;
+    }
+
+    /**
+     * @return  package name to [files, blank, JavaDoc, comment, code], ordered by package name
+     */
+    public synchronized Map<String, int[]> getPackages() {
+        if (packageRollups == null) {
+            scan();
+        }
+
+        return packageRollups;
+    }
+
+    /**
+     * @return  the rows ordered by key, the spilled runs are merged while reading
+     * @throws  UncheckedIOException    if a spilled run cannot be read
+     */
+    @Override
+    public synchronized Iterator<SourceCount> iterator() {
+        sort();
+
+        List<Cursor> cursors = new ArrayList<>(runs.size() + 1);
+
+        try {
+            for (Path run : runs) {
+                cursors.add(new RunCursor(run));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        cursors.add(new MemoryCursor());
+
+        return new MergeIterator(cursors);
+    }
+
+    /**
+     * Delete the spilled runs.
+     *
+     * @throws  IOException     if a run cannot be deleted
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        for (Closeable reader : readers) {
+            reader.close();
+        }
+        readers.clear();
+
+        for (Path run : runs) {
+            Files.deleteIfExists(run);
+        }
+        runs.clear();
+    }
+
+    private int intern(String name) {
+        Integer id = ids.get(name);
+
+        if (id == null) {
+            id = names.size();
+            ids.put(name, id);
+            names.add(name);
+        }
+
+        return id;
+    }
+
+    private String getPath(int row) {
+        return getPath(dirs[row], fileNames[row]);
+    }
+
+    private String getPath(int dir, String fileName) {
+        return dir >= 0 ? names.get(dir).concat(fileName) : names.get(~dir);
+    }
+
+    private static void setMetrics(int[] metrics, int row, SourceMetrics rowMetrics) {
+        if (rowMetrics == null) {
+            metrics[row * METRICS] = -1;
+        } else {
+            System.arraycopy(rowMetrics.getCounters(), 0, metrics, row * METRICS, METRICS);
+        }
+    }
+
+    private SourceMetrics getMetrics(int row) {
+        int i = row * METRICS;
+
+        if (metrics == null || metrics[i] < 0) {
+            return null;
+        }
+
+        return new SourceMetrics(metrics[i], metrics[i + 1], metrics[i + 2], metrics[i + 3], metrics[i + 4]);
+    }
+
+    private void scan() {
+        Map<String, int[]> rollups = new TreeMap<>();
+        int files = 0;
+
+        for (SourceCount count : this) {
+            int[] rollup = rollups.computeIfAbsent(count.getPackageName(), key -> new int[5]);
+
+            rollup[0]++;
+            rollup[1] += count.getBlank();
+            rollup[2] += count.getJavaDoc();
+            rollup[3] += count.getComment();
+            rollup[4] += count.getCode();
+            files++;
+        }
+
+        size = files;
+        packageRollups = Collections.unmodifiableMap(rollups);
+    }
+
+    private void spill() {
+        sort();
+
+        try {
+            Path run = Files.createTempFile("sloc-run", ".bin");
+            run.toFile().deleteOnExit();
+
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(run)))) {
+                out.writeInt(rows);
+
+                for (int row = 0; row < rows; row++) {
+                    out.writeUTF(getPath(row));
+                    out.writeUTF(fileNames[row]);
+                    out.writeInt(packages[row]);
+                    out.writeInt(types[row]);
+                    out.writeInt(languages[row]);
+                    for (int i = row * 4; i < row * 4 + 4; i++) {
+                        out.writeInt(counters[i]);
+                    }
+                    out.writeLong(hashes[row]);
+
+                    SourceMetrics rowMetrics = getMetrics(row);
+                    out.writeBoolean(rowMetrics != null);
+                    if (rowMetrics != null) {
+                        for (int counter : rowMetrics.getCounters()) {
+                            out.writeInt(counter);
+                        }
+                    }
+                }
+            }
+
+            runs.add(run);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot spill the SLOC rows: " + e.getMessage(), e);
+        }
+
+        Arrays.fill(fileNames, 0, rows, null);
+        rows = 0;
+        sorted = true;
+    }
+
+    /**
+     * Sort the rows in memory by key and reduce the rows of the same key.
+     */
+    private void sort() {
+        if (sorted) {
+            return;
+        }
+
+        int[] order = new int[rows];
+        for (int row = 0; row < rows; row++) {
+            order[row] = row;
+        }
+        mergeSort(order, new int[rows], 0, rows);
+
+        int capacity = fileNames.length;
+        int[] sortedDirs = new int[capacity];
+        String[] sortedFileNames = new String[capacity];
+        int[] sortedPackages = new int[capacity];
+        int[] sortedTypes = new int[capacity];
+        int[] sortedLanguages = new int[capacity];
+        int[] sortedCounters = new int[capacity * 4];
+        long[] sortedHashes = new long[capacity];
+        int[] sortedMetrics = metrics != null ? new int[capacity * METRICS] : null;
+        int kept = 0;
+
+        for (int row : order) {
+            int target = kept;
+
+            if (kept > 0 && packages[row] == sortedPackages[kept - 1] && types[row] == sortedTypes[kept - 1]
+                    && fileNames[row].equals(sortedFileNames[kept - 1])) {
+                // the same key: the greater path wins, the first row of the same path, as in SourceCount.preferred()
+                if (getPath(dirs[row], fileNames[row]).compareTo(getPath(sortedDirs[kept - 1], sortedFileNames[kept - 1])) <= 0) {
+                    continue;
+                }
+                target = kept - 1;
+            } else {
+                kept++;
+            }
+
+            sortedDirs[target] = dirs[row];
+            sortedFileNames[target] = fileNames[row];
+            sortedPackages[target] = packages[row];
+            sortedTypes[target] = types[row];
+            sortedLanguages[target] = languages[row];
+            System.arraycopy(counters, row * 4, sortedCounters, target * 4, 4);
+            sortedHashes[target] = hashes[row];
+            if (metrics != null) {
+                System.arraycopy(metrics, row * METRICS, sortedMetrics, target * METRICS, METRICS);
+            }
+        }
+
+        dirs = sortedDirs;
+        fileNames = sortedFileNames;
+        packages = sortedPackages;
+        types = sortedTypes;
+        languages = sortedLanguages;
+        counters = sortedCounters;
+        hashes = sortedHashes;
+        metrics = sortedMetrics;
+        rows = kept;
+        sorted = true;
+    }
+
+    /**
+     * A stable merge sort of row numbers, without boxing them.
+     */
+    private void mergeSort(int[] order, int[] work, int from, int to) {
+        if (to - from < 2) {
+            return;
+        }
+
+        int middle = (from + to) >>> 1;
+        mergeSort(order, work, from, middle);
+        mergeSort(order, work, middle, to);
+
+        if (compare(order[middle - 1], order[middle]) <= 0) {
+            return;
+        }
+
+        System.arraycopy(order, from, work, from, to - from);
+
+        for (int i = from, left = from, right = middle; i < to; i++) {
+            if (right >= to || (left < middle && compare(work[left], work[right]) <= 0)) {
+                order[i] = work[left++];
+            } else {
+                order[i] = work[right++];
+            }
+        }
+    }
+
+    private int compare(int a, int b) {
+        return compareKeys(names.get(packages[a]), fileNames[a], names.get(types[a]),
+                           names.get(packages[b]), fileNames[b], names.get(types[b]));
+    }
+
+    /**
+     * Same order as the keys "package:file:type" compared as strings, without concatenating them.
+     */
+    static int compareKeys(String package1, String file1, String type1, String package2, String file2, String type2) {
+        int length1 = package1.length() + file1.length() + type1.length() + 2;
+        int length2 = package2.length() + file2.length() + type2.length() + 2;
+
+        for (int i = 0; i < Math.min(length1, length2); i++) {
+            char c1 = keyChar(package1, file1, type1, i);
+            char c2 = keyChar(package2, file2, type2, i);
+
+            if (c1 != c2) {
+                return c1 - c2;
+            }
+        }
+
+        return length1 - length2;
+    }
+
+    private static char keyChar(String packageName, String fileName, String fileType, int i) {
+        if (i < packageName.length()) {
+            return packageName.charAt(i);
+        } else if ((i -= packageName.length()) == 0) {
+            return ':';
+        } else if (--i < fileName.length()) {
+            return fileName.charAt(i);
+        } else if ((i -= fileName.length()) == 0) {
+            return ':';
+        } else {
+            return fileType.charAt(i - 1);
+        }
+    }
+
+    private static int compareKeys(SourceCount a, SourceCount b) {
+        return compareKeys(a.getPackageName(), a.getFileName(), a.getFileType(), b.getPackageName(), b.getFileName(), b.getFileType());
+    }
+
+    /**
+     * A sorted source of rows, positioned on its first row.
+     */
+    private abstract static class Cursor {
+        SourceCount head;
+
+        /**
+         * @return  false if there are no more rows
+         */
+        abstract boolean advance() throws IOException;
+    }
+
+    private final class MemoryCursor extends Cursor {
+        private int row;
+
+        private MemoryCursor() {
+            advance();
+        }
+
+        @Override
+        boolean advance() {
+            if (row == rows) {
+                head = null;
+                return false;
+            }
+
+            int i = row * 4;
+            head = new SourceCount(getPath(row), names.get(packages[row]), fileNames[row], names.get(types[row]), names.get(languages[row]),
+                                   counters[i], counters[i + 1], counters[i + 2], counters[i + 3], hashes[row], getMetrics(row));
+            row++;
+
+            return true;
+        }
+    }
+
+    private final class RunCursor extends Cursor {
+        private final DataInputStream in;
+        private int remaining;
+
+        private RunCursor(Path run) throws IOException {
+            in = new DataInputStream(new BufferedInputStream(Files.newInputStream(run)));
+            readers.add(in);
+            remaining = in.readInt();
+            advance();
+        }
+
+        @Override
+        boolean advance() throws IOException {
+            if (remaining == 0) {
+                head = null;
+                in.close();
+                readers.remove(in);
+                return false;
+            }
+
+            String path = in.readUTF();
+            String fileName = in.readUTF();
+            String packageName = names.get(in.readInt());
+            String fileType = names.get(in.readInt());
+            String language = names.get(in.readInt());
+            int blank = in.readInt();
+            int javaDoc = in.readInt();
+            int comment = in.readInt();
+            int code = in.readInt();
+            long hash = in.readLong();
+            SourceMetrics metrics = in.readBoolean()
+                                    ? new SourceMetrics(in.readInt(), in.readInt(), in.readInt(), in.readInt(), in.readInt()) : null;
+
+            head = new SourceCount(path, packageName, fileName, fileType, language, blank, javaDoc, comment, code, hash, metrics);
+            remaining--;
+
+            return true;
+        }
+    }
+
+    /**
+     * Merges the sorted sources, the rows of the same key in several runs are reduced as well.
+     */
+    private static final class MergeIterator implements Iterator<SourceCount> {
+        private final PriorityQueue<Cursor> queue;
+
+        private MergeIterator(List<Cursor> cursors) {
+            queue = new PriorityQueue<>(Math.max(1, cursors.size()), (a, b) -> compareKeys(a.head, b.head));
+
+            for (Cursor cursor : cursors) {
+                if (cursor.head != null) {
+                    queue.add(cursor);
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return !queue.isEmpty();
+        }
+
+        @Override
+        public SourceCount next() {
+            if (queue.isEmpty()) {
+                throw new NoSuchElementException();
+            }
+
+            SourceCount count = pollHead();
+
+            while (!queue.isEmpty() && compareKeys(queue.peek().head, count) == 0) {
+                count = SourceCount.preferred(count, pollHead());
+            }
+
+            return count;
+        }
+
+        private SourceCount pollHead() {
+            Cursor cursor = queue.poll();
+            SourceCount head = cursor.head;
+
+            try {
+                if (cursor.advance()) {
+                    queue.add(cursor);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot read the spilled SLOC rows: " + e.getMessage(), e);
+            }
+
+            return head;
+        }
+    }
+}
@@ -0,0 +1,274 @@
+package kupusoglu.orhan.sloc_maven_plugin.engine;
+
+import org.apache.maven.plugin.MojoExecutionException;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Counts the source directory once and then watches it, only the files created, modified or deleted are counted again.
+ * <br>
+ * The counts of the files are kept in memory, see {@link Aggregation#FILES}. The events are collected until none arrives
+ * for the debounce window, then the changed files are counted and the report is replaced in one atomic move.
+ * <br>
+ * The directories are registered with a {@link WatchService}, excluded directories are not. If events are lost,
+ * the whole source directory is counted again.
+ */
+public class WatchLines implements Closeable {
+    public final static long DEBOUNCE = 200;
+
+    private SlocLog log;
+    private String baseDir;
+    private String srcMain;
+    private long debounce = DEBOUNCE;
+    private SourceFilter filter = SourceFilter.ALL;
+    private SlocCounter counter;
+
+    private Path basePath;
+    private Path srcPath;
+    private volatile WatchService watcher;
+    private CountSLOC countSLOC;
+    private TreeMap<String, SourceCount> byPath = new TreeMap<>();
+
+
+    public WatchLines() {
+        super();
+    }
+
+    /**
+     * @param   counter     options of the counts, the files must be aggregated by {@link Aggregation#FILES}, the report is
+     *                      saved after every change
+     * @param   debounce    milliseconds without events before the changed files are counted
+     */
+    public WatchLines(SlocLog log, String baseDir, SlocCounter counter, long debounce) {
+        this();
+
+        this.log = log;
+        this.baseDir = baseDir;
+        this.srcMain = counter.getSrcMain();
+        this.debounce = debounce;
+        this.filter = counter.getFilter();
+        this.counter = counter;
+
+        this.basePath = Paths.get(baseDir).toAbsolutePath().normalize();
+        this.srcPath = basePath.resolve(srcMain).normalize();
+    }
+
+    /**
+     * Count and watch until the thread is interrupted or {@link #close()} is called.
+     */
+    public void execute() throws MojoExecutionException {
+        if (!Files.isDirectory(srcPath)) {
+            log.warn("Does not contain a source directory: " + baseDir  + File.separator + srcMain);
+            return;
+        }
+
+        try {
+            watcher = srcPath.getFileSystem().newWatchService();
+
+            // registered before the first count, so no change is missed while counting
+            register(srcPath);
+            recountAll();
+            countSLOC.done();
+
+            log.info("SLOC - watching " + srcPath);
+
+            while (true) {
+                Set<Path> changed = new LinkedHashSet<>();
+                Set<Path> created = new HashSet<>();
+                boolean overflow = false;
+
+                WatchKey key = watcher.take();
+
+                do {
+                    Path dir = (Path) key.watchable();
+
+                    for (WatchEvent<?> event : key.pollEvents()) {
+                        if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                            overflow = true;
+                        } else {
+                            Path path = dir.resolve((Path) event.context());
+
+                            changed.add(path);
+
+                            if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE) {
+                                created.add(path);
+                            }
+                        }
+                    }
+
+                    key.reset();
+                } while ((key = watcher.poll(debounce, TimeUnit.MILLISECONDS)) != null);
+
+                long start = System.nanoTime();
+                int count;
+
+                if (overflow) {
+                    register(srcPath);
+                    count = recountAll();
+                } else {
+                    count = recount(changed, created);
+                }
+
+                if (count > 0) {
+                    countSLOC.saveReport();
+
+                    log.info("SLOC - recounted " + count + " file(s) in " + SourceStats.millis(System.nanoTime() - start) + " ms");
+                }
+            }
+        } catch (ClosedWatchServiceException e) {
+            log.debug("SLOC - stopped watching " + srcPath);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            throw new MojoExecutionException("Cannot watch " + srcPath + ": " + e.getMessage(), e);
+        } finally {
+            close();
+        }
+    }
+
+    /**
+     * Stop watching, {@link #execute()} returns.
+     */
+    @Override
+    public void close() {
+        WatchService watcher = this.watcher;
+
+        if (watcher != null) {
+            try {
+                watcher.close();
+            } catch (IOException e) {
+                log.warn("Cannot close the watch service: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * @return  the counts of the files, by their path
+     */
+    public SortedMap<String, SourceCount> getCounts() {
+        return Collections.unmodifiableSortedMap(byPath);
+    }
+
+    private int recountAll() throws IOException {
+        try {
+            countSLOC = counter.walk(basePath, log, null, null, () -> false);
+        } catch (NoSuchFileException e) {
+            log.warn("Does not contain a source directory: " + baseDir  + File.separator + srcMain);
+            return 0;
+        }
+
+        byPath.clear();
+
+        for (SourceCount count : countSLOC.getCounts()) {
+            byPath.put(count.getPath(), count);
+        }
+
+        // every file is tracked, not only the one reported for a key, so that it takes the place of a deleted one
+        for (SourceCount count : countSLOC.getShadowed()) {
+            byPath.put(count.getPath(), count);
+        }
+
+        return byPath.size();
+    }
+
+    private int recount(Set<Path> changed, Set<Path> created) throws IOException {
+        int count = 0;
+
+        for (Path path : changed) {
+            if (Files.isDirectory(path, LinkOption.NOFOLLOW_LINKS)) {
+                // the files of a new directory may have been created before it was registered
+                if (created.contains(path) && !isExcluded(path)) {
+                    register(path);
+                    count += recountTree(path);
+                }
+            } else {
+                String relativePath = getRelativePath(path);
+
+                // a deleted directory takes the files below it along
+                for (Iterator<SourceCount> i = byPath.subMap(relativePath + "/", relativePath + "0").values().iterator(); i.hasNext(); ) {
+                    SourceCount previous = i.next();
+
+                    i.remove();
+                    countSLOC.recount(basePath.resolve(previous.getPath()), previous);
+                    count++;
+                }
+
+                if (recountFile(path, relativePath)) {
+                    count++;
+                }
+            }
+        }
+
+        return count;
+    }
+
+    private boolean recountFile(Path path, String relativePath) {
+        SourceCount previous = byPath.remove(relativePath);
+        SourceCount current = countSLOC.recount(path, previous);
+
+        if (current != null) {
+            byPath.put(relativePath, current);
+        }
+
+        return previous != null || current != null;
+    }
+
+    private int recountTree(Path dir) throws IOException {
+        int[] count = {0};
+
+        Files.walkFileTree(dir, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path subDir, BasicFileAttributes attrs) {
+                return isExcluded(subDir) ? FileVisitResult.SKIP_SUBTREE : FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                if (recountFile(file, getRelativePath(file))) {
+                    count[0]++;
+                }
+
+                return FileVisitResult.CONTINUE;
+            }
+        });
+
+        return count[0];
+    }
+
+    private void register(Path dir) throws IOException {
+        Files.walkFileTree(dir, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path subDir, BasicFileAttributes attrs) throws IOException {
+                if (isExcluded(subDir)) {
+                    return FileVisitResult.SKIP_SUBTREE;
+                }
+
+                subDir.register(watcher, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY,
+                                StandardWatchEventKinds.ENTRY_DELETE);
+
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException e) {
+                log.warn("Cannot watch " + file + ": " + e.getMessage());
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    private boolean isExcluded(Path dir) {
+        return !filter.isEmpty() && filter.isExcludedDirectory(srcPath.relativize(dir.toAbsolutePath().normalize()));
+    }
+
+    private String getRelativePath(Path path) {
+        return basePath.relativize(path.toAbsolutePath().normalize()).toString().replace(File.separatorChar, '/');
+    }
+}
@@ -0,0 +1,160 @@
+package kupusoglu.orhan.sloc_maven_plugin.goal;
+
+import kupusoglu.orhan.sloc_maven_plugin.engine.CountModules;
+import kupusoglu.orhan.sloc_maven_plugin.engine.MavenOptions;
+import kupusoglu.orhan.sloc_maven_plugin.engine.MavenSlocLog;
+import kupusoglu.orhan.sloc_maven_plugin.engine.SlocCounter;
+import kupusoglu.orhan.sloc_maven_plugin.engine.SlocLog;
+
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugins.annotations.LifecyclePhase;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.project.MavenProject;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+
+/**
+ * Goal <strong>aggregate</strong>
+ * <br>
+ * Count source line of codes of all modules of a reactor in one pass, with a subtotal per module
+ *
+ * <br><br>
+ * <pre>
+ * mvn io.github.orhankupusoglu:sloc-maven-plugin:aggregate
+ * mvn sloc:aggregate
+ * </pre>
+ */
+@Mojo(
+    name = "aggregate",
+    defaultPhase = LifecyclePhase.VALIDATE,
+    aggregator = true
+)
+public class GoalAggregate extends AbstractMojo {
+    @Parameter(defaultValue = "${project}", required = true, readonly = true)
+    private MavenProject project;
+
+    @Parameter(defaultValue = "${reactorProjects}", required = true, readonly = true)
+    private List<MavenProject> reactorProjects;
+
+    /**
+     * name of the root directory for the source files of each module
+     * @parameter
+     */
+    @Parameter(property = "srcMain", defaultValue = "src")
+    private String srcMain;
+
+    /**
+     * extensions of the source files, separated by commas, for example "java,kt,xml"
+     * @parameter
+     */
+    @Parameter(property = "fileExt", defaultValue = "java")
+    private String fileExt;
+
+    /**
+     * patterns of the files to count, globs relative to srcMain separated by commas, for example "main/**", none counts all files
+     * @parameter
+     */
+    @Parameter(property = "includes")
+    private String includes;
+
+    /**
+     * patterns of the files and directories to skip, globs relative to srcMain separated by commas,
+     * for example "**&#47;resources/**,**&#47;node_modules/**", excluded directories are not walked at all
+     * @parameter
+     */
+    @Parameter(property = "excludes")
+    private String excludes;
+
+    /**
+     * encoding of the source files
+     * @parameter
+     */
+    @Parameter(property = "encoding", defaultValue = "${project.build.sourceEncoding}")
+    private String encoding;
+
+    /**
+     * classify lines on their bytes through NIO, files of charsets that are not ASCII-compatible are decoded
+     * @parameter
+     */
+    @Parameter(property = "nio", defaultValue = "true")
+    private boolean nio;
+
+    /**
+     * classify lines with the character lexer, which tells comment markers in strings and trailing comments from comments
+     * @parameter
+     */
+    @Parameter(property = "lexer", defaultValue = "false")
+    private boolean lexer;
+
+    /**
+     * format of the saved report of the files of all modules: table to "sloc.txt", json to "sloc.json" or csv to "sloc.csv"
+     * @parameter
+     */
+    @Parameter(property = "outputFormat", defaultValue = "table")
+    private String outputFormat;
+
+    /**
+     * trim package names
+     * @parameter
+     */
+    @Parameter(property = "trimPkgNames", defaultValue = "true")
+    private boolean trimPkgNames;
+
+    /**
+     * output SLOC data to stdout
+     * @parameter
+     */
+    @Parameter(property = "display", defaultValue = "true")
+    private boolean display;
+
+    /**
+     * output SLOC data to the file of the output format in the reactor's base directory
+     * @parameter
+     */
+    @Parameter(property = "save", defaultValue = "false")
+    private boolean save;
+
+    /**
+     * number of threads of a pool listing and counting the directories of all modules, 0 uses the common pool
+     * @parameter
+     */
+    @Parameter(property = "threads", defaultValue = "0")
+    private int threads;
+
+    public void execute() throws MojoExecutionException {
+        SlocLog log = new MavenSlocLog(getLog());
+
+        Map<String, String> modules = new LinkedHashMap<>();
+
+        for (MavenProject module : reactorProjects) {
+            String name = modules.containsKey(module.getArtifactId()) ? module.getGroupId() + ":" + module.getArtifactId() : module.getArtifactId();
+
+            modules.put(name, module.getBasedir().getAbsolutePath());
+        }
+
+        try {
+            SlocCounter counter = SlocCounter.builder()
+                                             .srcMain(srcMain)
+                                             .fileExt(fileExt)
+                                             .trimPkgNames(trimPkgNames)
+                                             .display(display)
+                                             .save(save)
+                                             .threads(threads)
+                                             .charset(MavenOptions.getCharset(log, encoding))
+                                             .nio(nio)
+                                             .outputFormat(MavenOptions.getOutputFormat(outputFormat))
+                                             .lexer(lexer)
+                                             .filter(MavenOptions.getSourceFilter(includes, excludes))
+                                             .build();
+
+            new CountModules(log, project.getBasedir().getAbsolutePath(), modules, counter).execute();
+        } catch (MojoExecutionException e) {
+            getLog().error(e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package kupusoglu.orhan.sloc_maven_plugin.goal;
+
+import kupusoglu.orhan.sloc_maven_plugin.engine.CountHistory;
+import kupusoglu.orhan.sloc_maven_plugin.engine.MavenOptions;
+import kupusoglu.orhan.sloc_maven_plugin.engine.MavenSlocLog;
+import kupusoglu.orhan.sloc_maven_plugin.engine.SlocLog;
+import kupusoglu.orhan.sloc_maven_plugin.engine.SourceClassifier;
+
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.project.MavenProject;
+
+
+/**
+ * Goal <strong>history</strong>
+ * <br>
+ * Count source line of codes of each commit of a range, read from the local git repository without a checkout
+ *
+ * <br><br>
+ * <pre>
+ * mvn io.github.orhankupusoglu:sloc-maven-plugin:history
+ * mvn sloc:history
+ * </pre>
+ */
+@Mojo(
+    name = "history"
+)
+public class GoalHistory extends AbstractMojo {
+    @Parameter(defaultValue = "${project}", required = true, readonly = true)
+    private MavenProject project;
+
+    /**
+     * name of the root directory for the source files
+     * @parameter
+     */
+    @Parameter(property = "srcMain", defaultValue = "src")
+    private String srcMain;
+
+    /**
+     * extensions of the source files, separated by commas, for example "java,kt,xml"
+     * @parameter
+     */
+    @Parameter(property = "fileExt", defaultValue = "java")
+    private String fileExt;
+
+    /**
+     * patterns of the files to count, globs relative to srcMain separated by commas, for example "main/**", none counts all files
+     * @parameter
+     */
+    @Parameter(property = "includes")
+    private String includes;
+
+    /**
+     * patterns of the files and directories to skip, globs relative to srcMain separated by commas,
+     * for example "**&#47;resources/**,**&#47;node_modules/**", excluded directories are not read at all
+     * @parameter
+     */
+    @Parameter(property = "excludes")
+    private String excludes;
+
+    /**
+     * encoding of the source files
+     * @parameter
+     */
+    @Parameter(property = "encoding", defaultValue = "${project.build.sourceEncoding}")
+    private String encoding;
+
+    /**
+     * classify lines on their bytes through NIO, files of charsets that are not ASCII-compatible are decoded
+     * @parameter
+     */
+    @Parameter(property = "nio", defaultValue = "true")
+    private boolean nio;
+
+    /**
+     * output one row per commit to stdout
+     * @parameter
+     */
+    @Parameter(property = "display", defaultValue = "true")
+    private boolean display;
+
+    /**
+     * output one row per commit to file "sloc-history.csv"
+     * @parameter
+     */
+    @Parameter(property = "save", defaultValue = "false")
+    private boolean save;
+
+    /**
+     * classify lines with the character lexer, which tells comment markers in strings and trailing comments from comments
+     * @parameter
+     */
+    @Parameter(property = "lexer", defaultValue = "false")
+    private boolean lexer;
+
+    /**
+     * code lines searched for the package declaration at most, the search also stops at the first other declaration
+     * @parameter
+     */
+    @Parameter(property = "headerLines", defaultValue = "" + SourceClassifier.HEADER_LINES)
+    private int headerLines;
+
+    /**
+     * revision whose history is counted, for example "HEAD", or range of revisions, for example "v1.0..HEAD", not "v1.0...HEAD"
+     * @parameter
+     */
+    @Parameter(property = "range", defaultValue = "HEAD")
+    private String range;
+
+    /**
+     * commits counted at most, the most recent ones
+     * @parameter
+     */
+    @Parameter(property = "maxCommits", defaultValue = "" + CountHistory.MAX_COMMITS)
+    private int maxCommits;
+
+    /**
+     * follow only the first parent of merge commits, the history of the mainline
+     * @parameter
+     */
+    @Parameter(property = "firstParent", defaultValue = "true")
+    private boolean firstParent;
+
+    public void execute() throws MojoExecutionException {
+        SlocLog log = new MavenSlocLog(getLog());
+
+        try {
+            new CountHistory(log,
+                             project.getBasedir().getAbsolutePath(),
+                             srcMain,
+                             fileExt,
+                             display,
+                             save,
+                             MavenOptions.getCharset(log, encoding),
+                             nio,
+                             lexer,
+                             headerLines,
+                             MavenOptions.getSourceFilter(includes, excludes),
+                             range,
+                             maxCommits,
+                             firstParent).execute();
+        } catch (MojoExecutionException e) {
+            getLog().error(e.getMessage());
+        }
+    }
+}
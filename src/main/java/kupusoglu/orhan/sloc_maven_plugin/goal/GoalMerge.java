@@ -0,0 +1,150 @@
+package kupusoglu.orhan.sloc_maven_plugin.goal;
+
+import kupusoglu.orhan.sloc_maven_plugin.engine.MavenOptions;
+import kupusoglu.orhan.sloc_maven_plugin.engine.MavenSlocLog;
+import kupusoglu.orhan.sloc_maven_plugin.engine.SlocCounter;
+import kupusoglu.orhan.sloc_maven_plugin.engine.SourceShards;
+
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.descriptor.PluginDescriptor;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.project.MavenProject;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+
+/**
+ * Goal <strong>merge</strong>
+ * <br>
+ * Report the source line of codes of a count split into shards by the goal <strong>sloc</strong>, from their partial results,
+ * the report is the one of a count of all files at once
+ *
+ * <br><br>
+ * <pre>
+ * mvn io.github.orhankupusoglu:sloc-maven-plugin:sloc -DshardIndex=0 -DshardCount=2
+ * mvn io.github.orhankupusoglu:sloc-maven-plugin:sloc -DshardIndex=1 -DshardCount=2
+ * mvn io.github.orhankupusoglu:sloc-maven-plugin:merge
+ * </pre>
+ */
+@Mojo(
+    name = "merge"
+)
+public class GoalMerge extends AbstractMojo {
+    @Parameter(defaultValue = "${project}", required = true, readonly = true)
+    private MavenProject project;
+
+    @Parameter(defaultValue = "${plugin}", required = true, readonly = true)
+    private PluginDescriptor plugin;
+
+    /**
+     * name of the root directory for the source files, as counted by the shards
+     * @parameter
+     */
+    @Parameter(property = "srcMain", defaultValue = "src")
+    private String srcMain;
+
+    /**
+     * the shards counted the compile and test source roots of the project instead of srcMain
+     * @parameter
+     */
+    @Parameter(property = "sourceRoots", defaultValue = "false")
+    private boolean sourceRoots;
+
+    /**
+     * with sourceRoots, the files of the roots in the build directory are of type "generated-src" or "generated-test"
+     * @parameter
+     */
+    @Parameter(property = "splitGenerated", defaultValue = "false")
+    private boolean splitGenerated;
+
+    /**
+     * extensions of the source files, separated by commas, for example "java,kt,xml"
+     * @parameter
+     */
+    @Parameter(property = "fileExt", defaultValue = "java")
+    private String fileExt;
+
+    /**
+     * format of the saved report: table to "sloc.txt", json to "sloc.json" or csv to "sloc.csv"
+     * @parameter
+     */
+    @Parameter(property = "outputFormat", defaultValue = "table")
+    private String outputFormat;
+
+    /**
+     * how the counts are kept: files in a map, columnar in compact columns, packages spills the files to temporary files
+     * and shows the totals per package, for millions of files
+     * @parameter
+     */
+    @Parameter(property = "aggregation", defaultValue = "files")
+    private String aggregation;
+
+    /**
+     * trim package names
+     * @parameter
+     */
+    @Parameter(property = "trimPkgNames", defaultValue = "true")
+    private boolean trimPkgNames;
+
+    /**
+     * output SLOC data to stdout
+     * @parameter
+     */
+    @Parameter(property = "display", defaultValue = "true")
+    private boolean display;
+
+    /**
+     * log at most this many files, those with the most code, followed by the totals of all files,
+     * 0 logs the whole table, the saved report always holds every file
+     * @parameter
+     */
+    @Parameter(property = "displayRows", defaultValue = "0")
+    private int displayRows;
+
+    /**
+     * output SLOC data to file "sloc.txt"
+     * @parameter
+     */
+    @Parameter(property = "save", defaultValue = "false")
+    private boolean save;
+
+    /**
+     * directory of the partial results of the shards, all shards of one count
+     * @parameter
+     */
+    @Parameter(property = "shardDir", defaultValue = "${project.build.directory}")
+    private File shardDir;
+
+    public void execute() throws MojoExecutionException {
+        SlocCounter.Builder builder = SlocCounter.builder()
+                                                 .log(new MavenSlocLog(getLog()))
+                                                 .srcMain(srcMain)
+                                                 .fileExt(fileExt)
+                                                 .trimPkgNames(trimPkgNames)
+                                                 .display(display)
+                                                 .displayRows(displayRows)
+                                                 .save(save)
+                                                 .outputFormat(MavenOptions.getOutputFormat(outputFormat))
+                                                 .aggregation(MavenOptions.getAggregation(aggregation))
+                                                 .shards(new SourceShards(shardDir.toPath(), plugin.getVersion()));
+
+        if (sourceRoots) {
+            Path buildDir = Paths.get(project.getBuild().getDirectory());
+
+            builder.sourceRoots(project.getCompileSourceRoots(), "src", buildDir, splitGenerated);
+            builder.sourceRoots(project.getTestCompileSourceRoots(), "test", buildDir, splitGenerated);
+        }
+
+        try {
+            builder.build().merge(project.getBasedir().toPath());
+        } catch (IOException e) {
+            // a partial report would pass for the whole one
+            throw new MojoExecutionException("Cannot merge the SLOC shards: " + e.getMessage(), e);
+        }
+    }
+}
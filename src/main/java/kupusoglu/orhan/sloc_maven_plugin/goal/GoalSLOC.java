@@ -1,15 +1,36 @@
 package kupusoglu.orhan.sloc_maven_plugin.goal;
 
-import kupusoglu.orhan.sloc_maven_plugin.engine.Common;
+import kupusoglu.orhan.sloc_maven_plugin.engine.CountChanges;
+import kupusoglu.orhan.sloc_maven_plugin.engine.CountDependencies;
+import kupusoglu.orhan.sloc_maven_plugin.engine.MavenOptions;
+import kupusoglu.orhan.sloc_maven_plugin.engine.MavenSlocLog;
+import kupusoglu.orhan.sloc_maven_plugin.engine.SlocCounter;
+import kupusoglu.orhan.sloc_maven_plugin.engine.SlocLog;
+import kupusoglu.orhan.sloc_maven_plugin.engine.SourceCache;
+import kupusoglu.orhan.sloc_maven_plugin.engine.SourceClassifier;
+import kupusoglu.orhan.sloc_maven_plugin.engine.SourceShards;
 
+import org.apache.maven.artifact.Artifact;
 import org.apache.maven.plugin.AbstractMojo;
 import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.descriptor.PluginDescriptor;
 import org.apache.maven.plugins.annotations.LifecyclePhase;
 import org.apache.maven.plugins.annotations.Mojo;
 import org.apache.maven.plugins.annotations.Parameter;
 import org.apache.maven.plugins.annotations.ResolutionScope;
 import org.apache.maven.project.MavenProject;
 
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
 
 /**
  * Goal <strong>loc</strong>
@@ -33,6 +54,9 @@ public class GoalSLOC extends AbstractMojo {
     @Parameter(defaultValue = "${project}", required = true, readonly = true)
     private MavenProject project;
 
+    @Parameter(defaultValue = "${plugin}", required = true, readonly = true)
+    private PluginDescriptor plugin;
+
     /**
      * name of the root directory for the source files
      * @parameter
@@ -41,12 +65,70 @@ public class GoalSLOC extends AbstractMojo {
     private String srcMain;
 
     /**
-     * extension of the source files
+     * count the compile and test source roots of the project instead of srcMain, the type of a file is the type of its root
+     * @parameter
+     */
+    @Parameter(property = "sourceRoots", defaultValue = "false")
+    private boolean sourceRoots;
+
+    /**
+     * with sourceRoots, the files of the roots in the build directory are of type "generated-src" or "generated-test"
+     * @parameter
+     */
+    @Parameter(property = "splitGenerated", defaultValue = "false")
+    private boolean splitGenerated;
+
+    /**
+     * extensions of the source files, separated by commas, for example "java,kt,xml"
      * @parameter
      */
     @Parameter(property = "fileExt", defaultValue = "java")
     private String fileExt;
 
+    /**
+     * patterns of the files to count, globs relative to srcMain separated by commas, for example "main/**", none counts all files
+     * @parameter
+     */
+    @Parameter(property = "includes")
+    private String includes;
+
+    /**
+     * patterns of the files and directories to skip, globs relative to srcMain separated by commas,
+     * for example "**&#47;resources/**,**&#47;node_modules/**", excluded directories are not walked at all
+     * @parameter
+     */
+    @Parameter(property = "excludes")
+    private String excludes;
+
+    /**
+     * encoding of the source files
+     * @parameter
+     */
+    @Parameter(property = "encoding", defaultValue = "${project.build.sourceEncoding}")
+    private String encoding;
+
+    /**
+     * classify lines on their bytes through NIO, files of charsets that are not ASCII-compatible are decoded
+     * @parameter
+     */
+    @Parameter(property = "nio", defaultValue = "true")
+    private boolean nio;
+
+    /**
+     * format of the saved report: table to "sloc.txt", json to "sloc.json" or csv to "sloc.csv"
+     * @parameter
+     */
+    @Parameter(property = "outputFormat", defaultValue = "table")
+    private String outputFormat;
+
+    /**
+     * how the counts are kept: files in a map, columnar in compact columns, packages spills the files to temporary files
+     * and shows the totals per package, for millions of files
+     * @parameter
+     */
+    @Parameter(property = "aggregation", defaultValue = "files")
+    private String aggregation;
+
     /**
      * trim package names
      * @parameter
@@ -61,6 +143,14 @@ public class GoalSLOC extends AbstractMojo {
     @Parameter(property = "display", defaultValue = "true")
     private boolean display;
 
+    /**
+     * log at most this many files, those with the most code, followed by the totals of all files,
+     * 0 logs the whole table, the saved report always holds every file
+     * @parameter
+     */
+    @Parameter(property = "displayRows", defaultValue = "0")
+    private int displayRows;
+
     /**
      * output SLOC data to file "sloc.txt"
      * @parameter
@@ -68,15 +158,240 @@ public class GoalSLOC extends AbstractMojo {
     @Parameter(property = "save", defaultValue = "false")
     private boolean save;
 
+    /**
+     * number of threads listing directories and counting files, 0 uses the number of available cores, 1 walks serially
+     * @parameter
+     */
+    @Parameter(property = "threads", defaultValue = "0")
+    private int threads;
+
+    /**
+     * classify lines with the character lexer, which tells comment markers in strings and trailing comments from comments
+     * @parameter
+     */
+    @Parameter(property = "lexer", defaultValue = "false")
+    private boolean lexer;
+
+    /**
+     * code lines searched for the package declaration at most, the search also stops at the first other declaration
+     * @parameter
+     */
+    @Parameter(property = "headerLines", defaultValue = "" + SourceClassifier.HEADER_LINES)
+    private int headerLines;
+
+    /**
+     * log the time of each phase, the files counted, excluded, skipped or failed, the bytes read and the slowest files,
+     * the json report holds them as well
+     * @parameter
+     */
+    @Parameter(property = "sloc.stats", defaultValue = "false")
+    private boolean stats;
+
+    /**
+     * hash the trimmed code lines of the files while counting them, the report groups the files of the same code
+     * and shows the unique code next to the code
+     * @parameter
+     */
+    @Parameter(property = "duplicates", defaultValue = "false")
+    private boolean duplicates;
+
+    /**
+     * compute the types, methods, deepest brace nesting, long lines and complexity of the files while counting them,
+     * the reports show them as extra columns
+     * @parameter
+     */
+    @Parameter(property = "metrics", defaultValue = "false")
+    private boolean metrics;
+
+    /**
+     * lines longer than that many characters are counted as long lines by the metrics
+     * @parameter
+     */
+    @Parameter(property = "longLine", defaultValue = "120")
+    private int longLine;
+
+    /**
+     * shard of this count, from 0 to shardCount - 1, the files are split among the shards by a hash of their relative path
+     * @parameter
+     */
+    @Parameter(property = "shardIndex", defaultValue = "0")
+    private int shardIndex;
+
+    /**
+     * number of shards of the count, each writes its partial result to shardDir and the goal "merge" reports all files,
+     * 1 counts all files
+     * @parameter
+     */
+    @Parameter(property = "shardCount", defaultValue = "1")
+    private int shardCount;
+
+    /**
+     * directory of the partial results of the shards
+     * @parameter
+     */
+    @Parameter(property = "shardDir", defaultValue = "${project.build.directory}")
+    private File shardDir;
+
+    /**
+     * reuse the counts of unchanged files from the cache file
+     * @parameter
+     */
+    @Parameter(property = "cache", defaultValue = "false")
+    private boolean cache;
+
+    /**
+     * reuse cached counts of files whose modification time changed but whose content did not
+     * @parameter
+     */
+    @Parameter(property = "cacheHash", defaultValue = "false")
+    private boolean cacheHash;
+
+    /**
+     * cache file of the per-file counts
+     * @parameter
+     */
+    @Parameter(property = "cacheFile", defaultValue = "${project.build.directory}/" + SourceCache.CACHE_FILE)
+    private File cacheFile;
+
+    /**
+     * count only the files changed since the merge base of this git revision and HEAD, for example "origin/main"
+     * @parameter
+     */
+    @Parameter(property = "sinceRef")
+    private String sinceRef;
+
+    /**
+     * baseline file of the per-file counts of the merge base
+     * @parameter
+     */
+    @Parameter(property = "baselineFile", defaultValue = "${project.build.directory}/" + CountChanges.BASELINE_FILE)
+    private File baselineFile;
+
+    /**
+     * count the source jars of the resolved dependencies found in the local repository, with a subtotal per artifact,
+     * save writes them to "sloc-dependencies.txt"
+     * @parameter
+     */
+    @Parameter(property = "dependencies", defaultValue = "false")
+    private boolean dependencies;
+
+    /**
+     * cache file of the counts of the source jars of released dependencies
+     * @parameter
+     */
+    @Parameter(property = "dependencyCacheFile", defaultValue = "${project.build.directory}/" + CountDependencies.CACHE_FILE)
+    private File dependencyCacheFile;
+
     public void execute() throws MojoExecutionException {
+        countSources();
+
+        if (dependencies) {
+            countDependencies();
+        }
+    }
+
+    private void countSources() {
+        SlocLog log = new MavenSlocLog(getLog());
+
+        try {
+            SlocCounter.Builder builder = SlocCounter.builder()
+                                                     .log(log)
+                                                     .srcMain(srcMain)
+                                                     .fileExt(fileExt)
+                                                     .trimPkgNames(trimPkgNames)
+                                                     .display(display)
+                                                     .displayRows(displayRows)
+                                                     .save(save)
+                                                     .threads(threads > 0 ? threads : Runtime.getRuntime().availableProcessors())
+                                                     .charset(MavenOptions.getCharset(log, encoding))
+                                                     .nio(nio)
+                                                     .cache(cache ? baseDir -> new SourceCache(cacheFile.toPath(), plugin.getVersion(),
+                                                                                               cacheHash) : null)
+                                                     .outputFormat(MavenOptions.getOutputFormat(outputFormat))
+                                                     .lexer(lexer)
+                                                     .headerLines(headerLines)
+                                                     .filter(MavenOptions.getSourceFilter(includes, excludes))
+                                                     .aggregation(MavenOptions.getAggregation(aggregation))
+                                                     .stats(stats)
+                                                     .duplicates(duplicates)
+                                                     .metrics(metrics)
+                                                     .longLine(longLine)
+                                                     .shard(shardIndex, shardCount)
+                                                     .shards(shardCount > 1 ? new SourceShards(shardDir.toPath(), plugin.getVersion()) : null);
+
+            if (sourceRoots) {
+                Path buildDir = Paths.get(project.getBuild().getDirectory());
+
+                builder.sourceRoots(project.getCompileSourceRoots(), "src", buildDir, splitGenerated);
+                builder.sourceRoots(project.getTestCompileSourceRoots(), "test", buildDir, splitGenerated);
+            }
+
+            if (sinceRef != null && !sinceRef.isEmpty()) {
+                if (threads > 0) {
+                    getLog().warn("The threads are not used with sinceRef, the changed files are counted in the calling thread");
+                }
+
+                new CountChanges(log, project.getBasedir().getAbsolutePath(), builder.build(), sinceRef,
+                                 new SourceCache(baselineFile.toPath(), plugin.getVersion(), false)).execute();
+                return;
+            }
+
+            builder.build().count(project.getBasedir().toPath());
+        } catch (NoSuchFileException e) {
+            getLog().warn("Does not contain a source directory: " + e.getFile());
+        } catch (IOException e) {
+            getLog().error(e.getMessage());
+        } catch (MojoExecutionException | IllegalArgumentException e) {
+            getLog().error(e.getMessage());
+        }
+    }
+
+    private void countDependencies() {
+        SlocLog log = new MavenSlocLog(getLog());
+
+        Map<String, Path> jars = new TreeMap<>();
+        Set<String> snapshots = new HashSet<>();
+        int missing = 0;
+
+        for (Artifact artifact : project.getArtifacts()) {
+            if (artifact.getFile() == null || artifact.hasClassifier()) {
+                continue;
+            }
+
+            // the source jar lies next to the jar in the local repository, it is not downloaded,
+            // a snapshot resolved from a remote repository has a timestamped version but is stored under its base version
+            Path jar = artifact.getFile().toPath().resolveSibling(artifact.getArtifactId() + "-" + artifact.getBaseVersion() + "-sources.jar");
+            String coordinate = artifact.getGroupId() + ":" + artifact.getArtifactId() + ":" + artifact.getVersion();
+
+            if (Files.isRegularFile(jar)) {
+                jars.put(coordinate, jar);
+
+                if (artifact.isSnapshot()) {
+                    snapshots.add(coordinate);
+                }
+            } else {
+                missing++;
+            }
+        }
+
+        if (missing > 0) {
+            getLog().info("SLOC - dependencies without a source jar in the local repository: " + missing);
+        }
+
         try {
-            Common.countLines(getLog(),
-                              project.getBasedir().getAbsolutePath(),
-                              srcMain,
-                              fileExt,
-                              trimPkgNames,
-                              display,
-                              save);
+            new CountDependencies(log,
+                                  project.getBasedir().getAbsolutePath(),
+                                  jars,
+                                  snapshots,
+                                  fileExt,
+                                  display,
+                                  save,
+                                  threads > 0 ? threads : Runtime.getRuntime().availableProcessors(),
+                                  MavenOptions.getCharset(log, encoding),
+                                  nio,
+                                  lexer,
+                                  headerLines,
+                                  new SourceCache(dependencyCacheFile.toPath(), plugin.getVersion(), false)).execute();
         } catch (MojoExecutionException e) {
             getLog().error(e.getMessage());
         }
@@ -0,0 +1,151 @@
+package kupusoglu.orhan.sloc_maven_plugin.goal;
+
+import kupusoglu.orhan.sloc_maven_plugin.engine.MavenOptions;
+import kupusoglu.orhan.sloc_maven_plugin.engine.MavenSlocLog;
+import kupusoglu.orhan.sloc_maven_plugin.engine.SlocCounter;
+import kupusoglu.orhan.sloc_maven_plugin.engine.SlocLog;
+import kupusoglu.orhan.sloc_maven_plugin.engine.SourceClassifier;
+import kupusoglu.orhan.sloc_maven_plugin.engine.WatchLines;
+
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.project.MavenProject;
+
+
+/**
+ * Goal <strong>watch</strong>
+ * <br>
+ * Count source line of codes, then keep the report up to date while the source files change, until stopped with Ctrl+C
+ *
+ * <br><br>
+ * <pre>
+ * mvn io.github.orhankupusoglu:sloc-maven-plugin:watch
+ * mvn sloc:watch
+ * </pre>
+ */
+@Mojo(
+    name = "watch"
+)
+public class GoalWatch extends AbstractMojo {
+    @Parameter(defaultValue = "${project}", required = true, readonly = true)
+    private MavenProject project;
+
+    /**
+     * name of the root directory for the source files
+     * @parameter
+     */
+    @Parameter(property = "srcMain", defaultValue = "src")
+    private String srcMain;
+
+    /**
+     * extensions of the source files, separated by commas, for example "java,kt,xml"
+     * @parameter
+     */
+    @Parameter(property = "fileExt", defaultValue = "java")
+    private String fileExt;
+
+    /**
+     * patterns of the files to count, globs relative to srcMain separated by commas, for example "main/**", none counts all files
+     * @parameter
+     */
+    @Parameter(property = "includes")
+    private String includes;
+
+    /**
+     * patterns of the files and directories to skip, globs relative to srcMain separated by commas,
+     * for example "**&#47;resources/**,**&#47;node_modules/**", excluded directories are neither walked nor watched
+     * @parameter
+     */
+    @Parameter(property = "excludes")
+    private String excludes;
+
+    /**
+     * encoding of the source files
+     * @parameter
+     */
+    @Parameter(property = "encoding", defaultValue = "${project.build.sourceEncoding}")
+    private String encoding;
+
+    /**
+     * classify lines on their bytes through NIO, files of charsets that are not ASCII-compatible are decoded
+     * @parameter
+     */
+    @Parameter(property = "nio", defaultValue = "true")
+    private boolean nio;
+
+    /**
+     * format of the report kept up to date: table to "sloc.txt", json to "sloc.json" or csv to "sloc.csv"
+     * @parameter
+     */
+    @Parameter(property = "outputFormat", defaultValue = "table")
+    private String outputFormat;
+
+    /**
+     * trim package names
+     * @parameter
+     */
+    @Parameter(property = "trimPkgNames", defaultValue = "true")
+    private boolean trimPkgNames;
+
+    /**
+     * output the SLOC data of the first count to stdout
+     * @parameter
+     */
+    @Parameter(property = "display", defaultValue = "true")
+    private boolean display;
+
+    /**
+     * number of threads listing directories and counting files of the first count, 0 uses the number of available cores
+     * @parameter
+     */
+    @Parameter(property = "threads", defaultValue = "0")
+    private int threads;
+
+    /**
+     * classify lines with the character lexer, which tells comment markers in strings and trailing comments from comments
+     * @parameter
+     */
+    @Parameter(property = "lexer", defaultValue = "false")
+    private boolean lexer;
+
+    /**
+     * code lines searched for the package declaration at most, the search also stops at the first other declaration
+     * @parameter
+     */
+    @Parameter(property = "headerLines", defaultValue = "" + SourceClassifier.HEADER_LINES)
+    private int headerLines;
+
+    /**
+     * milliseconds without changes before the changed files are counted and the report is rewritten
+     * @parameter
+     */
+    @Parameter(property = "debounce", defaultValue = "" + WatchLines.DEBOUNCE)
+    private long debounce;
+
+    public void execute() throws MojoExecutionException {
+        SlocLog log = new MavenSlocLog(getLog());
+
+        try {
+            SlocCounter counter = SlocCounter.builder()
+                                             .srcMain(srcMain)
+                                             .fileExt(fileExt)
+                                             .trimPkgNames(trimPkgNames)
+                                             .display(display)
+                                             .save(true)
+                                             .threads(threads > 0 ? threads : Runtime.getRuntime().availableProcessors())
+                                             .charset(MavenOptions.getCharset(log, encoding))
+                                             .nio(nio)
+                                             .outputFormat(MavenOptions.getOutputFormat(outputFormat))
+                                             .lexer(lexer)
+                                             .headerLines(headerLines)
+                                             .filter(MavenOptions.getSourceFilter(includes, excludes))
+                                             .build();
+
+            new WatchLines(log, project.getBasedir().getAbsolutePath(), counter, debounce).execute();
+        } catch (MojoExecutionException e) {
+            getLog().error(e.getMessage());
+        }
+    }
+}
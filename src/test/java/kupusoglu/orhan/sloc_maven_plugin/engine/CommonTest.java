@@ -2,7 +2,6 @@ package kupusoglu.orhan.sloc_maven_plugin.engine;
 
 import static org.junit.jupiter.api.Assertions.*;
 
-import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.logging.SystemStreamLog;
 import org.junit.jupiter.api.Test;
 
@@ -10,8 +9,11 @@ import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
 
 class CommonTest {
 
@@ -22,7 +24,7 @@ class CommonTest {
     }
 
     @Test
-    void testCountLines() throws MojoExecutionException, IOException {
+    void testCountLines() throws IOException {
         Path baseDir = Paths.get(new File(".").getAbsolutePath().toString(), "src/test/resources").normalize();
         String srcMain = "src";
         String fileExt = "java";
@@ -35,13 +37,16 @@ class CommonTest {
             PrintStream ps = new PrintStream(baos)) {
             System.setOut(ps);
 
-            Common.countLines(new SystemStreamLog(),
-                              baseDir.toString(),
-                              srcMain,
-                              fileExt,
-                              trimPkgNames,
-                              display,
-                              save);
+            SlocCounter.builder()
+                       .log(new MavenSlocLog(new SystemStreamLog()))
+                       .srcMain(srcMain)
+                       .fileExt(fileExt)
+                       .trimPkgNames(trimPkgNames)
+                       .display(display)
+                       .save(save)
+                       .threads(1)
+                       .build()
+                       .count(baseDir);
 
             System.setOut(System.out);
 
@@ -55,7 +60,7 @@ class CommonTest {
             System.out.println(System.lineSeparator() + "ACTUAL OUTPUT:" + System.lineSeparator());
             System.out.println(actual + System.lineSeparator());
 
-            String expected = String.join(System.lineSeparator(), Common.readTextFile(Paths.get(baseDir.toString(), "sloc.txt")));
+            String expected = String.join(System.lineSeparator(), Common.readTextFile(Paths.get(baseDir.toString(), "sloc.txt"), StandardCharsets.UTF_8));
             System.out.println("EXPECTED OUTPUT:" + System.lineSeparator());
             System.out.println(expected + System.lineSeparator());
 
@@ -63,6 +68,39 @@ class CommonTest {
         }
     }
 
+    @Test
+    void testCountLinesParallel() throws IOException {
+        // the plugin's own sources, counted serially and by a worker pool
+        String baseDir = Paths.get(new File(".").getAbsolutePath()).normalize().toString();
+
+        String serial = captureCountLines(baseDir, 1);
+        String parallel = captureCountLines(baseDir, 4);
+
+        assertTrue(serial.contains("CountSLOC.java"));
+        assertEquals(serial, parallel);
+    }
+
+    private static String captureCountLines(String baseDir, int threads) throws IOException {
+        PrintStream out = System.out;
+
+        try (
+            ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            PrintStream ps = new PrintStream(baos)) {
+            System.setOut(ps);
+
+            SlocCounter.builder()
+                       .log(new MavenSlocLog(new SystemStreamLog()))
+                       .display(true)
+                       .threads(threads)
+                       .build()
+                       .count(Paths.get(baseDir));
+
+            return baos.toString();
+        } finally {
+            System.setOut(out);
+        }
+    }
+
     @Test
     void getCommonPackagePrefix() {
         assertNull(Common.getCommonPackagePrefix(null));
@@ -74,4 +112,19 @@ class CommonTest {
         assertEquals("a.b", Common.getCommonPackagePrefix(new String[] {"a.b.c.d", "a.b.c", null, "a.b"}));
     }
 
+    @Test
+    void testProcessSLOCTop() {
+        List<SourceCount> counts = Arrays.asList(new SourceCount("src/A.java", "", "A.java", "src", "", 1, 0, 0, 5, 0, null),
+                                                 new SourceCount("src/B.java", "", "B.java", "src", "", 0, 2, 0, 50, 0, null),
+                                                 new SourceCount("src/C.java", "", "C.java", "src", "", 0, 0, 3, 7, 0, null));
+
+        String top = Common.processSLOCTop(counts, 2).toString();
+
+        assertTrue(top.indexOf("src/B.java") < top.indexOf("src/C.java"), top);
+        assertFalse(top.contains("src/A.java"), top);
+        assertTrue(top.contains("| 2 file(s)        |        2 |        0 |        2 |        3 |       57 |       62 |"), top);
+        assertTrue(top.endsWith("SLOC - the 2 of 3 file(s) with the most code, all files: "
+                                + "blank 1, JavaDoc 2, comment 3, code 62, total 68\n"), top);
+    }
+
 }
@@ -0,0 +1,112 @@
+package kupusoglu.orhan.sloc_maven_plugin.engine;
+
+import static kupusoglu.orhan.sloc_maven_plugin.engine.TestFiles.write;
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+class CountChangesTest {
+
+    @Test
+    void testChangesSinceRevision(@TempDir Path dir) throws IOException, GitAPIException, MojoExecutionException {
+        write(dir.resolve("src/a/A.java"), "package a;", "class A {}");
+        write(dir.resolve("src/b/B.java"), "package b;", "class B {}");
+
+        try (Git git = Git.init().setDirectory(dir.toFile()).call()) {
+            git.add().addFilepattern("src").call();
+            git.commit().setMessage("base").setAuthor("sloc", "sloc@example.com").setCommitter("sloc", "sloc@example.com").call();
+            git.branchCreate().setName("base").call();
+
+            // committed change
+            write(dir.resolve("src/a/A.java"), "package a;", "// A", "class A {", "}");
+            git.add().addFilepattern("src").call();
+            git.commit().setMessage("change").setAuthor("sloc", "sloc@example.com").setCommitter("sloc", "sloc@example.com").call();
+        }
+
+        // uncommitted changes
+        Files.delete(dir.resolve("src/b/B.java"));
+        write(dir.resolve("src/c/C.java"), "package c;", "", "class C {}");
+
+        Path baselineFile = dir.resolve("target").resolve(CountChanges.BASELINE_FILE);
+        Path deltaFile = dir.resolve(CountChanges.OUTPUT_DELTA_FILE);
+
+        for (int run = 0; run < 2; run++) {
+            new CountChanges(new MavenSlocLog(new SystemStreamLog()), dir.toString(), counter("java"), "base",
+                             new SourceCache(baselineFile, "1.0", false)).execute();
+
+            assertTrue(Files.isRegularFile(baselineFile));
+
+            String delta = new String(Files.readAllBytes(deltaFile), StandardCharsets.UTF_8);
+            String sloc = new String(Files.readAllBytes(dir.resolve(Common.OUTPUT_SLOC_FILE)), StandardCharsets.UTF_8);
+
+            assertTrue(delta.matches("(?s).*\\| a +\\| +\\+0 \\| +\\+0 \\| +\\+0 \\| +\\+1 \\| +\\+1 \\| +\\+2 \\|.*"), delta);
+            assertTrue(delta.matches("(?s).*\\| b +\\| +-1 \\| +\\+0 \\| +\\+0 \\| +\\+0 \\| +-2 \\| +-2 \\|.*"), delta);
+            assertTrue(delta.matches("(?s).*\\| c +\\| +\\+1 \\| +\\+1 \\| +\\+0 \\| +\\+0 \\| +\\+2 \\| +\\+3 \\|.*"), delta);
+
+            assertTrue(sloc.contains("A.java"));
+            assertFalse(sloc.contains("B.java"));
+            assertTrue(sloc.contains("C.java"));
+        }
+    }
+
+    @Test
+    void testChangesOfEveryExtension(@TempDir Path dir) throws IOException, GitAPIException, MojoExecutionException {
+        write(dir.resolve("src/a/A.java"), "package a;", "class A {}");
+        write(dir.resolve("src/k/K.kt"), "package k", "class K");
+
+        try (Git git = Git.init().setDirectory(dir.toFile()).call()) {
+            git.add().addFilepattern("src").call();
+            git.commit().setMessage("base").setAuthor("sloc", "sloc@example.com").setCommitter("sloc", "sloc@example.com").call();
+        }
+
+        write(dir.resolve("src/a/A.java"), "package a;", "// A", "class A {}");
+        write(dir.resolve("src/k/K.kt"), "package k", "// K", "class K");
+
+        new CountChanges(new MavenSlocLog(new SystemStreamLog()), dir.toString(), counter("java,kt"), "HEAD", null).execute();
+
+        // the changes of the files of each extension, not only of the first one
+        String delta = new String(Files.readAllBytes(dir.resolve(CountChanges.OUTPUT_DELTA_FILE)), StandardCharsets.UTF_8);
+
+        assertTrue(delta.matches("(?s).*\\| a +\\| +\\+0 \\| +\\+0 \\| +\\+0 \\| +\\+1 \\| +\\+0 \\| +\\+1 \\|.*"), delta);
+        assertTrue(delta.matches("(?s).*\\| k +\\| +\\+0 \\| +\\+0 \\| +\\+0 \\| +\\+1 \\| +\\+0 \\| +\\+1 \\|.*"), delta);
+    }
+
+    @Test
+    void testOptionsOfCounter(@TempDir Path dir) throws IOException, GitAPIException, MojoExecutionException {
+        write(dir.resolve("src/a/A.java"), "package a;", "class A {}");
+
+        try (Git git = Git.init().setDirectory(dir.toFile()).call()) {
+            git.add().addFilepattern("src").call();
+            git.commit().setMessage("base").setAuthor("sloc", "sloc@example.com").setCommitter("sloc", "sloc@example.com").call();
+        }
+
+        write(dir.resolve("src/a/A.java"), "package a;", "// A", "class A {}");
+
+        SlocCounter sharded = SlocCounter.builder().fileExt("java").save(true).shard(0, 2).build();
+        assertThrows(MojoExecutionException.class,
+                     () -> new CountChanges(new MavenSlocLog(new SystemStreamLog()), dir.toString(), sharded, "HEAD", null).execute());
+
+        StringBuilder messages = new StringBuilder();
+        SlocCounter counter = SlocCounter.builder().fileExt("java").save(true).stats(true).build();
+
+        new CountChanges((level, message) -> messages.append(message).append('\n'), dir.toString(), counter, "HEAD", null).execute();
+
+        // the statistics of the counter are reported for the changed files
+        assertTrue(messages.toString().contains("SLOC - stats"), messages.toString());
+        assertTrue(messages.toString().contains("files   : 1 counted"), messages.toString());
+    }
+
+    private static SlocCounter counter(String fileExt) {
+        return SlocCounter.builder().fileExt(fileExt).trimPkgNames(false).save(true).build();
+    }
+}
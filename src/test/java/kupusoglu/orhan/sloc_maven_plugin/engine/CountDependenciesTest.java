@@ -0,0 +1,72 @@
+package kupusoglu.orhan.sloc_maven_plugin.engine;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+class CountDependenciesTest {
+
+    @Test
+    void testSourceJars(@TempDir Path dir) throws IOException, MojoExecutionException {
+        Map<String, Path> jars = new LinkedHashMap<>();
+        jars.put("g:a:1.0", jar(dir.resolve("a-1.0-sources.jar"), "a/A.java", "package a;\n\nclass A {}\n", "a/a.properties", "a=1\n"));
+        // a snapshot resolved from a remote repository has a timestamped version
+        jars.put("g:b:1.0-20240101.120000-3", jar(dir.resolve("b-1.0-SNAPSHOT-sources.jar"), "b/B.java", "package b;\n// B\nclass B {}\n"));
+
+        Path cacheFile = dir.resolve("target").resolve(CountDependencies.CACHE_FILE);
+
+        Map<String, int[]> subtotals = counter(dir, jars, cacheFile).count();
+
+        assertArrayEquals(new int[]{1, 1, 0, 0, 2}, subtotals.get("g:a:1.0"));
+        assertArrayEquals(new int[]{1, 0, 0, 1, 2}, subtotals.get("g:b:1.0-20240101.120000-3"));
+        assertTrue(Files.isRegularFile(cacheFile));
+
+        // a released jar is taken from the cache, a snapshot is counted again
+        jar(jars.get("g:a:1.0"), "a/A.java", "package a;\nclass A {}\n", "a/C.java", "package a;\nclass C {}\n");
+        jar(jars.get("g:b:1.0-20240101.120000-3"), "b/B.java", "package b;\nclass B {\n}\n");
+
+        subtotals = counter(dir, jars, cacheFile).count();
+
+        assertArrayEquals(new int[]{1, 1, 0, 0, 2}, subtotals.get("g:a:1.0"));
+        assertArrayEquals(new int[]{1, 0, 0, 0, 3}, subtotals.get("g:b:1.0-20240101.120000-3"));
+
+        counter(dir, jars, cacheFile).execute();
+
+        String report = new String(Files.readAllBytes(dir.resolve(CountDependencies.OUTPUT_DEPENDENCIES_FILE)), StandardCharsets.UTF_8);
+        assertTrue(report.contains("| g:a:1.0 "), report);
+        assertTrue(report.contains("| 2 artifact(s) "), report);
+    }
+
+    private static CountDependencies counter(Path dir, Map<String, Path> jars, Path cacheFile) {
+        return new CountDependencies(new MavenSlocLog(new SystemStreamLog()), dir.toString(), jars, Collections.singleton("g:b:1.0-20240101.120000-3"), "java",
+                                     false, true, 2, StandardCharsets.UTF_8, true, false, SourceClassifier.HEADER_LINES,
+                                     new SourceCache(cacheFile, "1.0", false));
+    }
+
+    private static Path jar(Path file, String... entries) throws IOException {
+        try (OutputStream out = Files.newOutputStream(file);
+             ZipOutputStream zip = new ZipOutputStream(out)) {
+            for (int i = 0; i < entries.length; i += 2) {
+                zip.putNextEntry(new ZipEntry(entries[i]));
+                zip.write(entries[i + 1].getBytes(StandardCharsets.UTF_8));
+                zip.closeEntry();
+            }
+        }
+
+        return file;
+    }
+}
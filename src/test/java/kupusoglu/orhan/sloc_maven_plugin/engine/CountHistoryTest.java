@@ -0,0 +1,73 @@
+package kupusoglu.orhan.sloc_maven_plugin.engine;
+
+import static kupusoglu.orhan.sloc_maven_plugin.engine.TestFiles.write;
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+class CountHistoryTest {
+
+    @Test
+    void testHistory(@TempDir Path dir) throws IOException, GitAPIException, MojoExecutionException {
+        try (Git git = Git.init().setDirectory(dir.toFile()).call()) {
+            write(dir.resolve("src/a/A.java"), "package a;", "class A {}");
+            write(dir.resolve("src/b/B.java"), "package b;", "// B", "class B {}");
+            commit(git, "first");
+            git.tag().setName("first").call();
+
+            // a changed file and an excluded one
+            write(dir.resolve("src/a/A.java"), "package a;", "", "class A {", "}");
+            write(dir.resolve("src/resources/R.java"), "package r;", "class R {}");
+            commit(git, "second");
+
+            // a moved file is not counted again
+            Files.move(dir.resolve("src/b/B.java"), Files.createDirectories(dir.resolve("src/c")).resolve("B.java"));
+            git.rm().addFilepattern("src/b/B.java").call();
+            commit(git, "third");
+        }
+
+        CountHistory history = new CountHistory(new MavenSlocLog(new SystemStreamLog()), dir.toString(), "src", "java", true, true, StandardCharsets.UTF_8,
+                                                true, false, SourceClassifier.HEADER_LINES, new SourceFilter(null, "resources/**"),
+                                                "HEAD", CountHistory.MAX_COMMITS, true);
+        history.execute();
+
+        List<String> lines = Files.readAllLines(dir.resolve(CountHistory.OUTPUT_HISTORY_FILE), StandardCharsets.UTF_8);
+
+        assertEquals(4, lines.size(), lines.toString());
+        assertEquals("commit,time,files,blank,javaDoc,comment,code,total", lines.get(0));
+        assertTrue(lines.get(1).endsWith(",2,0,0,1,4,5"), lines.get(1));
+        assertTrue(lines.get(2).endsWith(",2,1,0,1,5,7"), lines.get(2));
+        assertTrue(lines.get(3).endsWith(",2,1,0,1,5,7"), lines.get(3));
+
+        // first A, B, second A
+        assertEquals(3, history.getCounted());
+
+        new CountHistory(new MavenSlocLog(new SystemStreamLog()), dir.toString(), "src", "java", false, true, StandardCharsets.UTF_8,
+                         true, false, SourceClassifier.HEADER_LINES, SourceFilter.ALL, "first..HEAD", 1, true).execute();
+
+        lines = Files.readAllLines(dir.resolve(CountHistory.OUTPUT_HISTORY_FILE), StandardCharsets.UTF_8);
+
+        assertEquals(2, lines.size(), lines.toString());
+        assertTrue(lines.get(1).endsWith(",3,1,0,1,7,9"), lines.get(1));
+
+        assertThrows(MojoExecutionException.class,
+                     () -> new CountHistory(new MavenSlocLog(new SystemStreamLog()), dir.toString(), "src", "java", false, true, StandardCharsets.UTF_8,
+                                            true, false, SourceClassifier.HEADER_LINES, SourceFilter.ALL, "first...HEAD", 1, true).execute());
+    }
+
+    private static void commit(Git git, String message) throws GitAPIException {
+        git.add().addFilepattern("src").call();
+        git.commit().setMessage(message).setAuthor("sloc", "sloc@example.com").setCommitter("sloc", "sloc@example.com").call();
+    }
+}
@@ -0,0 +1,90 @@
+package kupusoglu.orhan.sloc_maven_plugin.engine;
+
+import static kupusoglu.orhan.sloc_maven_plugin.engine.TestFiles.write;
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+class CountModulesTest {
+
+    @Test
+    void testSubtotalPerModule(@TempDir Path dir) throws IOException, MojoExecutionException {
+        write(dir.resolve("src/r/R.java"), "package r;", "class R {}");
+        write(dir.resolve("a/src/a/A.java"), "package a;", "", "class A {}");
+        write(dir.resolve("a/src/a/A2.java"), "package a;", "// A2", "class A2 {}");
+        write(dir.resolve("b/src/b/B.java"), "package b;", "/** B */", "class B {}");
+
+        Map<String, String> modules = new LinkedHashMap<>();
+        modules.put("root", dir.toString());
+        modules.put("a", dir.resolve("a").toString());
+        modules.put("b", dir.resolve("b").toString());
+        modules.put("empty", dir.resolve("empty").toString());
+
+        String table = count(dir, modules, "src", 2, OutputFormat.TABLE);
+
+        assertTrue(table.contains("| root             |        1 |        0 |        0 |        0 |        2 |        2 |"), table);
+        assertTrue(table.contains("| a                |        2 |        1 |        0 |        1 |        4 |        6 |"), table);
+        assertTrue(table.contains("| b                |        1 |        0 |        0 |        0 |        3 |        3 |"), table);
+        assertTrue(table.contains("| 3 module(s)      |        4 |        1 |        0 |        1 |        9 |       11 |"), table);
+        assertFalse(table.contains("empty"), table);
+
+        // one report of the files of all modules, on the common pool
+        String json = count(dir, modules, "src", 0, OutputFormat.JSON);
+
+        assertTrue(json.contains("\"path\": \"a/src/a/A2.java\""), json);
+        assertTrue(json.contains("\"path\": \"b/src/b/B.java\""), json);
+        assertTrue(json.contains("\"path\": \"src/r/R.java\""), json);
+
+        // the modules are inside the source directory of the root module
+        table = count(dir, modules, ".", 2, OutputFormat.TABLE);
+
+        assertTrue(table.contains("| root             |        4 |        1 |        0 |        1 |        9 |       11 |"), table);
+        assertTrue(table.contains("| 1 module(s)      |"), table);
+    }
+
+    @Test
+    void testSameFileInTwoModules(@TempDir Path dir) throws IOException, MojoExecutionException {
+        write(dir.resolve("a/src/c/C.java"), "package c;", "class C {}");
+        write(dir.resolve("b/src/c/C.java"), "package c;", "", "class C {}");
+
+        Map<String, String> modules = new LinkedHashMap<>();
+        modules.put("a", dir.resolve("a").toString());
+        modules.put("b", dir.resolve("b").toString());
+
+        String json = count(dir, modules, "src", 2, OutputFormat.JSON);
+
+        assertTrue(json.contains("\"path\": \"a/src/c/C.java\""), json);
+        assertTrue(json.contains("\"path\": \"b/src/c/C.java\""), json);
+        assertTrue(json.contains("\"total\": {\"files\": 2, \"blank\": 1, \"javaDoc\": 0, \"comment\": 0, \"code\": 4"), json);
+
+        String table = count(dir, modules, "src", 2, OutputFormat.TABLE);
+
+        assertTrue(table.contains("| 2 module(s)      |        2 |        1 |        0 |        0 |        4 |        5 |"), table);
+        assertEquals(2, table.split("C\\.java", -1).length - 1, table);
+    }
+
+    private static String count(Path dir, Map<String, String> modules, String srcMain, int threads, OutputFormat outputFormat)
+            throws IOException, MojoExecutionException {
+        SlocCounter counter = SlocCounter.builder()
+                                         .srcMain(srcMain)
+                                         .trimPkgNames(false)
+                                         .save(true)
+                                         .threads(threads)
+                                         .outputFormat(outputFormat)
+                                         .build();
+
+        new CountModules(new MavenSlocLog(new SystemStreamLog()), dir.toString(), modules, counter).execute();
+
+        return new String(Files.readAllBytes(dir.resolve(outputFormat.getFileName())), StandardCharsets.UTF_8);
+    }
+}
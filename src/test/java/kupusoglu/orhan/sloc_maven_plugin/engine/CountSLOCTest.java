@@ -0,0 +1,128 @@
+package kupusoglu.orhan.sloc_maven_plugin.engine;
+
+import static kupusoglu.orhan.sloc_maven_plugin.engine.TestFiles.write;
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ForkJoinPool;
+
+class CountSLOCTest {
+
+    @Test
+    void testSourceFilter() {
+        SourceFilter filter = new SourceFilter(" main/** ", "**/resources/**, node_modules ,**/*Test.java");
+
+        assertTrue(filter.isExcludedDirectory(Paths.get("main/resources")));
+        assertTrue(filter.isExcludedDirectory(Paths.get("resources")));
+        assertTrue(filter.isExcludedDirectory(Paths.get("node_modules")));
+        assertFalse(filter.isExcludedDirectory(Paths.get("main/node_modules")));
+        assertFalse(filter.isExcludedDirectory(Paths.get("main/java")));
+
+        assertTrue(filter.isIncludedFile(Paths.get("main/java/A.java")));
+        assertFalse(filter.isIncludedFile(Paths.get("main/java/ATest.java")));
+        assertFalse(filter.isIncludedFile(Paths.get("test/java/A.java")));
+        assertFalse(filter.isIncludedFile(Paths.get("main/resources/a/R.java")));
+
+        // the directories are only matched if asked for
+        filter = new SourceFilter(null, "node_modules");
+        assertTrue(filter.isIncludedFile(Paths.get("node_modules/n/N.java")));
+        assertFalse(filter.isIncluded(Paths.get("node_modules/n/N.java")));
+
+        assertTrue(SourceFilter.ALL.isEmpty());
+        assertTrue(SourceFilter.ALL.isIncluded(Paths.get("a/B.java")));
+    }
+
+    @Test
+    void testWalk(@TempDir Path dir) throws IOException {
+        write(dir.resolve("src/main/java/a/A.java"), "package a;", "class A {}");
+        write(dir.resolve("src/main/java/a/ATest.java"), "package a;", "class ATest {}");
+        write(dir.resolve("src/main/java/a/b/B.java"), "package a.b;", "class B {}");
+        write(dir.resolve("src/main/java/a/b/B.txt"), "not counted");
+        write(dir.resolve("src/main/resources/r/R.java"), "package r;", "class R {}");
+        write(dir.resolve("src/main/node_modules/n/N.java"), "package n;", "class N {}");
+        write(dir.resolve("src/node_modules/m/N.java"), "package m;", "class N {}");
+        write(dir.resolve("src/test/java/a/T.java"), "package a;", "class T {}");
+
+        SourceFilter filter = new SourceFilter("main/**", "**/resources/**,node_modules,**/*Test.java");
+        Set<String> expected = new TreeSet<>(Arrays.asList("src/main/java/a/A.java", "src/main/java/a/b/B.java", "src/main/node_modules/n/N.java"));
+
+        CountSLOC serial = newCountSLOC(dir, filter);
+        Files.walkFileTree(dir.resolve("src"), serial);
+
+        CountSLOC parallel = newCountSLOC(dir, filter);
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            pool.invoke(parallel.walk(dir.resolve("src")));
+        } finally {
+            pool.shutdownNow();
+        }
+
+        assertEquals(expected, getPaths(serial));
+        assertEquals(expected, getPaths(parallel));
+
+        // without a filter every source file is counted, whichever walk lists the tree
+        CountSLOC all = newCountSLOC(dir, SourceFilter.ALL);
+        ForkJoinPool.commonPool().invoke(all.walk(dir.resolve("src")));
+
+        assertEquals(7, getPaths(all).size());
+    }
+
+    @Test
+    void testStats(@TempDir Path dir) throws IOException {
+        write(dir.resolve("src/a/A.java"), "package a;", "class A {}");
+        write(dir.resolve("src/a/ATest.java"), "package a;", "class ATest {}");
+        write(dir.resolve("src/resources/R.java"), "package r;", "class R {}");
+
+        SourceStats stats = new SourceStats(1);
+        SlocCounter counter = SlocCounter.builder()
+                                         .save(true)
+                                         .outputFormat(OutputFormat.JSON)
+                                         .filter(new SourceFilter(null, "resources,**/*Test.java"))
+                                         .build();
+        CountSLOC countSLOC = new CountSLOC(counter, new MavenSlocLog(new SystemStreamLog()), dir.toString(), Collections.emptyMap(), stats, null,
+                                            () -> false);
+        Files.walkFileTree(dir.resolve("src"), countSLOC);
+        stats.phase("walk", 1000000000L);
+        countSLOC.done();
+
+        assertEquals(1, stats.getCounted());
+        assertEquals(2, stats.getExcluded());
+        assertEquals(Files.size(dir.resolve("src/a/A.java")), stats.getBytes());
+        assertEquals("src/a/A.java", stats.getSlowest().get(0).getPath());
+        assertEquals(1.0, stats.getFilesPerSecond());
+        assertEquals(Arrays.asList("walk", "render", "save"), new ArrayList<>(stats.getPhases().keySet()));
+
+        String json = new String(Files.readAllBytes(dir.resolve(OutputFormat.JSON.getFileName())), StandardCharsets.UTF_8);
+        assertTrue(json.contains("\"stats\": {\"phases\": {\"walk\": 1000.0, \"render\": "), json);
+        assertTrue(json.contains("\"counted\": 1, \"cached\": 0, \"excluded\": 2, \"skipped\": 0, \"failed\": 0"), json);
+        assertTrue(json.contains("{\"path\": \"src/a/A.java\", \"ms\": "), json);
+    }
+
+    private static CountSLOC newCountSLOC(Path dir, SourceFilter filter) {
+        return new CountSLOC(SlocCounter.builder().filter(filter).build(), new MavenSlocLog(new SystemStreamLog()), dir.toString(),
+                             Collections.emptyMap(), null, null, () -> false);
+    }
+
+    private static Set<String> getPaths(CountSLOC countSLOC) {
+        Set<String> paths = new TreeSet<>();
+
+        for (SourceCount count : countSLOC.getCounts()) {
+            paths.add(count.getPath());
+        }
+
+        return paths;
+    }
+}
@@ -0,0 +1,97 @@
+package kupusoglu.orhan.sloc_maven_plugin.engine;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+class OutputFormatTest {
+    private static final List<SourceCount> COUNTS = Arrays.asList(
+            new SourceCount("src/main/java/a/A.java", "a", "A.java", "src", "java", 1, 2, 3, 4, 0, null),
+            new SourceCount("src/test/java/a/ATest.kt", "a", "ATest.kt", "test", "kotlin", 0, 0, 1, 10, 0, null),
+            new SourceCount("src/main/java/Q\"uote,d.java", "", "Q\"uote,d.java", "src", "java", 0, 0, 0, 1, 0, null));
+
+    @Test
+    void testJson() throws IOException {
+        StringBuilder sb = new StringBuilder();
+        OutputFormat.JSON.write(COUNTS, "java,kt", true, sb);
+
+        String json = sb.toString();
+
+        assertTrue(json.contains("{\"path\": \"src/main/java/a/A.java\", \"package\": \"a\", \"file\": \"A.java\", \"type\": \"src\", "
+                + "\"language\": \"java\", \"blank\": 1, \"javaDoc\": 2, \"comment\": 3, \"code\": 4, \"total\": 10}"), json);
+        assertTrue(json.contains("\"file\": \"Q\\\"uote,d.java\""), json);
+        assertTrue(json.contains("{\"package\": \"a\", \"files\": 2, \"blank\": 1, \"javaDoc\": 2, \"comment\": 4, \"code\": 14, \"total\": 21}"), json);
+        assertTrue(json.contains("{\"type\": \"src\", \"files\": 2, \"blank\": 1, \"javaDoc\": 2, \"comment\": 3, \"code\": 5, \"total\": 11}"), json);
+        assertTrue(json.contains("{\"language\": \"kotlin\", \"files\": 1, \"blank\": 0, \"javaDoc\": 0, \"comment\": 1, \"code\": 10, \"total\": 11}"), json);
+        assertTrue(json.contains("\"total\": {\"files\": 3, \"blank\": 1, \"javaDoc\": 2, \"comment\": 4, \"code\": 15, \"total\": 22}"), json);
+    }
+
+    @Test
+    void testCsv() throws IOException {
+        StringBuilder sb = new StringBuilder();
+        OutputFormat.CSV.write(COUNTS, "java,kt", true, sb);
+
+        assertEquals(String.join("\n",
+                "level,package,file,type,language,path,files,blank,javaDoc,comment,code,total",
+                "file,a,A.java,src,java,src/main/java/a/A.java,1,1,2,3,4,10",
+                "file,a,ATest.kt,test,kotlin,src/test/java/a/ATest.kt,1,0,0,1,10,11",
+                "file,,\"Q\"\"uote,d.java\",src,java,\"src/main/java/Q\"\"uote,d.java\",1,0,0,0,1,1",
+                "package,,,,,,1,0,0,0,1,1",
+                "package,a,,,,,2,1,2,4,14,21",
+                "type,,,src,,,2,1,2,3,5,11",
+                "type,,,test,,,1,0,0,1,10,11",
+                "language,,,,java,,2,1,2,3,5,11",
+                "language,,,,kotlin,,1,0,0,1,10,11",
+                "total,,,\"java,kt\",,,3,1,2,4,15,22",
+                ""), sb.toString());
+    }
+
+    @Test
+    void testTableByLanguage() throws IOException {
+        StringBuilder sb = new StringBuilder();
+        OutputFormat.TABLE.write(COUNTS, "java,kt", true, sb);
+
+        String table = sb.toString();
+
+        assertTrue(table.contains("| 2 package(s)     | 3 file(s)        | java,kt  |        1 |        2 |        4 |       15 |       22 |"), table);
+        assertTrue(table.contains("| kotlin           |        1 |        0 |        0 |        1 |       10 |       11 |"), table);
+        assertTrue(table.contains("| 2 language(s)    |        3 |        1 |        2 |        4 |       15 |       22 |"), table);
+    }
+
+    @Test
+    void testMetrics() throws IOException {
+        List<SourceCount> counts = Arrays.asList(
+                new SourceCount("src/a/A.java", "a", "A.java", "src", "java", 1, 2, 3, 4, 0, new SourceMetrics(1, 3, 2, 0, 5)),
+                new SourceCount("src/a/B.java", "a", "B.java", "src", "java", 0, 0, 0, 6, 0, new SourceMetrics(2, 1, 4, 1, 3)));
+
+        StringBuilder json = new StringBuilder();
+        OutputFormat.JSON.write(counts, "java", true, json);
+        assertTrue(json.toString().contains("\"total\": 10, \"metrics\": {\"types\": 1, \"methods\": 3, \"maxDepth\": 2, \"longLines\": 0, "
+                + "\"complexity\": 5}}"), json.toString());
+        // the depth of a rollup is the deepest one
+        assertTrue(json.toString().contains("\"total\": 16, \"metrics\": {\"types\": 3, \"methods\": 4, \"maxDepth\": 4, \"longLines\": 1, "
+                + "\"complexity\": 8}}"), json.toString());
+
+        StringBuilder csv = new StringBuilder();
+        OutputFormat.CSV.write(counts, "java", true, csv);
+        assertTrue(csv.toString().startsWith("level,package,file,type,language,path,files,blank,javaDoc,comment,code,total,"
+                + "types,methods,maxDepth,longLines,complexity\nfile,a,A.java,src,java,src/a/A.java,1,1,2,3,4,10,1,3,2,0,5\n"), csv.toString());
+        assertTrue(csv.toString().contains("\ntotal,,,java,,,2,1,2,3,10,16,3,4,4,1,8\n"), csv.toString());
+
+        StringBuilder table = new StringBuilder();
+        OutputFormat.TABLE.write(counts, "java", true, table);
+        assertTrue(table.toString().contains("| Total    | Types    | Methods  | Depth    | Long     | Complex  |"), table.toString());
+        assertTrue(table.toString().contains("|       16 |        3 |        4 |        4 |        1 |        8 |"), table.toString());
+    }
+
+    @Test
+    void testGetOutputFormat() throws MojoExecutionException {
+        assertEquals(OutputFormat.JSON, MavenOptions.getOutputFormat(" Json "));
+        assertThrows(MojoExecutionException.class, () -> MavenOptions.getOutputFormat("xml"));
+    }
+}
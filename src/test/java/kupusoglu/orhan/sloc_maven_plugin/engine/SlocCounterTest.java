@@ -0,0 +1,273 @@
+package kupusoglu.orhan.sloc_maven_plugin.engine;
+
+import static kupusoglu.orhan.sloc_maven_plugin.engine.TestFiles.write;
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Queue;
+import java.util.TreeMap;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+class SlocCounterTest {
+
+    @Test
+    void testCount(@TempDir Path dir) throws Exception {
+        Path first = dir.resolve("first");
+        Path second = dir.resolve("second");
+
+        write(first.resolve("src/a/A.java"), "package a;", "", "/**", " * A", " */", "class A {}");
+        write(first.resolve("src/a/b/B.java"), "package a.b;", "// B", "class B {}");
+        write(second.resolve("src/c/C.java"), "package c;", "class C {}");
+
+        AtomicInteger progress = new AtomicInteger();
+        Queue<SlocLog.Level> levels = new ConcurrentLinkedQueue<>();
+        SlocCounter counter = SlocCounter.builder()
+                                         .progress(count -> progress.incrementAndGet())
+                                         .stats(true)
+                                         .log((level, message) -> levels.add(level))
+                                         .build();
+
+        // one counter, two base directories at once
+        CompletableFuture<SlocResult> future = counter.countAsync(first);
+        SlocResult result = counter.count(second);
+
+        assertEquals(1, result.getFiles());
+        assertEquals("src/c/C.java", result.getCounts().get(0).getPath());
+
+        result = future.get();
+        assertEquals(first, result.getBaseDir());
+        assertEquals(2, result.getFiles());
+        assertEquals(1, result.getBlank());
+        assertEquals(3, result.getJavaDoc());
+        assertEquals(1, result.getComment());
+        assertEquals(4, result.getCode());
+        assertEquals(9, result.getTotal());
+        assertEquals(Arrays.asList("a", "a.b"), Arrays.asList(result.getPackages().keySet().toArray()));
+        assertEquals(2, result.getStats().getCounted());
+        assertTrue(result.getErrors().isEmpty());
+        assertEquals(3, progress.get());
+        // the stats of both counts
+        assertEquals(Arrays.asList(SlocLog.Level.INFO, SlocLog.Level.INFO), new ArrayList<>(levels));
+
+        StringBuilder csv = new StringBuilder();
+        result.write(OutputFormat.CSV, csv);
+        assertTrue(csv.toString().contains("src/a/b/B.java"), csv.toString());
+
+        // nothing is saved unless asked for
+        assertFalse(Files.exists(first.resolve(OutputFormat.TABLE.getFileName())));
+
+        assertThrows(NoSuchFileException.class, () -> counter.count(dir));
+    }
+
+    @Test
+    void testWithoutMaven(@TempDir Path dir) throws Exception {
+        write(dir.resolve("src/a/A.java"), "package a;", "// A", "class A {}");
+        write(dir.resolve("src/a/B.kt"), "package a", "class B");
+
+        // the classes of the plugin alone, the Maven API is provided to the goals only
+        URL classes = SlocCounter.class.getProtectionDomain().getCodeSource().getLocation();
+
+        try (URLClassLoader loader = new URLClassLoader(new URL[] {classes}, null)) {
+            Class<?> counter = loader.loadClass(SlocCounter.class.getName());
+            Object builder = counter.getMethod("builder").invoke(null);
+
+            builder.getClass().getMethod("fileExt", String.class).invoke(builder, "java,kt");
+            builder.getClass().getMethod("display", boolean.class).invoke(builder, true);
+            builder.getClass().getMethod("save", boolean.class).invoke(builder, true);
+
+            Object result = counter.getMethod("count", Path.class).invoke(builder.getClass().getMethod("build").invoke(builder), dir);
+
+            assertEquals(2, result.getClass().getMethod("getFiles").invoke(result));
+            assertTrue(Files.exists(dir.resolve(OutputFormat.TABLE.getFileName())));
+        }
+    }
+
+    @Test
+    void testCancel(@TempDir Path dir) throws Exception {
+        for (int i = 0; i < 10; i++) {
+            write(dir.resolve("src/A" + i + ".java"), "class A" + i + " {}");
+        }
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        CompletableFuture<?>[] future = new CompletableFuture<?>[1];
+        AtomicInteger counted = new AtomicInteger();
+
+        try {
+            SlocCounter counter = SlocCounter.builder()
+                                             .executor(executor)
+                                             .threads(1)
+                                             .progress(count -> {
+                                                 counted.incrementAndGet();
+
+                                                 synchronized (future) {
+                                                     future[0].cancel(true);
+                                                 }
+                                             })
+                                             .build();
+
+            synchronized (future) {
+                future[0] = counter.countAsync(dir);
+            }
+
+            assertThrows(CancellationException.class, future[0]::join);
+        } finally {
+            executor.shutdown();
+            assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        }
+
+        // the walk stopped after the file being counted
+        assertEquals(1, counted.get());
+    }
+
+    @Test
+    void testDuplicates(@TempDir Path dir) throws Exception {
+        write(dir.resolve("src/a/A.java"), "package a;", "class A {", "    int a;", "}");
+        write(dir.resolve("src/b/A.java"), "// generated", "package a;", "class A {", "int a;", "}");
+        write(dir.resolve("src/c/A.java"), "package a;", "  class A {", "    int a;", "  }");
+        write(dir.resolve("src/d/D.java"), "package d;", "class D {}");
+
+        for (Aggregation aggregation : new Aggregation[] {Aggregation.FILES, Aggregation.COLUMNAR}) {
+            SlocResult result = SlocCounter.builder().duplicates(true).aggregation(aggregation).build().count(dir);
+
+            // the three copies share a key, only one of them is kept
+            assertEquals(2, result.getFiles());
+        }
+
+        write(dir.resolve("src/a/B.java"), "package a;", "class A {", "    int a;", "}");
+        write(dir.resolve("src/a/C.java"), "package a;", "class A {", "    int a;", "}");
+
+        SlocCounter counter = SlocCounter.builder().duplicates(true).save(true).outputFormat(OutputFormat.JSON).build();
+        SlocResult result = counter.count(dir);
+        SourceDuplicates duplicates = new SourceDuplicates();
+        result.getCounts().forEach(duplicates::add);
+
+        assertEquals(4, result.getFiles());
+        assertEquals(2, duplicates.getCopies());
+        assertEquals(result.getCode() - 8, duplicates.getUniqueCode());
+        assertEquals(1, duplicates.getGroups().size());
+        assertTrue(duplicates.toTable().toString().contains("       4 code x 3: src/c/A.java src/a/B.java src/a/C.java"),
+                   duplicates.toTable().toString());
+
+        String json = new String(Files.readAllBytes(dir.resolve(OutputFormat.JSON.getFileName())), StandardCharsets.UTF_8);
+        assertTrue(json.contains("\"duplicates\": {\"copies\": 2, \"code\": 14, \"uniqueCode\": 6, \"groups\": ["), json);
+
+        StringBuilder csv = new StringBuilder();
+        result.write(OutputFormat.CSV, csv);
+        assertTrue(csv.toString().contains("\nduplicate,a,C.java,src,java,src/a/C.java,1,0,0,0,4,4\n"), csv.toString());
+
+        // without hashes nothing is reported
+        StringBuilder table = new StringBuilder();
+        SlocCounter.builder().build().count(dir).write(OutputFormat.TABLE, table);
+        assertFalse(table.toString().contains("duplicates"));
+    }
+
+    @Test
+    void testSourceRoots(@TempDir Path dir) throws Exception {
+        write(dir.resolve("src/main/java/a/test/A.java"), "package a.test;", "class A {}");
+        write(dir.resolve("src/main/java/a/test/skip/S.java"), "package a.test.skip;", "class S {}");
+        write(dir.resolve("src/test/java/a/ATest.java"), "package a;", "class ATest {}");
+        write(dir.resolve("target/generated-sources/annotations/a/A_.java"), "package a;", "class A_ {}");
+        write(dir.resolve("src/site/a/X.java"), "package a;", "class X {}");
+
+        for (int threads : new int[] {1, 2}) {
+            SlocResult result = SlocCounter.builder()
+                                           .threads(threads)
+                                           .sourceRoot(Paths.get("src/main/java"), "src")
+                                           .sourceRoot(Paths.get("src/main/java/a"), "src")
+                                           .sourceRoot(dir.resolve("target/generated-sources/annotations"), "generated-src")
+                                           .sourceRoot(Paths.get("src/test/java"), "test")
+                                           .sourceRoot(Paths.get("src/it/java"), "int-test")
+                                           .filter(null, "*/*/skip/**")
+                                           .build()
+                                           .count(dir);
+
+            Map<String, String> types = new TreeMap<>();
+            result.getCounts().forEach(count -> types.put(count.getPath(), count.getFileType()));
+
+            // the type is the type of the root, not guessed from the path, and nested roots are walked once
+            Map<String, String> expected = new TreeMap<>();
+            expected.put("src/main/java/a/test/A.java", "src");
+            expected.put("src/test/java/a/ATest.java", "test");
+            expected.put("target/generated-sources/annotations/a/A_.java", "generated-src");
+            assertEquals(expected, types);
+        }
+
+        // the roots in the build directory of a project are generated
+        SlocResult result = SlocCounter.builder()
+                                       .sourceRoots(Arrays.asList(dir.resolve("src/test/java").toString(),
+                                                                  dir.resolve("target/generated-sources/annotations").toString()),
+                                                    "test", dir.resolve("target"), true)
+                                       .build()
+                                       .count(dir);
+
+        Map<String, String> types = new TreeMap<>();
+        result.getCounts().forEach(count -> types.put(count.getPath(), count.getFileType()));
+
+        Map<String, String> expected = new TreeMap<>();
+        expected.put("src/test/java/a/ATest.java", "test");
+        expected.put("target/generated-sources/annotations/a/A_.java", "generated-test");
+        assertEquals(expected, types);
+
+        assertThrows(NoSuchFileException.class, () -> SlocCounter.builder().sourceRoot(Paths.get("missing"), "src").build().count(dir));
+    }
+
+    @Test
+    void testShards(@TempDir Path dir) throws Exception {
+        for (int i = 0; i < 20; i++) {
+            write(dir.resolve("src/p" + i % 3 + "/A" + i + ".java"), "package p" + i % 3 + ";", "// A" + i, "class A" + i + " {", "}");
+        }
+
+        write(dir.resolve("src/p0/B.java"), "package p0;", "class B {}");
+        write(dir.resolve("src/p1/B.java"), "package p0;", "", "class B {}");
+
+        SourceShards shards = new SourceShards(dir.resolve("target"), "1.0");
+        SlocCounter.Builder builder = SlocCounter.builder().save(true).duplicates(true);
+        SlocResult single = builder.build().count(dir);
+        String expected = new String(Files.readAllBytes(dir.resolve(OutputFormat.TABLE.getFileName())), StandardCharsets.UTF_8);
+        AtomicInteger files = new AtomicInteger();
+
+        Files.delete(dir.resolve(OutputFormat.TABLE.getFileName()));
+        assertThrows(NoSuchFileException.class, () -> builder.shards(shards).build().merge(dir));
+
+        for (int shard = 0; shard < 3; shard++) {
+            builder.shard(shard, 3).shards(shards).save(false).progress(count -> files.incrementAndGet()).build().count(dir);
+
+            if (shard < 2) {
+                assertThrows(IOException.class, () -> builder.build().merge(dir));
+            }
+        }
+
+        // every file is counted by one shard, the merge reports them as a single count does, with one file per key
+        assertEquals(22, files.get());
+
+        SlocResult merged = builder.shard(0, 1).shards(shards).save(true).build().merge(dir);
+
+        assertEquals(single.getFiles(), merged.getFiles());
+        assertEquals(single.getCode(), merged.getCode());
+        assertEquals(expected, new String(Files.readAllBytes(dir.resolve(OutputFormat.TABLE.getFileName())), StandardCharsets.UTF_8));
+
+        // the partials of another count are not merged
+        builder.shard(1, 2).lexer(true).build().count(dir);
+        assertThrows(IOException.class, () -> builder.build().merge(dir));
+        assertThrows(IllegalArgumentException.class, () -> builder.shard(2, 2));
+    }
+}
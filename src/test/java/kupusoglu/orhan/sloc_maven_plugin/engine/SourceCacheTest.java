@@ -0,0 +1,75 @@
+package kupusoglu.orhan.sloc_maven_plugin.engine;
+
+import static kupusoglu.orhan.sloc_maven_plugin.engine.TestFiles.write;
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+
+class SourceCacheTest {
+
+    @Test
+    void testReuseUnchangedFiles(@TempDir Path dir) throws IOException {
+        Path a = write(dir.resolve("src/a/A.java"), "package a;", "class A {}");
+        write(dir.resolve("src/b/B.java"), "package b;", "// B", "class B {}");
+
+        Path cacheFile = dir.resolve("target").resolve(SourceCache.CACHE_FILE);
+
+        assertEquals(0, count(dir, new SourceCache(cacheFile, "1.0", false)));
+        assertTrue(Files.isRegularFile(cacheFile));
+        assertEquals(2, count(dir, new SourceCache(cacheFile, "1.0", false)));
+
+        write(a, "package a;", "", "class A {}");
+        assertEquals(1, count(dir, new SourceCache(cacheFile, "1.0", false)));
+
+        // another plugin version invalidates the cache
+        assertEquals(0, count(dir, new SourceCache(cacheFile, "1.1", false)));
+    }
+
+    @Test
+    void testReuseByHash(@TempDir Path dir) throws IOException {
+        Path a = write(dir.resolve("src/a/A.java"), "package a;", "class A {}");
+        Path cacheFile = dir.resolve("target").resolve(SourceCache.CACHE_FILE);
+
+        assertEquals(0, count(dir, new SourceCache(cacheFile, "1.0", true)));
+
+        Files.setLastModifiedTime(a, FileTime.fromMillis(Files.getLastModifiedTime(a).toMillis() + 60_000));
+        assertEquals(1, count(dir, new SourceCache(cacheFile, "1.0", true)));
+
+        SourceCache cache = new SourceCache(cacheFile, "1.0", true);
+        assertEquals(1, cache.load(SlocCounter.builder().fileExt("java").build().getSettings()));
+        assertEquals(0, cache.load(SlocCounter.builder().fileExt("kt").build().getSettings()));
+        assertFalse(cache.isLoaded());
+    }
+
+    @Test
+    void testLoadEmpty(@TempDir Path dir) throws IOException {
+        SourceCache cache = new SourceCache(dir.resolve(SourceCache.CACHE_FILE), "1.0", false);
+
+        assertEquals(0, cache.load("base=1"));
+        assertFalse(cache.isLoaded());
+
+        cache.save();
+
+        // an empty cache is loaded, unlike a missing one
+        assertEquals(0, cache.load("base=1"));
+        assertTrue(cache.isLoaded());
+    }
+
+    private static int count(Path dir, SourceCache cache) throws IOException {
+        SlocCounter.builder()
+                   .log(new MavenSlocLog(new SystemStreamLog()))
+                   .threads(2)
+                   .cache(baseDir -> cache)
+                   .build()
+                   .count(dir);
+
+        return cache.getReused();
+    }
+}
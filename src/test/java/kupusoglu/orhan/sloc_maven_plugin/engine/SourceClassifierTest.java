@@ -0,0 +1,347 @@
+package kupusoglu.orhan.sloc_maven_plugin.engine;
+
+import static kupusoglu.orhan.sloc_maven_plugin.engine.TestFiles.write;
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+
+class SourceClassifierTest {
+
+    @Test
+    void testClassify() {
+        Path file = Paths.get(new File(".").getAbsolutePath(), "src/test/resources/src/foo/bar/HelloWorld.java").normalize();
+
+        SourceCount count = new SourceClassifier().classify(file, "src/foo/bar/HelloWorld.java", "test");
+
+        assertEquals("foo.bar", count.getPackageName());
+        assertEquals("HelloWorld.java", count.getFileName());
+        assertEquals(4, count.getBlank());
+        assertEquals(3, count.getJavaDoc());
+        assertEquals(10, count.getComment());
+        assertEquals(9, count.getCode());
+        assertEquals(26, count.getTotal());
+    }
+
+    @Test
+    void testDefaultPackageIsNotInherited(@TempDir Path dir) throws IOException {
+        Path withPackage = Files.write(dir.resolve("A.java"),
+                Arrays.asList("package a.b;", "", "class A {}"), StandardCharsets.UTF_8);
+        Path withoutPackage = Files.write(dir.resolve("B.java"),
+                Arrays.asList("// default package", "class B {}"), StandardCharsets.UTF_8);
+
+        SourceClassifier classifier = new SourceClassifier();
+
+        assertEquals("a.b", classifier.classify(withPackage, "A.java", "src").getPackageName());
+        assertEquals("", classifier.classify(withoutPackage, "B.java", "src").getPackageName());
+    }
+
+    @Test
+    void testLineTerminatorsAndLongLines(@TempDir Path dir) throws IOException {
+        char[] longLine = new char[3 * CharLineScanner.BUFFER_SIZE];
+        Arrays.fill(longLine, 'x');
+
+        String content = "package p;\r\n\r\n/**\r * doc\n */\n" + new String(longLine) + "\n// c";
+        Path file = Files.write(dir.resolve("C.java"), content.getBytes(StandardCharsets.UTF_8));
+
+        SourceCount count = SlocCounter.builder().nio(false).build().getClassifier().classify(file, "C.java", "src");
+
+        assertEquals(Common.readTextFile(file, StandardCharsets.UTF_8).size(), count.getTotal());
+        assertEquals("p", count.getPackageName());
+        assertEquals(1, count.getBlank());
+        assertEquals(3, count.getJavaDoc());
+        assertEquals(1, count.getComment());
+        assertEquals(2, count.getCode());
+    }
+
+    @Test
+    void testEncoding(@TempDir Path dir) throws IOException {
+        Path file = Files.write(dir.resolve("D.java"), "package caf\u00e9;\n".getBytes(StandardCharsets.ISO_8859_1));
+
+        SourceClassifier classifier = SlocCounter.builder().charset(StandardCharsets.ISO_8859_1).nio(false).build().getClassifier();
+
+        assertEquals("caf\u00e9", classifier.classify(file, "D.java", "src").getPackageName());
+    }
+
+    @Test
+    void testCarriageReturnAtBufferEnd(@TempDir Path dir) throws IOException {
+        char[] line = new char[CharLineScanner.BUFFER_SIZE - 1];
+        Arrays.fill(line, 'x');
+
+        Path file = Files.write(dir.resolve("E.java"), (new String(line) + "\r\ny\n").getBytes(StandardCharsets.UTF_8));
+
+        assertEquals(2, SlocCounter.builder().nio(false).build().getClassifier().classify(file, "E.java", "src").getTotal());
+        assertEquals(2, SlocCounter.builder().nio(true).build().getClassifier().classify(file, "E.java", "src").getTotal());
+    }
+
+    @Test
+    void testNioScanner(@TempDir Path dir) throws IOException {
+        StringBuilder sb = new StringBuilder("/* license */\r\npackage n.io;\r\n");
+        while (sb.length() < ByteLineScanner.MAP_THRESHOLD + 1) {
+            sb.append("/**\n * \u00e4\u00f6\u00fc\n */\r\n\tint x; // \u20ac\r\r\n/*\n  block\n*/\n");
+        }
+
+        // small files are read into the pooled buffer, large ones are memory-mapped
+        Path small = Files.write(dir.resolve("Small.java"), sb.substring(0, 4096).getBytes(StandardCharsets.UTF_8));
+        Path large = Files.write(dir.resolve("Large.java"), sb.toString().getBytes(StandardCharsets.UTF_8));
+
+        SourceClassifier chars = SlocCounter.builder().nio(false).build().getClassifier();
+        SourceClassifier bytes = SlocCounter.builder().nio(true).build().getClassifier();
+
+        assertTrue(bytes.isNio());
+        assertFalse(SlocCounter.builder().charset(StandardCharsets.UTF_16).nio(true).build().getClassifier().isNio());
+
+        for (Path file : Arrays.asList(small, large)) {
+            SourceCount expected = chars.classify(file, "", "src");
+            SourceCount actual = bytes.classify(file, "", "src");
+
+            assertEquals("n.io", actual.getPackageName());
+            assertArrayEquals(expected.getCounters(), actual.getCounters());
+            assertEquals(expected.getTotal(), actual.getTotal());
+        }
+    }
+
+    @Test
+    void testLanguages(@TempDir Path dir) throws IOException {
+        Path kotlin = write(dir.resolve("A.kt"), "/** doc */", "package a.b", "", "// line", "fun main() {}");
+        Path xml = write(dir.resolve("pom.xml"), "<?xml version=\"1.0\"?>", "<!--", "  license", "-->", "<project/> <!-- x -->");
+        Path sql = write(dir.resolve("schema.sql"), "-- table", "/* block", "*/", "CREATE TABLE t (id INT);");
+        Path shell = write(dir.resolve("run.sh"), "#!/bin/sh", "", "echo // not a comment");
+        Path other = write(dir.resolve("a.js"), "// line", "var x = 1;");
+
+        for (boolean nio : new boolean[] {false, true}) {
+            SourceClassifier classifier = SlocCounter.builder().nio(nio).build().getClassifier();
+
+            SourceCount count = classifier.classify(kotlin, "A.kt", "src");
+            assertEquals("kotlin", count.getLanguage());
+            assertEquals("a.b", count.getPackageName());
+            // a single-line JavaDoc is code, as in Java
+            assertArrayEquals(new int[] {1, 0, 1, 3}, count.getCounters());
+
+            count = classifier.classify(xml, "pom.xml", "src");
+            assertEquals("xml", count.getLanguage());
+            assertEquals("", count.getPackageName());
+            assertArrayEquals(new int[] {0, 0, 3, 2}, count.getCounters());
+
+            count = classifier.classify(sql, "schema.sql", "src");
+            assertEquals("sql", count.getLanguage());
+            assertArrayEquals(new int[] {0, 0, 3, 1}, count.getCounters());
+
+            count = classifier.classify(shell, "run.sh", "src");
+            assertEquals("shell", count.getLanguage());
+            assertArrayEquals(new int[] {1, 0, 1, 1}, count.getCounters());
+
+            // an unregistered extension is counted with the Java grammar
+            count = classifier.classify(other, "a.js", "src");
+            assertEquals("js", count.getLanguage());
+            assertArrayEquals(new int[] {0, 0, 1, 1}, count.getCounters());
+        }
+
+        // the lookup of an unregistered extension does not register it
+        LanguageRegistry registry = LanguageRegistry.defaults();
+        assertEquals("js", registry.get("js").getName());
+        assertNotSame(registry.get("js"), registry.get("js"));
+        assertSame(registry.get("kt"), registry.get("kt"));
+    }
+
+    @Test
+    void testLexer(@TempDir Path dir) throws IOException {
+        Path java = write(dir.resolve("L.java"),
+                          "package a.b;",
+                          "",
+                          "/** doc */",
+                          "/**/",
+                          "int x = 1; /* trailing */",
+                          "String s = \"/* not a comment\";",
+                          "int y = 2;",
+                          "/* c */ int z = 3;",
+                          "/* open",
+                          "close */ int w = 4;",
+                          "String t = \"\"\"",
+                          "    // inside a text block",
+                          "",
+                          "    \"\"\";",
+                          "char q = '\"'; // c",
+                          "String e = \"\\\" /*\";",
+                          "// line",
+                          "  /*",
+                          "",
+                          "  */");
+        Path kotlin = write(dir.resolve("N.kt"),
+                            "/* outer /* inner */ still a comment */",
+                            "fun f() = \"*/\"",
+                            "/*",
+                            " /* nested",
+                            " */",
+                            "*/",
+                            "val x = 1");
+
+        for (boolean nio : new boolean[] {false, true}) {
+            SourceClassifier classifier = SlocCounter.builder().nio(nio).lexer(true).build().getClassifier();
+
+            assertTrue(classifier.isLexer());
+
+            SourceCount count = classifier.classify(java, "L.java", "src");
+            assertEquals("a.b", count.getPackageName());
+            assertArrayEquals(new int[] {1, 1, 6, 12}, count.getCounters());
+
+            count = classifier.classify(kotlin, "N.kt", "src");
+            assertArrayEquals(new int[] {0, 0, 5, 2}, count.getCounters());
+        }
+
+        // by default the marker checks on trimmed lines are unchanged: the block opened by "/* open" runs to the last line
+        assertArrayEquals(new int[] {1, 0, 12, 7}, new SourceClassifier().classify(java, "L.java", "src").getCounters());
+    }
+
+    @Test
+    void testHeader(@TempDir Path dir) throws IOException {
+        Path info = write(dir.resolve("package-info.java"),
+                          "/** doc */",
+                          "@Generated(value = \"x)\",",
+                          "           date = \"2020\") // )",
+                          "@Deprecated",
+                          "package /* c */ a . b;");
+        Path script = write(dir.resolve("s.kts"),
+                            "#!/usr/bin/env kotlin",
+                            "@file:JvmName(\"S\") @file:[Suppress(\"x\")]",
+                            "package `a`.b",
+                            "val x = 1");
+        Path none = write(dir.resolve("D.java"),
+                          "import java.util.List;",
+                          "class D {",
+                          "    String s = \"package x;\";",
+                          "}");
+
+        for (boolean lexer : new boolean[] {false, true}) {
+            for (boolean nio : new boolean[] {false, true}) {
+                SourceClassifier classifier = SlocCounter.builder().nio(nio).lexer(lexer).build().getClassifier();
+
+                assertEquals("a.b", classifier.classify(info, "package-info.java", "src").getPackageName());
+                assertEquals("`a`.b", classifier.classify(script, "s.kts", "src").getPackageName());
+                // the header ends at the import
+                assertEquals("", classifier.classify(none, "D.java", "src").getPackageName());
+            }
+        }
+
+        // the package is not searched beyond the limit
+        SourceClassifier limited = SlocCounter.builder().nio(false).headerLines(3).build().getClassifier();
+        assertEquals("", limited.classify(info, "package-info.java", "src").getPackageName());
+        assertEquals(3, limited.getHeaderLines());
+    }
+
+    @Test
+    void testHash(@TempDir Path dir) throws IOException {
+        Path original = write(dir.resolve("A.java"), "package a;", "class A {", "    int a;", "}");
+        Path copy = write(dir.resolve("B.java"), "// a copy", "package a;", "", "\tclass A {  ", "/**", " * reformatted", " */", "int a;", "}");
+        Path changed = write(dir.resolve("C.java"), "package a;", "class A {", "    int b;", "}");
+        Path split = write(dir.resolve("D.java"), "package a;", "class A {    int a;", "}");
+        Path moved = write(dir.resolve("E.java"), "package a.b;", "class A {", "int a;", "}");
+
+        for (boolean nio : new boolean[] {false, true}) {
+            SourceClassifier classifier = SlocCounter.builder().nio(nio).duplicates(true).build().getClassifier();
+            long hash = classifier.classify(original, "A.java", "src").getHash();
+
+            assertNotEquals(0, hash);
+            assertEquals(hash, classifier.classify(copy, "B.java", "src").getHash());
+            assertNotEquals(hash, classifier.classify(changed, "C.java", "src").getHash());
+            assertNotEquals(hash, classifier.classify(split, "D.java", "src").getHash());
+            // the package is not hashed
+            assertEquals(hash, classifier.classify(moved, "E.java", "src").getHash());
+        }
+
+        assertEquals(0, new SourceClassifier().classify(original, "A.java", "src").getHash());
+
+        Path commented = write(dir.resolve("F.java"), "package a;", "class A { // the class", "  /* field */ int a;  /* a */", "}");
+        Path url = write(dir.resolve("G.java"), "package a;", "class A {", "String s = \"http://a\"; // url", "}");
+        Path noUrl = write(dir.resolve("H.java"), "package a;", "class A {", "String s = \"http:\";", "}");
+
+        for (boolean nio : new boolean[] {false, true}) {
+            SourceClassifier classifier = SlocCounter.builder().nio(nio).lexer(true).duplicates(true).build().getClassifier();
+
+            // with the lexer the comments around the code of a line are not hashed, the markers in a string are
+            assertEquals(classifier.classify(original, "A.java", "src").getHash(), classifier.classify(commented, "F.java", "src").getHash());
+            assertNotEquals(classifier.classify(url, "G.java", "src").getHash(), classifier.classify(noUrl, "H.java", "src").getHash());
+        }
+    }
+
+    @Test
+    void testMetrics(@TempDir Path dir) throws IOException {
+        char[] longComment = new char[130];
+        Arrays.fill(longComment, 'x');
+        char[] wideComment = new char[60];
+        Arrays.fill(wideComment, '\u00e4');
+
+        Path file = write(dir.resolve("A.java"),
+                          "package a;",
+                          "",
+                          "/** A */",
+                          "@SuppressWarnings({\"unchecked\", \"rawtypes\"})",
+                          "public class A extends B implements C {",
+                          "    private static final String S = \"{ if (x) class Q\";",
+                          "    private final Runnable r = () -> { if (a && b) run(); };",
+                          "    private int x;",
+                          "",
+                          "    public A(int x) {",
+                          "        this.x = x > 0 ? x : -x; // if (y) {",
+                          "    }",
+                          "",
+                          "    @Override",
+                          "    public synchronized int f(int a,",
+                          "                              int b) throws Exception {",
+                          "        for (int i = 0; i < a; i++) {",
+                          "            if (i == b || i == x) {",
+                          "                return i;",
+                          "            }",
+                          "        }",
+                          "        Object o = new Object() {",
+                          "            public String toString() { return \"o\"; }",
+                          "        };",
+                          "        return 0;",
+                          "    }",
+                          "",
+                          "    abstract void g();",
+                          "",
+                          "    enum E {",
+                          "        X(1), Y(2) { int h() { return 2; } };",
+                          "        E(int v) {}",
+                          "    }",
+                          "",
+                          "    interface I {",
+                          "        void i();",
+                          "        default void j() { switch (1) { case 1: break; case 2: break; } }",
+                          "    }",
+                          "",
+                          "    Class<?> k() { return A.class; }",
+                          "}",
+                          "// " + new String(longComment),
+                          "// " + new String(wideComment));
+
+        for (boolean nio : new boolean[] {false, true}) {
+            SourceClassifier classifier = SlocCounter.builder().nio(nio).metrics(true).build().getClassifier();
+            SourceMetrics metrics = classifier.classify(file, "A.java", "src").getMetrics();
+
+            // literals, comments, annotations, "A.class" and the constants of the enum are not declarations
+            assertEquals(3, metrics.getTypes(), metrics.toString());
+            assertEquals(9, metrics.getMethods(), metrics.toString());
+            assertEquals(4, metrics.getMaxDepth(), metrics.toString());
+            // the line of 60 two-byte characters is not long
+            assertEquals(1, metrics.getLongLines(), metrics.toString());
+            // if, &&, ?, for, if, ||, case, case
+            assertEquals(9 + 8, metrics.getComplexity(), metrics.toString());
+
+            classifier = SlocCounter.builder().nio(nio).metrics(true).longLine(60).build().getClassifier();
+            // the interface line and both comments
+            assertEquals(3, classifier.classify(file, "A.java", "src").getMetrics().getLongLines());
+        }
+
+        assertNull(new SourceClassifier().classify(file, "A.java", "src").getMetrics());
+    }
+}
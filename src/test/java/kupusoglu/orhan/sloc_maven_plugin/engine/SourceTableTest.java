@@ -0,0 +1,95 @@
+package kupusoglu.orhan.sloc_maven_plugin.engine;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+class SourceTableTest {
+
+    @Test
+    void testSameOrderAsMap() throws IOException {
+        // "a.b" sorts before "a" as the key "a.b:.." sorts before "a:.."
+        String[] packages = {"", "a", "a.b", "a.b.c", "ab", "b"};
+        String[] files = {"A.java", "A.kt", "B.java", "a.java"};
+        String[] types = {"src", "test", "int-test"};
+        Random random = new Random(42);
+        List<SourceCount> counts = new ArrayList<>();
+
+        for (int i = 0; i < 200; i++) {
+            String packageName = packages[random.nextInt(packages.length)];
+            String file = files[random.nextInt(files.length)];
+            // several paths of one key, the greater one wins
+            String path = "src" + i + "/" + packageName.replace('.', '/') + "/" + file;
+
+            counts.add(new SourceCount(path, packageName, file, types[random.nextInt(types.length)], file.endsWith(".kt") ? "kotlin" : "java",
+                                       random.nextInt(10), random.nextInt(10), random.nextInt(10), random.nextInt(100), 0, null));
+        }
+
+        Map<String, SourceCount> expected = new TreeMap<>();
+        for (SourceCount count : counts) {
+            expected.merge(count.getKey(), count, SourceCount::preferred);
+        }
+
+        for (int runSize : new int[] {0, 1, 7, 64}) {
+            Collections.shuffle(counts, random);
+
+            try (SourceTable table = new SourceTable(runSize)) {
+                counts.forEach(table::add);
+
+                assertEquals(expected.size(), table.size());
+                assertEquals(toString(expected.values()), toString(table));
+                // the table can be read again
+                assertEquals(toString(expected.values()), toString(table));
+
+                int[] rollup = table.getPackages().get("a.b");
+                int code = expected.values().stream().filter(count -> count.getPackageName().equals("a.b")).mapToInt(SourceCount::getCode).sum();
+                assertEquals(code, rollup[4]);
+            }
+        }
+    }
+
+    @Test
+    void testReport() throws IOException {
+        try (SourceTable table = new SourceTable(2)) {
+            table.add(new SourceCount("src/b/B.java", "b", "B.java", "src", "java", 1, 0, 0, 2, 0, null));
+            table.add(new SourceCount("src/a/A.java", "a", "A.java", "src", "java", 0, 1, 0, 3, 0, null));
+            // the metrics of a row added after a spilled run
+            table.add(new SourceCount("src/a/b/C.java", "a.b", "C.java", "test", "java", 0, 0, 1, 4, 0, new SourceMetrics(1, 2, 3, 0, 4)));
+
+            Map<String, SourceCount> map = new TreeMap<>();
+            for (SourceCount count : table) {
+                map.put(count.getKey(), count);
+            }
+
+            StringBuilder expected = new StringBuilder();
+            StringBuilder actual = new StringBuilder();
+            OutputFormat.TABLE.write(map.values(), "java", true, expected);
+            OutputFormat.TABLE.write(table, "java", true, actual);
+
+            assertEquals(expected.toString(), actual.toString());
+            assertTrue(actual.toString().contains("|        1 |        2 |        3 |        0 |        4 |"), actual.toString());
+        }
+    }
+
+    private static String toString(Iterable<SourceCount> counts) {
+        StringBuilder sb = new StringBuilder();
+
+        for (SourceCount count : counts) {
+            sb.append(count.getPath()).append(' ').append(count.getKey()).append(' ').append(count.getLanguage());
+            for (int counter : count.getCounters()) {
+                sb.append(' ').append(counter);
+            }
+            sb.append('\n');
+        }
+
+        return sb.toString();
+    }
+}
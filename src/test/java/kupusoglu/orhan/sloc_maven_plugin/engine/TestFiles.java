@@ -0,0 +1,26 @@
+package kupusoglu.orhan.sloc_maven_plugin.engine;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+
+/**
+ * Source files of the tests.
+ */
+final class TestFiles {
+    private TestFiles() {
+    }
+
+    /**
+     * @param   file    the file, its directories are created
+     * @param   lines   lines of the file, encoded in UTF-8
+     * @return  the file
+     */
+    static Path write(Path file, String... lines) throws IOException {
+        Files.createDirectories(file.getParent());
+        return Files.write(file, Arrays.asList(lines), StandardCharsets.UTF_8);
+    }
+}
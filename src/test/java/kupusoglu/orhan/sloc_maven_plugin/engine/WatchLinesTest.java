@@ -0,0 +1,92 @@
+package kupusoglu.orhan.sloc_maven_plugin.engine;
+
+import static kupusoglu.orhan.sloc_maven_plugin.engine.TestFiles.write;
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Predicate;
+
+class WatchLinesTest {
+
+    @Test
+    void testWatch(@TempDir Path dir) throws Exception {
+        write(dir.resolve("src/a/A.java"), "package a;", "class A {}");
+        write(dir.resolve("src/a/B.java"), "package a;", "class B {}");
+        write(dir.resolve("src/resources/R.java"), "package r;", "class R {}");
+        write(dir.resolve("src/x/B.java"), "package a;", "class B {", "}");
+
+        Path report = dir.resolve(OutputFormat.JSON.getFileName());
+        SlocCounter counter = SlocCounter.builder()
+                                         .save(true)
+                                         .threads(1)
+                                         .outputFormat(OutputFormat.JSON)
+                                         .filter(new SourceFilter(null, "resources"))
+                                         .build();
+        WatchLines watchLines = new WatchLines(new MavenSlocLog(new SystemStreamLog()), dir.toString(), counter, 50);
+        CompletableFuture<Void> watch = CompletableFuture.runAsync(() -> {
+            try {
+                watchLines.execute();
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+
+        try {
+            awaitReport(report, json -> json.contains("\"src/a/A.java\"") && json.contains("\"src/x/B.java\""));
+            assertFalse(read(report).contains("R.java"));
+            assertFalse(read(report).contains("src/a/B.java"));
+
+            // the other file of the key takes the place of the deleted one
+            Files.delete(dir.resolve("src/x/B.java"));
+            awaitReport(report, json -> !json.contains("src/x/B.java") && json.contains("\"src/a/B.java\""));
+
+            write(dir.resolve("src/a/A.java"), "package a;", "class A {", "    int a;", "}");
+            awaitReport(report, json -> json.contains("\"code\": 4, \"total\": 4"));
+
+            Files.delete(dir.resolve("src/a/B.java"));
+            write(dir.resolve("src/c/d/C.java"), "package c.d;", "class C {}");
+            write(dir.resolve("src/resources/S.java"), "package r;", "class S {}");
+            awaitReport(report, json -> !json.contains("B.java") && json.contains("\"src/c/d/C.java\""));
+
+            write(dir.resolve("src/c/D.java"), "package c;", "class D {}");
+            awaitReport(report, json -> json.contains("\"src/c/D.java\""));
+
+            // a deleted directory takes its files along, moved away in one step there is no event for the files below it
+            Files.move(dir.resolve("src/c"), dir.resolve("c"));
+            awaitReport(report, json -> !json.contains("C.java") && !json.contains("D.java"));
+
+            assertFalse(read(report).contains("S.java"));
+        } finally {
+            watchLines.close();
+        }
+
+        watch.get();
+        assertEquals(Arrays.asList("src/a/A.java"), Arrays.asList(watchLines.getCounts().keySet().toArray()));
+    }
+
+    private static void awaitReport(Path report, Predicate<String> condition) throws Exception {
+        long deadline = System.currentTimeMillis() + 20000;
+
+        while (!Files.exists(report) || !condition.test(read(report))) {
+            assertTrue(System.currentTimeMillis() < deadline, () -> "report not updated: " + (Files.exists(report) ? read(report) : ""));
+            Thread.sleep(20);
+        }
+    }
+
+    private static String read(Path file) {
+        try {
+            return new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}